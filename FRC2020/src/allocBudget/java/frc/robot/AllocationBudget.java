@@ -0,0 +1,95 @@
+package frc.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.DriverStationSim;
+import edu.wpi.first.hal.sim.mockdata.DriverStationDataJNI;
+
+/**
+ * Runs the robot code in HAL simulation for thousands of teleop passes, and
+ * fails if the robot loop allocates more than its budget per pass in the
+ * steady state. Garbage on the roboRIO's small heap means GC pauses, and GC
+ * pauses mean the motors stutter.
+ * 
+ * The loop profiler counts the bytes allocated in each section of the loop, so
+ * the report says which phase or command made the garbage.
+ * 
+ * Run by the allocationBudget task, which check depends on:
+ * ./gradlew allocationBudget [-Palloc.budget=bytes]
+ */
+public final class AllocationBudget {
+	private static final int WARMUP_PASSES = 2000; // Let the JIT settle and everything lazy get created
+	private static final int MEASURED_PASSES = 10000;
+	private static final long DEFAULT_BUDGET_BYTES = 512; // Per pass
+	private static final int DRIVER_JOYSTICK = 0;
+
+	private AllocationBudget() {
+	}
+
+	public static void main(String[] args) {
+		long budget = Long.getLong("alloc.budget", DEFAULT_BUDGET_BYTES);
+
+		if (!HAL.initialize(500, 0)) {
+			System.err.println("could not start the HAL simulator");
+			System.exit(1);
+		}
+		DriverStationSim ds = new DriverStationSim();
+		ds.setDsAttached(true);
+		ds.setAutonomous(false);
+		ds.setEnabled(true);
+		ds.notifyNewData();
+
+		Robot robot = new Robot();
+		robot.robotInit();
+		robot.teleopInit();
+
+		// Wiggle the sticks so the drive code has something to do; the arrays are made up front
+		float[][] axes = new float[8][6];
+		for (int i = 0; i < axes.length; ++i) {
+			axes[i][1] = (float) Math.sin(i * Math.PI / 4);
+			axes[i][4] = (float) Math.cos(i * Math.PI / 4) * 0.5f;
+		}
+
+		for (int pass = 0; pass < WARMUP_PASSES; ++pass) {
+			runPass(robot, ds, axes, pass);
+		}
+		Robot.profiler.setAllocationTracking(true);
+		for (int pass = 0; pass < MEASURED_PASSES; ++pass) {
+			runPass(robot, ds, axes, pass);
+		}
+		Robot.profiler.setAllocationTracking(false);
+
+		System.out.println(String.format("Allocation per pass over %d passes, budget %d bytes:", MEASURED_PASSES,
+				budget));
+		List<Integer> sections = new ArrayList<>();
+		for (int i = 0; i < Robot.profiler.getSectionCount(); ++i) {
+			sections.add(i);
+		}
+		sections.sort((a, b) -> Long.compare(Robot.profiler.getAllocatedBytes(b), Robot.profiler.getAllocatedBytes(a)));
+		for (int section : sections) {
+			System.out.println(String.format("  %10.1f  %s", Robot.profiler.getAllocatedBytes(section)
+					/ (double) MEASURED_PASSES, Robot.profiler.getSectionName(section)));
+		}
+
+		// Section 0 is the whole of robotPeriodic()
+		double perPass = Robot.profiler.getAllocatedBytes(0) / (double) MEASURED_PASSES;
+		if (perPass > budget) {
+			System.err.println(String.format("FAILED: the robot loop allocates %.1f bytes per pass, over the %d byte budget",
+					perPass, budget));
+			System.exit(1);
+		}
+		System.out.println("Within budget");
+		System.exit(0); // The robot's own threads would keep us running
+	}
+
+	private static void runPass(Robot robot, DriverStationSim ds, float[][] axes, int pass) {
+		if (pass % 50 == 0) {
+			DriverStationDataJNI.setJoystickAxes((byte) DRIVER_JOYSTICK, axes[(pass / 50) % axes.length]);
+			ds.notifyNewData();
+		}
+		robot.robotPeriodic();
+		robot.teleopPeriodic();
+	}
+}
@@ -0,0 +1,100 @@
+package frc.robot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.Robot;
+import frc.robot.subsystems.DriveBase;
+
+/**
+ * The drivebase's share of the robot loop, and one pass of the drive control
+ * loop, which does the joystick shaping, gear selection and autoshift, with
+ * the simulator stepped along so that the autoshift really shifts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DriveBenchmarks {
+	private static final int STEPS_PER_CONTROL_PASS = 5; // 200 Hz, on the simulator's 1 ms steps
+	private static final int CONTROL_PASSES_PER_ROBOT_PASS = 4;
+	private static final int CONTROL_PASSES_PER_STICK = 400; // 2 s each way
+	private static final double FAST_STICK = 0.9;
+	private static final double SLOW_STICK = 0.2;
+
+	private DriveBase drivebase;
+	private double axis = 0;
+	private long controlPasses = 0;
+
+	@Setup
+	public void setUp() {
+		SimulatedRobot.start();
+		drivebase = Robot.drivebase;
+		drivebase.setShiftMode(DriveBase.GearShiftMode.AUTOSHIFT);
+
+		// Get up to around the shift speed, so autoshift has decisions to make
+		Robot.sensors.forwardAxis = FAST_STICK;
+		for (int pass = 0; pass < 100; ++pass) {
+			SimulatedRobot.sense();
+			drivebase.driveWithJoysticks();
+			drivebase.actuate();
+			for (int i = 0; i < CONTROL_PASSES_PER_ROBOT_PASS; ++i) {
+				SimulatedRobot.step(STEPS_PER_CONTROL_PASS);
+				drivebase.stepControlLoop();
+			}
+		}
+	}
+
+	/**
+	 * What a robot loop pass does for the drivebase under the default command
+	 */
+	@Benchmark
+	public void driveWithJoysticks() {
+		// Keep the sticks moving so nothing can be cached away
+		axis = (axis > 0.9) ? -0.9 : axis + 0.01;
+		Robot.sensors.forwardAxis = axis;
+		drivebase.sense(Robot.sensors);
+		drivebase.driveWithJoysticks();
+		drivebase.visit();
+		drivebase.actuate();
+	}
+
+	/**
+	 * One pass of the drive control loop. The gear logic (handleGear() and the
+	 * AutoShifter) runs inside it. Simulated time and the physics move on 5 ms
+	 * per pass, and every fourth pass the robot loop takes the stick, which
+	 * swings between fast and slow so that the speed keeps crossing the shift
+	 * points. Take simulatorStep() off to get the control loop's own share.
+	 */
+	@Benchmark
+	public void controlLoopPass() {
+		if (controlPasses++ % CONTROL_PASSES_PER_ROBOT_PASS == 0) {
+			Robot.sensors.forwardAxis = (controlPasses / CONTROL_PASSES_PER_STICK) % 2 == 0 ? FAST_STICK : SLOW_STICK;
+			drivebase.sense(Robot.sensors);
+			drivebase.driveWithJoysticks();
+			drivebase.actuate();
+		}
+		SimulatedRobot.step(STEPS_PER_CONTROL_PASS);
+		drivebase.stepControlLoop();
+	}
+
+	/**
+	 * The simulator's part of controlLoopPass(), as a baseline
+	 */
+	@Benchmark
+	public void simulatorStep() {
+		SimulatedRobot.step(STEPS_PER_CONTROL_PASS);
+	}
+}
@@ -0,0 +1,43 @@
+package frc.robot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.Robot;
+
+/**
+ * Reading the driver controls, and the OI's per-pass housekeeping (rumble)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OIBenchmarks {
+
+	@Setup
+	public void setUp() {
+		SimulatedRobot.start();
+	}
+
+	@Benchmark
+	public void sense() {
+		Robot.oi.sense(Robot.sensors);
+	}
+
+	@Benchmark
+	public void visit() {
+		Robot.oi.visit();
+	}
+}
@@ -0,0 +1,65 @@
+package frc.robot.benchmarks;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.DriverStationSim;
+import edu.wpi.first.hal.sim.SimHooks;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.OI;
+import frc.robot.Robot;
+import frc.robot.sim.DrivetrainSim;
+import frc.robot.subsystems.DriveBase;
+import frc.robot.subsystems.VisionCoprocessor;
+
+/**
+ * The robot's subsystems, built once per benchmark JVM against the HAL
+ * simulator and the drivetrain physics model, with the driver station enabled
+ * in teleop. The control loop isn't started, so nothing runs behind the
+ * benchmarks' backs; benchmarks step it themselves.
+ */
+final class SimulatedRobot {
+	static DrivetrainSim drivetrainSim;
+
+	private SimulatedRobot() {
+	}
+
+	static synchronized void start() {
+		if (drivetrainSim != null) {
+			return;
+		}
+		if (!HAL.initialize(500, 0)) {
+			throw new IllegalStateException("could not start the HAL simulator");
+		}
+		SimHooks.pauseTiming(); // Time only moves when a benchmark steps it
+		DriverStationSim ds = new DriverStationSim();
+		ds.setDsAttached(true);
+		ds.setAutonomous(false);
+		ds.setEnabled(true);
+		ds.notifyNewData();
+
+		drivetrainSim = new DrivetrainSim();
+		DriveBase drivebase = drivetrainSim.createDriveBase();
+		Robot.drivebase = drivebase;
+		Robot.vision = new VisionCoprocessor(drivebase.getPoseHistory());
+		Robot.oi = new OI();
+		sense();
+	}
+
+	/**
+	 * Fill in the sensor snapshot, as the start of a robot loop pass would
+	 */
+	static void sense() {
+		Robot.sensors.timestamp = Timer.getFPGATimestamp();
+		Robot.oi.sense(Robot.sensors);
+		Robot.drivebase.sense(Robot.sensors);
+	}
+
+	/**
+	 * Move simulated time and the physics along
+	 */
+	static void step(int steps) {
+		for (int i = 0; i < steps; ++i) {
+			SimHooks.stepTiming((long) (DrivetrainSim.STEP_S * 1e6));
+			drivetrainSim.step(DrivetrainSim.STEP_S);
+		}
+	}
+}
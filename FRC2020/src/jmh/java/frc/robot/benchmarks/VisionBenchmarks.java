@@ -0,0 +1,57 @@
+package frc.robot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.Robot;
+import frc.robot.subsystems.VisionCoprocessor;
+import frc.robot.vision.VisionSnapshot;
+
+/**
+ * Decoding an update from the coprocessor into a snapshot, and picking the
+ * closest target from it as the commands do
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VisionBenchmarks {
+	private final double[] bearings = { -12.5, 3.0, 20.25 };
+	private final double[] ranges = { 96.0, 60.5, 130.0 };
+	private final VisionCoprocessor.VisionTargetInfo target = new VisionCoprocessor.VisionTargetInfo();
+	private double arrivalTime;
+
+	@Setup
+	public void setUp() {
+		SimulatedRobot.start();
+		// Fill the pose history so lookups have something to interpolate
+		for (int pass = 0; pass < 100; ++pass) {
+			SimulatedRobot.step(5);
+			Robot.drivebase.stepControlLoop();
+		}
+		SimulatedRobot.sense();
+		arrivalTime = Robot.sensors.timestamp;
+	}
+
+	@Benchmark
+	public VisionSnapshot decode() {
+		return Robot.vision.decode(arrivalTime, 25.0, bearings, ranges);
+	}
+
+	@Benchmark
+	public boolean closestTarget() {
+		return Robot.vision.getClosestTarget(target);
+	}
+}
@@ -15,7 +15,52 @@ public class Constants
 		public static final int PID_IDX = 0; // The Talons support up to 2 PID loops, with indexes 0 and 1.  We only use 0.
 		public static final int CAN_TIMEOUT_MS = 10; // The amount of time to wait for the CAN transaction to finish
 		public static final int CAN_ORDINAL_SLOT0 = 0;
+
+		// Drivebase geometry
+		public static final double DRIVE_TRACK_WIDTH_INCHES = 25.0; // Between the wheel centers, side to side
+
+		// Closed loop velocity drive.  Gains are in Talon units; kF is worked out from the top speed.
+		public static final boolean DRIVE_VELOCITY_MODE = false; // Use closed loop velocity for the joysticks
+		public static final double LOW_GEAR_TOP_SPEED = 7.0; // ft per sec
+		public static final double HIGH_GEAR_TOP_SPEED = 16.0; // ft per sec
+		public static final int LOW_GEAR_SLOT = 0;
+		public static final double LOW_GEAR_KP = 0.2;
+		public static final double LOW_GEAR_KI = 0.0;
+		public static final double LOW_GEAR_KD = 2.0;
+		public static final int HIGH_GEAR_SLOT = 1;
+		public static final double HIGH_GEAR_KP = 0.1;
+		public static final double HIGH_GEAR_KI = 0.0;
+		public static final double HIGH_GEAR_KD = 1.0;
+		public static final int VELOCITY_I_ZONE = 500; // ticks per 100ms
+		public static final double VELOCITY_KS = 0.04; // Output needed to overcome friction, between 0 and 1
+		public static final int POSITION_SLOT = 2; // The SPARK MAX's motion profiles
+
+		// Drive motor controllers.  With SPARK MAXes and NEOs, the encoder is in the motor, ahead of the shifter.
+		public static final boolean DRIVE_USES_SPARK_MAX = false;
+		public static final double NEO_FREE_SPEED_RPM = 5676;
+		// Closed loop gains for the SPARK MAX, in its units: error in motor RPM or rotations, output between -1 and 1.
+		// kFF is worked out from the top speed, as for the Talons; the velocity slots are the same as the Talons'.
+		public static final double SPARK_LOW_GEAR_KP = 0.0002;
+		public static final double SPARK_LOW_GEAR_KI = 0.0;
+		public static final double SPARK_LOW_GEAR_KD = 0.0;
+		public static final double SPARK_HIGH_GEAR_KP = 0.0001;
+		public static final double SPARK_HIGH_GEAR_KI = 0.0;
+		public static final double SPARK_HIGH_GEAR_KD = 0.0;
+		public static final double SPARK_POSITION_KP = 0.1;
+		public static final double SPARK_POSITION_KI = 0.0;
+		public static final double SPARK_POSITION_KD = 0.0;
 		
+		// Vision
+		public static final double VISION_CAMERA_LATENCY_S = 0.035; // Exposure to the start of processing, roughly one frame
+		public static final double VISION_MAX_AGE_S = 0.5; // Targets older than this aren't worth aiming at
+
+		// Aiming at a point, in the drive control loop.  If the robot turns away from the target, flip the sign of the heading gain.
+		public static final double AIM_HEADING_KP = 0.02; // Spin per degree of heading error, CCW positive
+		public static final double AIM_MAX_SPIN = 0.4;
+		public static final double AIM_RANGE_KP = 0.01; // Throttle per inch short of the stop range
+		public static final double AIM_MAX_FORWARD = 0.5;
+		public static final double AIM_VISION_GAIN = 0.3; // Fraction of each vision correction applied to the aim point
+
 		// Indices for solenoids
 		public static final int SHIFTER_SOLENOID_NUM  = 0;
 		
@@ -2,12 +2,15 @@ package frc.robot;
 
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
 import edu.wpi.first.wpilibj.Joystick;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.buttons.JoystickButton;
 import frc.robot.commands.RumbleCommand;
+import frc.robot.commands.drivebase.AlignToTarget;
 import frc.robot.commands.vision.ToggleCameraMode;
+import frc.robot.oi.HapticPattern;
+import frc.robot.oi.Haptics;
 import frc.robot.oi.JoystickAxisButton;
 import frc.robot.oi.XBox360Controller;
+import frc.robot.subsystems.VisionCoprocessor;
 
 /**
  * This class is the glue that binds the controls on the physical operator
@@ -24,10 +27,14 @@ public class OI {
 	// Buttons on drive controller
 	//public static final int CLIMB_SKIDS_BUTTON = 0;// XBox360Controller.Button.LEFT_BUMPER.Number();
 	public static final int SWITCH_CAM_VIEW_BUTTON = XBox360Controller.Button.START.Number();
+	public static final int ALIGN_TO_TARGET_BUTTON = XBox360Controller.Button.A.Number();
 	// Features not presently in use - getRawButton(0) always returns false
 	public static final int BUTTON_FORCE_LOW_GEAR = XBox360Controller.Button.LEFT_BUMPER.Number();
 	public static final int BUTTON_FORCE_HIGH_GEAR = XBox360Controller.Button.RIGHT_BUMPER.Number();
 
+	// How far short of a vision target the align button stops, in inches
+	private static final double ALIGN_STOP_RANGE_IN = 18.0;
+
 	// Axes on drive controller
 	public static final int DRIVE_FORWARD_AXIS = XBox360Controller.Axis.LEFT_STICK_Y.Number();
 	public static final int DRIVE_TURN_AXIS = XBox360Controller.Axis.RIGHT_STICK_X.Number();
@@ -38,11 +45,15 @@ public class OI {
 		WEAPONS, // Weapons operator
 	}
 
-	// System timestamps after which we want each rumbler to be turned off
-	private double driverLeftRumbleStopTime = 0;
-	private double driverRightRumbleStopTime = 0;
-	private double weaponsLeftRumbleStopTime = 0;
-	private double weaponsRightRumbleStopTime = 0;
+	// Indexed by Controller.ordinal()
+	private final Haptics haptics = new Haptics(driverController, weaponsController);
+
+	// Two quick taps on the light rumbler when a vision target comes into view
+	private static final HapticPattern TARGET_ACQUIRED = HapticPattern.pulses(2, 0.6, 0.08, 0.08);
+	// How long a target must be gone before seeing one again counts as a new acquisition
+	private static final double TARGET_LOST_S = 0.5;
+	private final VisionCoprocessor.VisionTargetInfo target = new VisionCoprocessor.VisionTargetInfo();
+	private double lastTargetSeen = Double.NEGATIVE_INFINITY;
 
 	public OI() {
 
@@ -51,6 +62,10 @@ public class OI {
         cameraViewSwitcher.whenPressed(new ToggleCameraMode());
 		// cameraViewSwitcher.close(); // Don't need this one anymore?
 
+		// Drive up to the closest vision target while held
+		JoystickButton alignToTarget = new JoystickButton(driverController, ALIGN_TO_TARGET_BUTTON);
+		alignToTarget.whileHeld(new AlignToTarget(ALIGN_STOP_RANGE_IN));
+
 		JoystickAxisButton driverRumblerLeft = new JoystickAxisButton(driverController, XBox360Controller.Axis.LEFT_TRIGGER.Number());
 		driverRumblerLeft.whenPressed(new RumbleCommand(Controller.DRIVER, Joystick.RumbleType.kLeftRumble, 1, 1.0));
 		
@@ -65,22 +80,30 @@ public class OI {
 		
 	}
 
+	/**
+	 * Read the driver controls into the snapshot. Called at the start of each
+	 * pass, before anything computes from the snapshot.
+	 */
+	public void sense(SensorSnapshot sensors) {
+		sensors.forwardAxis = getForwardAxis();
+		sensors.turnAxis = getTurnAxis();
+		sensors.highGearRequested = getHighGear();
+		sensors.lowGearRequested = getLowGear();
+	}
+
 	// There are a few things the OI wants to revisit every time around
 	public void visit() {
+		double now = Robot.sensors.timestamp;
 
-		// Cancel joystick rumble if necessary
-		if(Timer.getFPGATimestamp() > driverLeftRumbleStopTime) {
-			driverController.setRumble(RumbleType.kLeftRumble, 0);
-		}
-		if(Timer.getFPGATimestamp() > driverRightRumbleStopTime) {
-			driverController.setRumble(RumbleType.kRightRumble, 0);
-		}
-		if(Timer.getFPGATimestamp() > weaponsLeftRumbleStopTime) {
-			weaponsController.setRumble(RumbleType.kLeftRumble, 0);
-		}
-		if(Timer.getFPGATimestamp() > weaponsRightRumbleStopTime) {
-			weaponsController.setRumble(RumbleType.kRightRumble, 0);
+		if (Robot.vision.getClosestTarget(target)) {
+			if (now - lastTargetSeen > TARGET_LOST_S) {
+				haptics.play(Controller.DRIVER.ordinal(), RumbleType.kRightRumble, TARGET_ACQUIRED, now);
+			}
+			lastTargetSeen = now;
 		}
+
+		// Only sends to the controllers when a rumbler changes
+		haptics.update(now);
 	}
 
     /**
@@ -124,34 +147,19 @@ public class OI {
 	 * @param duration how long, in seconds, the rumble should last
 	 */
 	public void Rumble(Controller controller, Joystick.RumbleType side, double severity, double duration) {
-		Joystick stick = null;
-		switch(controller) {
-			case DRIVER: 
-				stick = driverController; 
-				switch(side) {
-					case kRightRumble:
-						driverRightRumbleStopTime = Timer.getFPGATimestamp() + duration;
-						break;
-					case kLeftRumble:
-						driverLeftRumbleStopTime = Timer.getFPGATimestamp() + duration;
-						break;
-				}
-				break;
-			case WEAPONS: 
-				stick = weaponsController;
-				switch(side) {
-					case kRightRumble:
-						weaponsRightRumbleStopTime = Timer.getFPGATimestamp() + duration;
-						break;
-					case kLeftRumble:
-						weaponsLeftRumbleStopTime = Timer.getFPGATimestamp() + duration;
-						break;
-				}
-				break;
-		}
+		haptics.play(controller.ordinal(), side, severity, duration, Robot.sensors.timestamp);
+	}
 
-		stick.setRumble(side, severity);
+	/**
+	 * Play a rumble pattern on a controller, on top of anything already playing
+	 * @param controller which controller to rumble
+	 * @param side right of left side
+	 * @param pattern what to play
+	 */
+	public void Rumble(Controller controller, Joystick.RumbleType side, HapticPattern pattern) {
+		haptics.play(controller.ordinal(), side, pattern, Robot.sensors.timestamp);
 	}
+
 	/**
 	 * Cease all rumbling
 	 */
@@ -163,21 +171,6 @@ public class OI {
 	 * Cease all rumbling on a controller
 	 */
 	public void CancelRumble(Controller controller) {
-		Joystick stick = null;
-		switch(controller) {
-			case DRIVER: 
-				stick = driverController; 
-				driverRightRumbleStopTime = Timer.getFPGATimestamp() - 1;
-				driverLeftRumbleStopTime = Timer.getFPGATimestamp() - 1;
-				break;
-			case WEAPONS: 
-				stick = weaponsController;
-				weaponsRightRumbleStopTime = Timer.getFPGATimestamp() - 1;
-				weaponsLeftRumbleStopTime = Timer.getFPGATimestamp() - 1;
-				break;
-		}
-
-		stick.setRumble(Joystick.RumbleType.kRightRumble, 0);
-		stick.setRumble(Joystick.RumbleType.kRightRumble, 0);
-    }
+		haptics.stop(controller.ordinal());
+	}
 }
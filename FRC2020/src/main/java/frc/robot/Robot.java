@@ -1,12 +1,34 @@
 package frc.robot;
 
+import java.io.IOException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Map;
+
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.Compressor;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.command.Command;
 import edu.wpi.first.wpilibj.command.Scheduler;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.auto.Trajectory;
+import frc.robot.auto.TrajectoryFile;
+import frc.robot.commands.drivebase.FollowTrajectory;
+import frc.robot.components.CanProfile;
+import frc.robot.logging.DataLogger;
+import frc.robot.logging.LogRecord;
+import frc.robot.profiling.LoopProfiler;
+import frc.robot.sim.DrivetrainSim;
 import frc.robot.subsystems.DriveBase;
 import frc.robot.subsystems.DriveBase.GearShiftMode;
 import frc.robot.subsystems.VisionCoprocessor;
+import frc.robot.telemetry.TelemetryService;
+import frc.robot.vision.VisionSnapshot;
+import frc.shared.FlightRecording;
 
 /**
  * The VM is configured to automatically run this class, and to call the
@@ -23,6 +45,36 @@ public class Robot extends TimedRobot {
 	public static Compressor compressor;
 	public static OI oi;
 	public static VisionCoprocessor vision;
+	public static TelemetryService telemetry;
+	public static DataLogger logger;
+	public static DrivetrainSim drivetrainSim; // Only off the robot
+
+	// Everything sensed at the start of this pass through the loop
+	public static final SensorSnapshot sensors = new SensorSnapshot();
+
+	// Times each phase of the loop, and each command's execute(), to find the cause of overruns
+	private static final String PROFILE_DIR = "/home/lvuser";
+	public static final LoopProfiler profiler = new LoopProfiler(kDefaultPeriod, PROFILE_DIR);
+	private static final int SENSE_SECTION = profiler.section("sense");
+	private static final int SCHEDULER_SECTION = profiler.section("scheduler");
+	private static final int OI_SECTION = profiler.section("oi");
+	private static final int DRIVEBASE_SECTION = profiler.section("drivebase");
+	private static final int ACTUATE_SECTION = profiler.section("actuate");
+	private static final int LOG_SECTION = profiler.section("log");
+
+	// Reused every pass; the logger copies it
+	private final LogRecord logRecord = new LogRecord();
+
+	// Autonomous paths, mapped in from the deploy directory at startup
+	private static final String TRAJECTORY_DIR = "paths";
+	private Map<String, Trajectory> trajectories;
+	private SendableChooser<Trajectory> autoChooser = new SendableChooser<>();
+	private Command autoCommand = null;
+
+	// Profiling
+	private static final String FLIGHT_RECORDING_DIR = PROFILE_DIR;
+	private static final Duration FLIGHT_RECORDING_MAX_AGE = Duration.ofMinutes(3);
+	private FlightRecording flightRecording;
 
 	/**
 	 * This function is run when the robot is first started up and should be used
@@ -32,13 +84,53 @@ public class Robot extends TimedRobot {
 	public void robotInit() {
 
 		// Initialize all subsystems
-		drivebase = new DriveBase();
+		if (isReal()) {
+			drivebase = new DriveBase();
+		} else {
+			// Off the robot, drive a physics model instead
+			drivetrainSim = new DrivetrainSim();
+			drivebase = drivetrainSim.createDriveBase();
+			drivebase.startControlLoop();
+			drivetrainSim.start();
+		}
 		compressor = new Compressor();
-		vision = new VisionCoprocessor();
+		vision = new VisionCoprocessor(drivebase.getPoseHistory());
         oi = new OI();
 
-		// Show what command your subsystem is running on the SmartDashboard
-		SmartDashboard.putData(drivebase);
+		// Telemetry is sampled on its own thread, so it never holds up the robot loop
+		telemetry = new TelemetryService();
+		drivebase.addTelemetry(telemetry); // Including the command it's running
+		telemetry.start();
+
+		// Log every pass for looking at after the match
+		logger = new DataLogger(DataLogger.defaultDirectory(), "match");
+
+		// Keep the last few minutes of profiling data, ready to dump from the dashboard
+		try {
+			flightRecording = new FlightRecording(FLIGHT_RECORDING_DIR, "robot", FLIGHT_RECORDING_MAX_AGE);
+			flightRecording.dumpOnRequest(
+					NetworkTableInstance.getDefault().getTable("profiling").getEntry("dump flight recording"));
+			// Keep the full picture of whatever made the loop overrun
+			profiler.setOverrunListener(() -> {
+				try {
+					System.out.println("Flight recording written to " + flightRecording.dump());
+				} catch (IOException ex) {
+					System.err.println("could not write flight recording: " + ex);
+				}
+			});
+		} catch (IOException | ParseException e) {
+			System.err.println("Could not start flight recording: " + e);
+		}
+
+		// Load the auto paths now, so that auto has nothing to wait for
+		trajectories = TrajectoryFile.loadAll(Filesystem.getDeployDirectory().toPath().resolve(TRAJECTORY_DIR));
+		autoChooser.setDefaultOption("none", null);
+		for (Trajectory trajectory : trajectories.values()) {
+			autoChooser.addOption(trajectory.getName(), trajectory);
+		}
+		SmartDashboard.putData("auto path", autoChooser);
+		System.out.println("Loaded " + trajectories.size() + " auto paths: " + trajectories.keySet());
+
 		// Disable brakes on talons to make it
 		// easier to push
 		drivebase.brake(false);
@@ -47,15 +139,31 @@ public class Robot extends TimedRobot {
 
 	@Override
 	public void autonomousInit() {
+		drivebase.setCanProfile(enabledCanProfile());
+		// Auto paths and field positions are measured from where the robot starts
+		drivebase.resetOdometry(0, 0, 0);
 
+		Trajectory trajectory = autoChooser.getSelected();
+		if (trajectory != null) {
+			autoCommand = new FollowTrajectory(trajectory, false);
+			autoCommand.start();
+		}
     }
 
+	/**
+	 * Fast tuning frames go with full rate telemetry, which is what they're for
+	 */
+	private static CanProfile enabledCanProfile() {
+		return telemetry.isFullRate() ? CanProfile.TUNING : CanProfile.MATCH;
+	}
+
 	/**
 	 * This function is called periodically during autonomous
 	 */
 	@Override
 	public void autonomousPeriodic() {
-
+		// Full rate telemetry can be turned on or off from the dashboard while enabled
+		drivebase.setCanProfile(enabledCanProfile());
 	}
 
 	/**
@@ -64,21 +172,93 @@ public class Robot extends TimedRobot {
 	 * robot is disabled.
 	 */
 	public void disabledInit() {
+		drivebase.setCanProfile(CanProfile.DISABLED);
 		drivebase.brake(false);
+		// Don't carry the last command over into the next enable
+		drivebase.stop();
 	}
 
 	public void disabledPeriodic() {
 	}
 
+	/**
+	 * Each pass runs in three phases: sense reads every sensor once into the
+	 * snapshot, compute runs the commands and subsystem logic against the
+	 * snapshot, and actuate sends the results to the hardware.
+	 */
 	@Override
 	public void robotPeriodic() {
+		profiler.startLoop();
+
+		profiler.start(SENSE_SECTION);
+		sensors.timestamp = Timer.getFPGATimestamp();
+		oi.sense(sensors);
+		drivebase.sense(sensors);
+		profiler.stop(SENSE_SECTION);
+
+		profiler.start(SCHEDULER_SECTION);
 		Scheduler.getInstance().run(); // Runs all active commands
+		profiler.stop(SCHEDULER_SECTION);
+
+		profiler.start(OI_SECTION);
 		oi.visit();
+		profiler.stop(OI_SECTION);
+
+		profiler.start(DRIVEBASE_SECTION);
 		drivebase.visit();
+		profiler.stop(DRIVEBASE_SECTION);
+
+		profiler.start(ACTUATE_SECTION);
+		drivebase.actuate();
+		profiler.stop(ACTUATE_SECTION);
+
+		profiler.start(LOG_SECTION);
+		log();
+		profiler.stop(LOG_SECTION);
+
+		profiler.endLoop();
+	}
+
+	/**
+	 * Fill in this pass's log record and queue it for the logger
+	 */
+	private void log() {
+		logRecord.timestamp = sensors.timestamp;
+		logRecord.forwardAxis = sensors.forwardAxis;
+		logRecord.turnAxis = sensors.turnAxis;
+		logRecord.leftPosition = sensors.leftPod.positionInches;
+		logRecord.leftVelocity = sensors.leftPod.velocityFeetPerSecond;
+		logRecord.rightPosition = sensors.rightPod.positionInches;
+		logRecord.rightVelocity = sensors.rightPod.velocityFeetPerSecond;
+		logRecord.heading = sensors.gyroHeading;
+		logRecord.busVoltage = RobotController.getBatteryVoltage();
+		logRecord.highGear = drivebase.getGear();
+		logRecord.highGearRequested = sensors.highGearRequested;
+		logRecord.lowGearRequested = sensors.lowGearRequested;
+
+		// Just the closest target
+		VisionSnapshot snapshot = vision.getLatest();
+		logRecord.visionTargets = snapshot.getTargetCount();
+		logRecord.visionRange = Double.NaN;
+		logRecord.visionBearing = Double.NaN;
+		for (int i = 0; i < snapshot.getTargetCount(); ++i) {
+			double range = snapshot.getRangeInches(i, sensors.pose);
+			if (!(range >= logRecord.visionRange)) { // NaN until the first target
+				logRecord.visionRange = range;
+				logRecord.visionBearing = snapshot.getBearingDegrees(i, sensors.pose);
+			}
+		}
+		logger.log(logRecord);
 	}
 
 	@Override
 	public void teleopInit() {
+		if (autoCommand != null) {
+			autoCommand.cancel();
+			autoCommand = null;
+		}
+
+		drivebase.setCanProfile(enabledCanProfile());
 
 		// Unlock the auto shifter
 		drivebase.setShiftMode(GearShiftMode.AUTOSHIFT);
@@ -91,7 +271,7 @@ public class Robot extends TimedRobot {
 	 */
 	@Override
 	public void teleopPeriodic() {
-
+		drivebase.setCanProfile(enabledCanProfile());
 	}
 
 	/**
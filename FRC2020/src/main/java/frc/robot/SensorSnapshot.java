@@ -0,0 +1,42 @@
+package frc.robot;
+
+import frc.robot.control.Pose;
+
+/**
+ * Everything the robot senses, read once at the start of each pass through the
+ * robot loop. Commands and subsystems compute from this rather than reading the
+ * hardware themselves, so that a whole pass sees one consistent set of values.
+ * 
+ * There is one instance, Robot.sensors, and it is reused every pass, so don't
+ * hold on to values from it across passes.
+ */
+public class SensorSnapshot {
+
+	/** One drive pod's encoder */
+	public static class Pod {
+		public double positionTicks; // In the controller's units: ticks on a Talon, motor rotations on a SPARK MAX
+		public double positionInches;
+		public double velocityFeetPerSecond;
+
+		public void copyFrom(Pod other) {
+			positionTicks = other.positionTicks;
+			positionInches = other.positionInches;
+			velocityFeetPerSecond = other.velocityFeetPerSecond;
+		}
+	}
+
+	// When the snapshot was taken, in seconds on the FPGA clock
+	public double timestamp;
+
+	// Driver controls
+	public double forwardAxis; // -1 for full speed backward, +1 for full speed forward
+	public double turnAxis; // -1 for full turn leftward, +1 for full turn rightward
+	public boolean highGearRequested;
+	public boolean lowGearRequested;
+
+	// Drivebase
+	public final Pod leftPod = new Pod();
+	public final Pod rightPod = new Pod();
+	public double gyroHeading; // degrees, CCW positive
+	public final Pose pose = new Pose(); // From odometry
+}
@@ -0,0 +1,98 @@
+package frc.robot.auto;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A precomputed path for the drivebase: for each point in time, where each side
+ * should be and how fast it should be going, and which way the robot should be
+ * facing.
+ * 
+ * Positions are in inches from the start of the path, velocities in inches per
+ * second, times in seconds from the start, and headings in degrees (CCW
+ * positive, 0 at the start).
+ * 
+ * Each column is a FloatBuffer, so a trajectory can sit directly on a memory
+ * mapped file (see TrajectoryFile) without being copied onto the heap.
+ */
+public class Trajectory {
+	private final String name;
+	private final int length;
+	private final FloatBuffer time;
+	private final FloatBuffer leftPosition;
+	private final FloatBuffer leftVelocity;
+	private final FloatBuffer rightPosition;
+	private final FloatBuffer rightVelocity;
+	private final FloatBuffer heading;
+
+	public Trajectory(String name, FloatBuffer time, FloatBuffer leftPosition, FloatBuffer leftVelocity,
+			FloatBuffer rightPosition, FloatBuffer rightVelocity, FloatBuffer heading) {
+		length = time.limit();
+		if (length == 0 || leftPosition.limit() != length || leftVelocity.limit() != length
+				|| rightPosition.limit() != length || rightVelocity.limit() != length || heading.limit() != length) {
+			throw new IllegalArgumentException("Trajectory '" + name + "' needs the same number of values in each column");
+		}
+		this.name = name;
+		this.time = time;
+		this.leftPosition = leftPosition;
+		this.leftVelocity = leftVelocity;
+		this.rightPosition = rightPosition;
+		this.rightVelocity = rightVelocity;
+		this.heading = heading;
+	}
+
+	/**
+	 * Build a trajectory on the heap, from one array per column
+	 */
+	public Trajectory(String name, float[] time, float[] leftPosition, float[] leftVelocity, float[] rightPosition,
+			float[] rightVelocity, float[] heading) {
+		this(name, FloatBuffer.wrap(time), FloatBuffer.wrap(leftPosition), FloatBuffer.wrap(leftVelocity),
+				FloatBuffer.wrap(rightPosition), FloatBuffer.wrap(rightVelocity), FloatBuffer.wrap(heading));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return number of points
+	 */
+	public int length() {
+		return length;
+	}
+
+	public double time(int i) {
+		return time.get(i);
+	}
+
+	public double leftPosition(int i) {
+		return leftPosition.get(i);
+	}
+
+	public double leftVelocity(int i) {
+		return leftVelocity.get(i);
+	}
+
+	public double rightPosition(int i) {
+		return rightPosition.get(i);
+	}
+
+	public double rightVelocity(int i) {
+		return rightVelocity.get(i);
+	}
+
+	public double heading(int i) {
+		return heading.get(i);
+	}
+
+	/**
+	 * @return how long the robot should take to get from point i to the next one,
+	 *         in milliseconds. The last point lasts as long as the one before it.
+	 */
+	public int durationMs(int i) {
+		if (length == 1) {
+			return 0;
+		}
+		int from = (i < length - 1) ? i : i - 1;
+		return Math.round((time.get(from + 1) - time.get(from)) * 1000.0f);
+	}
+}
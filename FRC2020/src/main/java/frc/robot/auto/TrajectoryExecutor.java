@@ -0,0 +1,165 @@
+package frc.robot.auto;
+
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+
+import edu.wpi.first.wpilibj.Notifier;
+import frc.robot.components.DrivePod;
+import frc.robot.telemetry.TelemetryService;
+
+/**
+ * Streams a trajectory into the drive pods' Talon motion profile buffers, so the
+ * profile runs on the Talons at 1 kHz however busy the roboRIO gets.
+ * 
+ * A refill thread keeps the API's top level buffers topped up from the
+ * trajectory and moves points down to the Talons. Once the Talons hold enough
+ * points to ride out a stall, getOutput() switches to Enable; when both sides
+ * reach the last point it switches to Hold. The drive control loop sends
+ * getOutput() to the Talons; this class never changes their control mode.
+ */
+public class TrajectoryExecutor {
+	private static final double REFILL_PERIOD_S = 0.005;
+	private static final int POINTS_BEFORE_ENABLE = 10; // In the Talons' own buffers
+	private static final int MAX_POINTS_PER_REFILL = 50; // So that starting a long path doesn't hog the thread
+
+	private final DrivePod leftPod, rightPod;
+	private final Notifier refiller = new Notifier(this::refill);
+	private final MotionProfileStatus leftStatus = new MotionProfileStatus();
+	private final MotionProfileStatus rightStatus = new MotionProfileStatus();
+
+	private Trajectory trajectory = null;
+	private boolean highGear = false;
+	private int nextPoint = 0; // Next point to push
+
+	// Read by the control loop and the robot loop
+	private volatile SetValueMotionProfile output = SetValueMotionProfile.Disable;
+	private volatile boolean finished = false;
+	private volatile long underruns = 0;
+	private volatile int bufferedPoints = 0;
+
+	public TrajectoryExecutor(DrivePod leftPod, DrivePod rightPod) {
+		this.leftPod = leftPod;
+		this.rightPod = rightPod;
+	}
+
+	/**
+	 * Clear the Talons' buffers and start streaming a trajectory. Positions are
+	 * relative to where the robot is now.
+	 * 
+	 * @param trajectory the path to drive
+	 * @param highGear   the gear the path was planned for, which picks the gains
+	 */
+	public synchronized void start(Trajectory trajectory, boolean highGear) {
+		refiller.stop();
+		this.trajectory = trajectory;
+		this.highGear = highGear;
+		nextPoint = 0;
+		output = SetValueMotionProfile.Disable;
+		finished = false;
+		bufferedPoints = 0;
+
+		int pointPeriodMs = trajectory.durationMs(0);
+		leftPod.startProfile(pointPeriodMs);
+		rightPod.startProfile(pointPeriodMs);
+		refill();
+		refiller.startPeriodic(REFILL_PERIOD_S);
+	}
+
+	/**
+	 * Stop streaming and clear the Talons' buffers. The control loop should
+	 * already have moved the Talons out of motion profile mode.
+	 */
+	public synchronized void stop() {
+		refiller.stop();
+		output = SetValueMotionProfile.Disable;
+		if (trajectory != null) {
+			leftPod.stopProfile();
+			rightPod.stopProfile();
+			trajectory = null;
+		}
+	}
+
+	/**
+	 * @return what the Talons' motion profile output should be right now
+	 */
+	public SetValueMotionProfile getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return true once both sides have reached the last point
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return how many times a Talon has run out of points since startup
+	 */
+	public long getUnderruns() {
+		return underruns;
+	}
+
+	/**
+	 * One pass of the refill thread
+	 */
+	private synchronized void refill() {
+		if (trajectory == null) {
+			return;
+		}
+
+		// Top up the API's buffers
+		int length = trajectory.length();
+		for (int pushed = 0; pushed < MAX_POINTS_PER_REFILL && nextPoint < length; ++pushed) {
+			if (leftPod.isProfileBufferFull() || rightPod.isProfileBufferFull()) {
+				break;
+			}
+			int durationMs = trajectory.durationMs(nextPoint);
+			boolean isLast = (nextPoint == length - 1);
+			leftPod.pushProfilePoint(trajectory.leftPosition(nextPoint), trajectory.leftVelocity(nextPoint), durationMs,
+					highGear, isLast);
+			rightPod.pushProfilePoint(trajectory.rightPosition(nextPoint), trajectory.rightVelocity(nextPoint),
+					durationMs, highGear, isLast);
+			nextPoint++;
+		}
+
+		// Move points down to the Talons, and see how they're doing
+		leftPod.processProfileBuffer();
+		rightPod.processProfileBuffer();
+		leftPod.getProfileStatus(leftStatus);
+		rightPod.getProfileStatus(rightStatus);
+		bufferedPoints = Math.min(leftStatus.btmBufferCnt, rightStatus.btmBufferCnt);
+
+		if (leftStatus.hasUnderrun || rightStatus.hasUnderrun) {
+			underruns++;
+			System.err.println("Motion profile underrun in '" + trajectory.getName() + "' at point " + nextPoint);
+			leftPod.clearProfileUnderrun();
+			rightPod.clearProfileUnderrun();
+		}
+
+		switch (output) {
+		case Disable:
+			// Start once the Talons can ride out a stall, or once they have the whole path
+			if (bufferedPoints >= POINTS_BEFORE_ENABLE || (nextPoint == length && bufferedPoints > 0)) {
+				output = SetValueMotionProfile.Enable;
+			}
+			break;
+		case Enable:
+			if (leftStatus.activePointValid && leftStatus.isLast && rightStatus.activePointValid && rightStatus.isLast) {
+				output = SetValueMotionProfile.Hold;
+				finished = true;
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Add the streaming stats to the telemetry service
+	 */
+	public void addTelemetry(TelemetryService telemetry) {
+		telemetry.addSignal("profile underruns", 1, () -> underruns);
+		telemetry.addSignal("profile buffered points", 10, () -> bufferedPoints);
+	}
+}
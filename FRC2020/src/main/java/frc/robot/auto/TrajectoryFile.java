@@ -0,0 +1,170 @@
+package frc.robot.auto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes trajectories in our binary deploy format.
+ * 
+ * The trajectories are generated at build time (see the trajgen source set)
+ * into src/main/deploy/paths, and memory mapped on the robot, so auto starts
+ * with nothing left to compute and the points stay off the heap.
+ * 
+ * Format, little endian:
+ * <pre>
+ *   int   magic           'FRCT'
+ *   int   version         1
+ *   int   point count     n
+ *   int   CRC32 of everything after the header
+ *   float time[n]            seconds
+ *   float leftPosition[n]    inches
+ *   float leftVelocity[n]    inches per second
+ *   float rightPosition[n]   inches
+ *   float rightVelocity[n]   inches per second
+ *   float heading[n]         degrees
+ * </pre>
+ */
+public class TrajectoryFile {
+	public static final String EXTENSION = ".traj";
+
+	private static final int MAGIC = 0x46524354; // 'FRCT'
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 16;
+	private static final int COLUMNS = 6;
+	private static final int MAX_POINT_DURATION_MS = 127; // Longest point the Talon will take
+
+	private TrajectoryFile() {
+	}
+
+	/**
+	 * Write a trajectory to a file
+	 */
+	public static void write(Trajectory trajectory, Path file) throws IOException {
+		int n = trajectory.length();
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + COLUMNS * n * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(HEADER_BYTES);
+		for (int i = 0; i < n; ++i) buffer.putFloat((float) trajectory.time(i));
+		for (int i = 0; i < n; ++i) buffer.putFloat((float) trajectory.leftPosition(i));
+		for (int i = 0; i < n; ++i) buffer.putFloat((float) trajectory.leftVelocity(i));
+		for (int i = 0; i < n; ++i) buffer.putFloat((float) trajectory.rightPosition(i));
+		for (int i = 0; i < n; ++i) buffer.putFloat((float) trajectory.rightVelocity(i));
+		for (int i = 0; i < n; ++i) buffer.putFloat((float) trajectory.heading(i));
+
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), HEADER_BYTES, buffer.capacity() - HEADER_BYTES);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, n);
+		buffer.putInt(12, (int) crc.getValue());
+		Files.write(file, buffer.array());
+	}
+
+	/**
+	 * Memory map a trajectory file and check that it is intact and drivable. The
+	 * trajectory is named after the file, without the extension.
+	 * 
+	 * @throws IOException if the file can't be read or fails any of the checks
+	 */
+	public static Trajectory load(Path file) throws IOException {
+		String fileName = file.getFileName().toString();
+		String name = fileName.endsWith(EXTENSION) ? fileName.substring(0, fileName.length() - EXTENSION.length()) : fileName;
+
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a trajectory file");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(file + " is version " + buffer.getInt(4) + ", expected " + VERSION);
+		}
+		int n = buffer.getInt(8);
+		if (n <= 0 || buffer.capacity() != HEADER_BYTES + (long) COLUMNS * n * Float.BYTES) {
+			throw new IOException(file + " is the wrong size for " + n + " points");
+		}
+
+		// Reading every page for the CRC also faults the whole file in, so auto won't wait on the disk
+		CRC32 crc = new CRC32();
+		ByteBuffer data = buffer.duplicate();
+		data.position(HEADER_BYTES);
+		crc.update(data);
+		if ((int) crc.getValue() != buffer.getInt(12)) {
+			throw new IOException(file + " is corrupt (CRC mismatch)");
+		}
+
+		FloatBuffer[] columns = new FloatBuffer[COLUMNS];
+		for (int c = 0; c < COLUMNS; ++c) {
+			ByteBuffer column = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			column.position(HEADER_BYTES + c * n * Float.BYTES);
+			column.limit(HEADER_BYTES + (c + 1) * n * Float.BYTES);
+			columns[c] = column.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		}
+		Trajectory trajectory = new Trajectory(name, columns[0], columns[1], columns[2], columns[3], columns[4], columns[5]);
+		validate(trajectory, file);
+		return trajectory;
+	}
+
+	/**
+	 * Load every trajectory file in a directory. Files that fail to load are
+	 * reported and skipped.
+	 * 
+	 * @return trajectories by name; empty if the directory doesn't exist
+	 */
+	public static Map<String, Trajectory> loadAll(Path directory) {
+		Map<String, Trajectory> trajectories = new TreeMap<>();
+		if (!Files.isDirectory(directory)) {
+			System.err.println("No trajectory directory at " + directory);
+			return trajectories;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+			for (Path file : files) {
+				try {
+					Trajectory trajectory = load(file);
+					trajectories.put(trajectory.getName(), trajectory);
+				} catch (IOException | RuntimeException e) {
+					System.err.println("Could not load trajectory: " + e.getMessage());
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Could not list trajectories in " + directory + ": " + e);
+		}
+		return trajectories;
+	}
+
+	/**
+	 * Check that the Talons can run the trajectory: times start at zero and go up
+	 * in steps the Talon can take, and nothing is NaN.
+	 */
+	private static void validate(Trajectory trajectory, Path file) throws IOException {
+		if (trajectory.time(0) != 0) {
+			throw new IOException(file + " doesn't start at time 0");
+		}
+		for (int i = 0; i < trajectory.length(); ++i) {
+			if (Double.isNaN(trajectory.leftPosition(i) + trajectory.leftVelocity(i) + trajectory.rightPosition(i)
+					+ trajectory.rightVelocity(i) + trajectory.heading(i))) {
+				throw new IOException(file + " has a NaN at point " + i);
+			}
+			if (i > 0) {
+				int durationMs = trajectory.durationMs(i - 1);
+				if (durationMs <= 0 || durationMs > MAX_POINT_DURATION_MS) {
+					throw new IOException(file + " has a " + durationMs + " ms step at point " + i);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package frc.robot.commands;
+
+import edu.wpi.first.wpilibj.command.Command;
+import frc.robot.Robot;
+
+/**
+ * A command whose execute() is timed by the loop profiler, under the name of
+ * the command's class. Override executeProfiled() instead of execute().
+ */
+public abstract class ProfiledCommand extends Command {
+    private final int section = Robot.profiler.section("command " + getClass().getSimpleName());
+
+    @Override
+    protected final void execute() {
+        Robot.profiler.start(section);
+        executeProfiled();
+        Robot.profiler.stop(section);
+    }
+
+    // Called repeatedly when this Command is scheduled to run
+    protected void executeProfiled() {
+    }
+}
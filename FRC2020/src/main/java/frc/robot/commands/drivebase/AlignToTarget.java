@@ -0,0 +1,119 @@
+package frc.robot.commands.drivebase;
+
+import frc.robot.Constants;
+import frc.robot.Robot;
+import frc.robot.commands.ProfiledCommand;
+import frc.robot.control.Pose;
+import frc.robot.vision.VisionSnapshot;
+
+/**
+ * Turn toward the closest vision target and drive up to it.
+ * 
+ * The target is held as a point in the odometry frame, and the drive control
+ * loop steers toward that point from encoders and gyro at the control rate.
+ * Vision only nudges the point, a fraction of the way toward each new
+ * sighting, so slow or stale vision updates don't make the drive jerky.
+ */
+public class AlignToTarget extends ProfiledCommand {
+    private static final double ARRIVAL_TOLERANCE_IN = 2.0;
+    private static final double ARRIVAL_TOLERANCE_DEG = 3.0;
+    private static final double MATCH_DISTANCE_IN = 24.0; // Sightings further than this from the aim point are other targets
+
+    private final double stopRange;
+    private boolean hasTarget;
+    private double aimX, aimY; // inches, in the odometry frame
+    private double lastCaptureTime;
+
+    /**
+     * @param stopRange how far short of the target to stop, in inches
+     */
+    public AlignToTarget(double stopRange) {
+        requires(Robot.drivebase);
+        this.stopRange = stopRange;
+    }
+
+    // Called just before this Command runs the first time
+    @Override
+    protected void initialize() {
+        hasTarget = false;
+        lastCaptureTime = Double.NEGATIVE_INFINITY;
+        // Otherwise the last joystick command keeps driving until there's a target
+        Robot.drivebase.stop();
+        updateAimPoint();
+    }
+
+    // Called repeatedly when this Command is scheduled to run
+    @Override
+    protected void executeProfiled() {
+        updateAimPoint();
+        if (hasTarget) {
+            Robot.drivebase.driveToward(aimX, aimY, stopRange);
+        } else {
+            Robot.drivebase.stop();
+        }
+    }
+
+    /**
+     * Fold any new vision update into the aim point. The first sighting picks the
+     * closest target; after that we follow whichever sighting is nearest the aim point.
+     */
+    private void updateAimPoint() {
+        VisionSnapshot snapshot = Robot.vision.getLatest();
+        if (snapshot.getCaptureTime() <= lastCaptureTime || !snapshot.isCompensated()
+                || Robot.sensors.timestamp - snapshot.getCaptureTime() > Constants.VISION_MAX_AGE_S) {
+            return;
+        }
+        lastCaptureTime = snapshot.getCaptureTime();
+
+        Pose now = Robot.sensors.pose;
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < snapshot.getTargetCount(); ++i) {
+            double distance = hasTarget
+                ? Math.hypot(snapshot.getFieldX(i) - aimX, snapshot.getFieldY(i) - aimY)
+                : snapshot.getRangeInches(i, now);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        if (best < 0) {
+            return;
+        }
+
+        if (!hasTarget) {
+            aimX = snapshot.getFieldX(best);
+            aimY = snapshot.getFieldY(best);
+            hasTarget = true;
+        } else if (bestDistance < MATCH_DISTANCE_IN) {
+            aimX += Constants.AIM_VISION_GAIN * (snapshot.getFieldX(best) - aimX);
+            aimY += Constants.AIM_VISION_GAIN * (snapshot.getFieldY(best) - aimY);
+        }
+    }
+
+    // Make this return true when this Command no longer needs to run execute()
+    @Override
+    protected boolean isFinished() {
+        if (!hasTarget) {
+            // Nothing to aim at; give vision a moment to find something
+            return timeSinceInitialized() > Constants.VISION_MAX_AGE_S;
+        }
+        Pose now = Robot.sensors.pose;
+        double dx = aimX - now.x;
+        double dy = aimY - now.y;
+        double headingError = Math.IEEEremainder(Math.toDegrees(Math.atan2(dy, dx)) - now.heading, 360);
+        return Math.hypot(dx, dy) - stopRange < ARRIVAL_TOLERANCE_IN && Math.abs(headingError) < ARRIVAL_TOLERANCE_DEG;
+    }
+
+    // Called once after isFinished returns true
+    @Override
+    protected void end() {
+        Robot.drivebase.stop();
+    }
+
+    // Called when another command which requires the drivebase is scheduled to run
+    @Override
+    protected void interrupted() {
+        end();
+    }
+}
@@ -0,0 +1,50 @@
+package frc.robot.commands.drivebase;
+
+import edu.wpi.first.wpilibj.command.Command;
+import frc.robot.Robot;
+import frc.robot.auto.Trajectory;
+import frc.robot.subsystems.DriveBase.GearShiftMode;
+
+/**
+ * Drive a precomputed path, starting from wherever the robot is now. The path
+ * runs on the Talons, so it isn't affected by how busy the roboRIO is.
+ */
+public class FollowTrajectory extends Command {
+    private final Trajectory trajectory;
+    private final boolean highGear;
+
+    /**
+     * @param trajectory the path to drive
+     * @param highGear the gear the path was planned for; the drivebase stays in it until the path is done
+     */
+    public FollowTrajectory(Trajectory trajectory, boolean highGear) {
+        requires(Robot.drivebase);
+        this.trajectory = trajectory;
+        this.highGear = highGear;
+    }
+
+    // Called just before this Command runs the first time
+    @Override
+    protected void initialize() {
+        Robot.drivebase.followTrajectory(trajectory, highGear);
+    }
+
+    // Make this return true when this Command no longer needs to run execute()
+    @Override
+    protected boolean isFinished() {
+        return Robot.drivebase.isTrajectoryFinished();
+    }
+
+    // Called once after isFinished returns true
+    @Override
+    protected void end() {
+        Robot.drivebase.stopTrajectory();
+        Robot.drivebase.setShiftMode(GearShiftMode.AUTOSHIFT);
+    }
+
+    // Called when another command which requires the drivebase is scheduled to run
+    @Override
+    protected void interrupted() {
+        end();
+    }
+}
@@ -1,9 +1,9 @@
 package frc.robot.commands.drivebase;
 
-import edu.wpi.first.wpilibj.command.Command;
 import frc.robot.Robot;
+import frc.robot.commands.ProfiledCommand;
 
-public class ManuallyControlDrivebase extends Command {
+public class ManuallyControlDrivebase extends ProfiledCommand {
     
 
     public ManuallyControlDrivebase() {
@@ -12,7 +12,7 @@ public class ManuallyControlDrivebase extends Command {
 
     // Called repeatedly when this Command is scheduled to run
     @Override
-    protected void execute() {
+    protected void executeProfiled() {
         Robot.drivebase.driveWithJoysticks();
        
 
@@ -7,13 +7,13 @@
 
 package frc.robot.commands.vision;
 
-import edu.wpi.first.wpilibj.command.Command;
 import frc.robot.Robot;
+import frc.robot.commands.ProfiledCommand;
 
 /**
  * Command to set the main camera into one of its modes
  */
-public class SetCameraMode extends Command {
+public class SetCameraMode extends ProfiledCommand {
     private boolean camShouldBeHumanVisible = false;
 
     /**
@@ -34,7 +34,7 @@ public class SetCameraMode extends Command {
 
     // Called repeatedly when this Command is scheduled to run
     @Override
-    protected void execute() {
+    protected void executeProfiled() {
         Robot.vision.setCameraIsHumanVisible(camShouldBeHumanVisible);
     }
 
@@ -0,0 +1,143 @@
+package frc.robot.components;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.DemandType;
+import com.ctre.phoenix.motorcontrol.IMotorControllerEnhanced;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+
+import frc.robot.Constants;
+
+/**
+ * Wraps a motor controller and remembers the last value sent for each setting,
+ * so that repeating a command costs nothing on the CAN bus.
+ * 
+ * Only writes go through here; reads should still go to the controller itself.
+ * If the controller may have lost its settings, eg after a brownout, call
+ * invalidate() so that everything is sent again.
+ */
+public class CachingMotorController {
+	private final IMotorControllerEnhanced controller;
+
+	private ControlMode lastMode = null;
+	private double lastValue = Double.NaN;
+	private double lastFeedForward = Double.NaN;
+	private int lastSlot = -1;
+	private double lastPeakForward = Double.NaN;
+	private double lastPeakReverse = Double.NaN;
+	private double lastOpenLoopRamp = Double.NaN;
+	private NeutralMode lastNeutralMode = null;
+
+	public CachingMotorController(IMotorControllerEnhanced controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 * @return the wrapped controller, for reads and one-time configuration
+	 */
+	public IMotorControllerEnhanced getController() {
+		return controller;
+	}
+
+	/**
+	 * Forget everything sent so far, so that the next write of each setting goes out.
+	 */
+	public void invalidate() {
+		lastMode = null;
+		lastValue = Double.NaN;
+		lastFeedForward = Double.NaN;
+		lastSlot = -1;
+		lastPeakForward = Double.NaN;
+		lastPeakReverse = Double.NaN;
+		lastOpenLoopRamp = Double.NaN;
+		lastNeutralMode = null;
+	}
+
+	/**
+	 * Command the motor, if the command differs from the last one sent.
+	 */
+	public void set(ControlMode mode, double value) {
+		set(mode, value, 0);
+	}
+
+	/**
+	 * Command the motor with an arbitrary feedforward added to the output, if the
+	 * command differs from the last one sent.
+	 * 
+	 * @param feedForward added to the closed loop output, between -1 and 1
+	 */
+	public void set(ControlMode mode, double value, double feedForward) {
+		if (mode == lastMode && value == lastValue && feedForward == lastFeedForward) {
+			// The control frame goes out periodically anyway, so this saves a call, not a frame
+			CanWriteCounter.recordSuppressed();
+			return;
+		}
+		controller.set(mode, value, DemandType.ArbitraryFeedForward, feedForward);
+		lastMode = mode;
+		lastValue = value;
+		lastFeedForward = feedForward;
+	}
+
+	/**
+	 * Pick the gains slot for the closed loop, if it differs from the last one
+	 * picked.
+	 */
+	public void selectProfileSlot(int slot, int pidIdx) {
+		if (slot == lastSlot) {
+			// Also carried in the periodic control frame
+			CanWriteCounter.recordSuppressed();
+			return;
+		}
+		controller.selectProfileSlot(slot, pidIdx);
+		lastSlot = slot;
+	}
+
+	/**
+	 * Set the peak outputs, if they differ from the last ones sent. This is a
+	 * blocking config call when sent, so keep it off the periodic path.
+	 * 
+	 * @param forward peak forward output, between 0 and 1
+	 * @param reverse peak reverse output, between -1 and 0
+	 */
+	public void configPeakOutput(double forward, double reverse) {
+		if (forward == lastPeakForward && reverse == lastPeakReverse) {
+			CanWriteCounter.recordSaved();
+			CanWriteCounter.recordSaved();
+			return;
+		}
+		controller.configPeakOutputForward(forward, Constants.CAN_TIMEOUT_MS);
+		controller.configPeakOutputReverse(reverse, Constants.CAN_TIMEOUT_MS);
+		lastPeakForward = forward;
+		lastPeakReverse = reverse;
+		CanWriteCounter.recordSent();
+		CanWriteCounter.recordSent();
+	}
+
+	/**
+	 * Set the open loop ramp, if it differs from the last one sent. This is a
+	 * blocking config call when sent, so keep it off the periodic path.
+	 * 
+	 * @param rampRate seconds from neutral to full output
+	 */
+	public void configOpenloopRamp(double rampRate) {
+		if (rampRate == lastOpenLoopRamp) {
+			CanWriteCounter.recordSaved();
+			return;
+		}
+		controller.configOpenloopRamp(rampRate, Constants.CAN_TIMEOUT_MS);
+		lastOpenLoopRamp = rampRate;
+		CanWriteCounter.recordSent();
+	}
+
+	/**
+	 * Set the neutral mode, if it differs from the last one sent.
+	 */
+	public void setNeutralMode(NeutralMode mode) {
+		if (mode == lastNeutralMode) {
+			CanWriteCounter.recordSaved();
+			return;
+		}
+		controller.setNeutralMode(mode);
+		lastNeutralMode = mode;
+		CanWriteCounter.recordSent();
+	}
+}
@@ -0,0 +1,47 @@
+package frc.robot.components;
+
+import edu.wpi.first.wpilibj.Solenoid;
+
+/**
+ * Wraps a solenoid and remembers the last state sent, so that holding a state
+ * costs nothing. Reads come from the remembered state as well.
+ */
+public class CachingSolenoid {
+	private final Solenoid solenoid;
+	private boolean known = false; // Have we sent anything yet?
+	private boolean lastState = false;
+
+	public CachingSolenoid(Solenoid solenoid) {
+		this.solenoid = solenoid;
+	}
+
+	/**
+	 * Set the solenoid, if the state differs from the last one sent.
+	 * 
+	 * @param on true to energize the solenoid
+	 */
+	public void set(boolean on) {
+		if (known && on == lastState) {
+			CanWriteCounter.recordSaved();
+			return;
+		}
+		solenoid.set(on);
+		lastState = on;
+		known = true;
+		CanWriteCounter.recordSent();
+	}
+
+	/**
+	 * @return the last state sent, or false if nothing has been sent yet
+	 */
+	public boolean get() {
+		return lastState;
+	}
+
+	/**
+	 * Forget the last state sent, so that the next set() goes out.
+	 */
+	public void invalidate() {
+		known = false;
+	}
+}
@@ -0,0 +1,139 @@
+package frc.robot.components;
+
+import com.revrobotics.CANPIDController;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMax.IdleMode;
+import com.revrobotics.ControlType;
+
+/**
+ * Wraps a SPARK MAX and remembers the last value sent for each setting, so that
+ * repeating a command costs nothing on the CAN bus. The SPARK MAX version of
+ * CachingMotorController.
+ *
+ * Only writes go through here; reads should still go to the controller itself.
+ * If the controller may have lost its settings, eg after a brownout, call
+ * invalidate() so that everything is sent again.
+ */
+public class CachingSparkMax {
+	private final CANSparkMax controller;
+	private final CANPIDController pid;
+
+	private ControlType lastControlType = null;
+	private double lastValue = Double.NaN;
+	private int lastSlot = -1;
+	private double lastFeedForward = Double.NaN;
+	private double lastMinOutput = Double.NaN;
+	private double lastMaxOutput = Double.NaN;
+	private double lastOpenLoopRamp = Double.NaN;
+	private IdleMode lastIdleMode = null;
+
+	public CachingSparkMax(CANSparkMax controller) {
+		this.controller = controller;
+		this.pid = controller.getPIDController();
+	}
+
+	/**
+	 * @return the wrapped controller, for reads and one-time configuration
+	 */
+	public CANSparkMax getController() {
+		return controller;
+	}
+
+	/**
+	 * Forget everything sent so far, so that the next write of each setting goes out.
+	 */
+	public void invalidate() {
+		lastControlType = null;
+		lastValue = Double.NaN;
+		lastSlot = -1;
+		lastFeedForward = Double.NaN;
+		lastMinOutput = Double.NaN;
+		lastMaxOutput = Double.NaN;
+		lastOpenLoopRamp = Double.NaN;
+		lastIdleMode = null;
+	}
+
+	/**
+	 * @return the control type last sent, or null if nothing has been sent since
+	 *         the last invalidate()
+	 */
+	public ControlType getLastControlType() {
+		return lastControlType;
+	}
+
+	/**
+	 * @return the setpoint last sent, in the control type's units
+	 */
+	public double getLastValue() {
+		return lastValue;
+	}
+
+	/**
+	 * Command the motor, if the command differs from the last one sent.
+	 *
+	 * @param slot        gains slot for the closed loop types
+	 * @param feedForward added to the output, between -1 and 1
+	 */
+	public void set(ControlType controlType, double value, int slot, double feedForward) {
+		if (controlType == lastControlType && value == lastValue && slot == lastSlot
+				&& feedForward == lastFeedForward) {
+			CanWriteCounter.recordSaved();
+			return;
+		}
+		pid.setReference(value, controlType, slot, feedForward, CANPIDController.ArbFFUnits.kPercentOut);
+		lastControlType = controlType;
+		lastValue = value;
+		lastSlot = slot;
+		lastFeedForward = feedForward;
+		CanWriteCounter.recordSent();
+	}
+
+	/**
+	 * Set the closed loop output range for the given slots, if it differs from the
+	 * last one sent. Waits for the controller to confirm each slot when sent, so
+	 * keep it off the periodic path.
+	 *
+	 * @param min peak reverse output, between -1 and 0
+	 * @param max peak forward output, between 0 and 1
+	 */
+	public void setOutputRange(double min, double max, int... slots) {
+		if (min == lastMinOutput && max == lastMaxOutput) {
+			CanWriteCounter.recordSaved();
+			return;
+		}
+		for (int slot : slots) {
+			pid.setOutputRange(min, max, slot);
+		}
+		lastMinOutput = min;
+		lastMaxOutput = max;
+		CanWriteCounter.recordSent();
+	}
+
+	/**
+	 * Set the open loop ramp, if it differs from the last one sent.
+	 *
+	 * @param rampRate seconds from neutral to full output
+	 */
+	public void setOpenLoopRampRate(double rampRate) {
+		if (rampRate == lastOpenLoopRamp) {
+			CanWriteCounter.recordSaved();
+			return;
+		}
+		controller.setOpenLoopRampRate(rampRate);
+		lastOpenLoopRamp = rampRate;
+		CanWriteCounter.recordSent();
+	}
+
+	/**
+	 * Set brake or coast, if it differs from the last one sent.
+	 */
+	public void setIdleMode(IdleMode mode) {
+		if (mode == lastIdleMode) {
+			CanWriteCounter.recordSaved();
+			return;
+		}
+		controller.setIdleMode(mode);
+		lastIdleMode = mode;
+		CanWriteCounter.recordSent();
+	}
+}
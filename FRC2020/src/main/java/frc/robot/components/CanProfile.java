@@ -0,0 +1,74 @@
+package frc.robot.components;
+
+import com.ctre.phoenix.motorcontrol.VelocityMeasPeriod;
+
+/**
+ * How often the drive Talons send each status frame, and how they measure
+ * velocity. Frames nobody reads are slowed to the Talons' 255 ms maximum, so
+ * the bus has room to send the ones we do read faster.
+ *
+ * The velocity gains were tuned with the Talons' default velocity measurement,
+ * 64 samples of 100 ms deltas, so MATCH and DISABLED keep it. TUNING measures
+ * over 8 samples of 10 ms deltas, for velocity graphs with less lag; expect the
+ * velocity loop to behave differently there until the gains are retuned for it.
+ *
+ * Followers only send what it takes to notice that they have reset.
+ */
+public enum CanProfile {
+	/**
+	 * Everything the control loop reads, at its rate, and the rest at telemetry
+	 * rates
+	 */
+	MATCH(5, 50, 255, 10, 100, 100, 255, VelocityMeasPeriod.Period_100Ms, 64),
+
+	/**
+	 * The closed loop error, target and temperatures fast enough for graphing
+	 * while tuning gains
+	 */
+	TUNING(5, 10, 20, 10, 50, 20, 100, VelocityMeasPeriod.Period_10Ms, 8),
+
+	/**
+	 * Only enough to keep odometry going if the robot is pushed around
+	 */
+	DISABLED(20, 255, 255, 255, 255, 100, 255, VelocityMeasPeriod.Period_100Ms, 64);
+
+	/** The slowest a Talon can send a frame */
+	public static final int SLOWEST_MS = 255;
+
+	// The leader's Status_1_General carries the applied output, which the followers
+	// mirror, so it always goes at the default rate
+	public static final int LEADER_GENERAL_MS = 10;
+
+	/** Selected sensor position and velocity */
+	public final int leaderFeedbackMs;
+	/** Closed loop error and target */
+	public final int leaderPidMs;
+	/** Trajectory targets */
+	public final int leaderTargetsMs;
+	/** Motion profile buffer status */
+	public final int leaderMotionProfileMs;
+	/** Bus voltage and temperature */
+	public final int leaderAnalogMs;
+	/** Faults and reset flags */
+	public final int followerGeneralMs;
+	/** Bus voltage and temperature */
+	public final int followerAnalogMs;
+	/** Time between the position samples that velocity is measured across */
+	public final VelocityMeasPeriod velocityMeasurementPeriod;
+	/** How many of those velocities are averaged */
+	public final int velocityMeasurementWindow;
+
+	private CanProfile(int leaderFeedbackMs, int leaderPidMs, int leaderTargetsMs, int leaderMotionProfileMs,
+			int leaderAnalogMs, int followerGeneralMs, int followerAnalogMs, VelocityMeasPeriod velocityMeasurementPeriod,
+			int velocityMeasurementWindow) {
+		this.leaderFeedbackMs = leaderFeedbackMs;
+		this.leaderPidMs = leaderPidMs;
+		this.leaderTargetsMs = leaderTargetsMs;
+		this.leaderMotionProfileMs = leaderMotionProfileMs;
+		this.leaderAnalogMs = leaderAnalogMs;
+		this.followerGeneralMs = followerGeneralMs;
+		this.followerAnalogMs = followerAnalogMs;
+		this.velocityMeasurementPeriod = velocityMeasurementPeriod;
+		this.velocityMeasurementWindow = velocityMeasurementWindow;
+	}
+}
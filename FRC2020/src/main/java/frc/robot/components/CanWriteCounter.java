@@ -0,0 +1,110 @@
+package frc.robot.components;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the writes sent to, and saved from, the CAN bus by the caching actuator
+ * wrappers, so we can see how much traffic the caching is saving us.
+ *
+ * Only writes that are frames of their own count as sent or saved: config calls,
+ * solenoids, and SPARK MAX setpoints. A Talon's set() only updates its control
+ * frame, which Phoenix resends periodically whatever we do, so repeats of those
+ * are counted separately as suppressed calls rather than as bus savings.
+ */
+public class CanWriteCounter {
+	private static final AtomicLong sent = new AtomicLong();
+	private static final AtomicLong saved = new AtomicLong();
+	private static final AtomicLong suppressed = new AtomicLong();
+
+	// Rates over the last complete window
+	private static final double WINDOW_SECONDS = 1.0;
+	private static double windowStart = Double.NaN;
+	private static long windowStartSent = 0;
+	private static long windowStartSaved = 0;
+	private static long windowStartSuppressed = 0;
+	private static double sentPerSecond = 0;
+	private static double savedPerSecond = 0;
+	private static double suppressedPerSecond = 0;
+
+	private CanWriteCounter() {
+	}
+
+	/** Record a write that went out on the bus */
+	static void recordSent() {
+		sent.incrementAndGet();
+	}
+
+	/** Record a write that was skipped because the device already had the value */
+	static void recordSaved() {
+		saved.incrementAndGet();
+	}
+
+	/** Record a repeated set() call that was skipped, where the frame goes out anyway */
+	static void recordSuppressed() {
+		suppressed.incrementAndGet();
+	}
+
+	public static long getTotalSent() {
+		return sent.get();
+	}
+
+	public static long getTotalSaved() {
+		return saved.get();
+	}
+
+	public static long getTotalSuppressed() {
+		return suppressed.get();
+	}
+
+	/**
+	 * Roll the rate window forward. Call this regularly from a single thread.
+	 * 
+	 * @param now current time, in seconds
+	 * @return true if a window just completed and the rates changed
+	 */
+	public static boolean update(double now) {
+		if (Double.isNaN(windowStart)) {
+			windowStart = now;
+			windowStartSent = sent.get();
+			windowStartSaved = saved.get();
+			windowStartSuppressed = suppressed.get();
+			return false;
+		}
+		double elapsed = now - windowStart;
+		if (elapsed < WINDOW_SECONDS) {
+			return false;
+		}
+		long curSent = sent.get();
+		long curSaved = saved.get();
+		long curSuppressed = suppressed.get();
+		sentPerSecond = (curSent - windowStartSent) / elapsed;
+		savedPerSecond = (curSaved - windowStartSaved) / elapsed;
+		suppressedPerSecond = (curSuppressed - windowStartSuppressed) / elapsed;
+		windowStart = now;
+		windowStartSent = curSent;
+		windowStartSaved = curSaved;
+		windowStartSuppressed = curSuppressed;
+		return true;
+	}
+
+	/**
+	 * @return writes that went out on the bus per second, over the last window
+	 */
+	public static double getSentPerSecond() {
+		return sentPerSecond;
+	}
+
+	/**
+	 * @return writes saved per second, over the last window
+	 */
+	public static double getSavedPerSecond() {
+		return savedPerSecond;
+	}
+
+	/**
+	 * @return repeated set() calls suppressed per second, over the last window
+	 */
+	public static double getSuppressedPerSecond() {
+		return suppressedPerSecond;
+	}
+}
@@ -1,134 +1,139 @@
-
 package frc.robot.components;
 
-import frc.robot.Constants;
-
-import com.ctre.phoenix.motorcontrol.ControlMode;
-import com.ctre.phoenix.motorcontrol.FeedbackDevice;
-import com.ctre.phoenix.motorcontrol.IMotorControllerEnhanced;
-import com.ctre.phoenix.motorcontrol.NeutralMode;
-import com.ctre.phoenix.motorcontrol.can.TalonSRX;
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
 
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants;
+import frc.robot.SensorSnapshot;
+import frc.robot.telemetry.TelemetryService;
 
 /**
  * Each DrivePod represents one of the sides of the robot. Each pod consists of
- * 3 drive motors slaved into one gearbox, along with its shifter and shaft
- * encoder.
+ * 3 drive motors slaved into one gearbox, along with its shifter and encoder.
+ *
+ * The velocity and motion profile loops run on the lead motor
+ * controller, so the control loop only has to send setpoints. TalonDrivePod
+ * and SparkMaxDrivePod fill this in for each kind of controller.
+ *
+ * Apart from addTelemetry(), sense() and the profile buffer calls, which the
+ * trajectory executor makes, everything here is for the drive control loop's
+ * thread.
  */
-
-public class DrivePod {
-	// Measured 2/13/18 on practice robot on "field" carpet
-	private static final double ENCODER_TICKS_PER_INCH = 23840.0 / (4 * 12); // 25560.0 / (4 * 12);
-
-	private IMotorControllerEnhanced leader, follower1, follower2;
-	private String name;
-	private double twiddle = 1.0; // This value is used to force SmartDashboard line graphs to update by slightly changing the value
-
-	// Provide the CAN addresses of the three motor controllers.
-	// Set reverse to true if positive throttle values correspond to moving the
-	// robot backwards.
-	// (This is to account for the way the drive pods are mounted in a rotationally
-	// symmetric way.)
-	// Name is for feedback on the SmartDashboard - likely "left" or "right"
-	public DrivePod(String name, int leaderCanNum, int follower1CanNum, int follower2CanNum, boolean reverse) {
-		this.name = name;
-
-		this.leader = new TalonSRX(leaderCanNum);
-		this.follower1 = new TalonSRX(follower1CanNum);
-		this.follower2 = new TalonSRX(follower2CanNum);
-		
-		// Tell the followers to follow the leader
-		follower1.set(ControlMode.Follower, leaderCanNum);
-		follower2.set(ControlMode.Follower, leaderCanNum);
-
-		leader.setInverted(reverse);
-		follower1.setInverted(reverse);
-		follower2.setInverted(reverse);
-
-		init();
-	}
-
-	private void init() {
-		// Leaders have quadrature encoders connected to their inputs
-		leader.configSelectedFeedbackSensor(FeedbackDevice.QuadEncoder, Constants.PID_IDX, Constants.CAN_TIMEOUT_MS);
-		leader.setSensorPhase(true);
-
-		leader.configForwardSoftLimitEnable(false, Constants.CAN_TIMEOUT_MS);
-		leader.configReverseSoftLimitEnable(false, Constants.CAN_TIMEOUT_MS);
-
-	}
-
-	public double getPositionInches() {
-		return leader.getSelectedSensorPosition(Constants.PID_IDX) / ENCODER_TICKS_PER_INCH;
-	}
-
-
-	public double getTargetVelocityInchesPerSecond() {
-		if (getControlMode() == ControlMode.Velocity) {
-			double speedTicksPer100ms = leader.getClosedLoopTarget(Constants.PID_IDX);
-			return (speedTicksPer100ms / ENCODER_TICKS_PER_INCH) * 10.0;
-		} else {
-			return 0;
-		}
-	}
-
-	private ControlMode getControlMode() {
-		return leader.getControlMode();
-	}
-
-	public void log() {
-		if (twiddle > 1.0) {
-			twiddle = 1.0;
-		} else {
-			twiddle = 1.000001;
+public interface DrivePod {
+	/**
+	 * Make a pod for the drivebase, on whichever controllers the robot has
+	 *
+	 * @param name    for the dashboard, likely "Left" or "Right"
+	 * @param reverse true if positive output moves the robot backwards, as the
+	 *                gearboxes are mounted rotationally symmetric
+	 */
+	static DrivePod create(String name, int leaderCanNum, int follower1CanNum, int follower2CanNum,
+			boolean reverse) {
+		if (Constants.DRIVE_USES_SPARK_MAX) {
+			return new SparkMaxDrivePod(name, leaderCanNum, follower1CanNum, follower2CanNum, reverse);
 		}
-		// Anything we wanna see on the SmartDashboard, put here. Use "name",
-		// which should be "left" or "right".
-		SmartDashboard.putNumber(name + " position (in)", twiddle * getPositionInches());
-		SmartDashboard.putNumber(name + " velocity (inps)", twiddle * getEncoderVelocityFeetPerSecond() * 12.0);
-		SmartDashboard.putNumber(name + " target velocity (inps)", twiddle * getTargetVelocityInchesPerSecond());
-		SmartDashboard.putNumber("BUSvoltage", leader.getBusVoltage());
-		SmartDashboard.putNumber("OutputVoltage", leader.getMotorOutputVoltage());
-		SmartDashboard.putNumber("eIZone",
-				leader.configGetParameter(314, Constants.CAN_ORDINAL_SLOT0, Constants.CAN_TIMEOUT_MS));
-		SmartDashboard.putNumber("eIValue",
-				leader.configGetParameter(311, Constants.CAN_ORDINAL_SLOT0, Constants.CAN_TIMEOUT_MS));
-	}
-
-	// Throttle here is the traditional value, between -1.0 and 1.0, indicating
-	// how much power should
-	// be applied to the motor. It corresponds well to speed.
-	public void setThrottle(double throttle) {
-		// This is the only set...() method where we don't need to call either
-		// applySpeedPidConsts() or applyPositionPidConsts().
-		leader.set(ControlMode.PercentOutput, throttle);
-		// followers follow
-	}
-
-	// Max speed back and forward, always make this number positve when setting it.
-	public void setMaxSpeed(double maxSpeed) {
-		leader.configPeakOutputForward(maxSpeed, Constants.CAN_TIMEOUT_MS);
-		leader.configPeakOutputReverse(-maxSpeed, Constants.CAN_TIMEOUT_MS);
-	}
-
-	public void setVoltageRamp(double rampRate) {
-		leader.configOpenloopRamp(rampRate, Constants.CAN_TIMEOUT_MS);
-	}
-
-	public void enableBrakeMode(boolean isEnabled) {
-		leader.setNeutralMode(isEnabled ? NeutralMode.Brake : NeutralMode.Coast);
-		follower1.setNeutralMode(isEnabled ? NeutralMode.Brake : NeutralMode.Coast);
-		follower2.setNeutralMode(isEnabled ? NeutralMode.Brake : NeutralMode.Coast);
-	}
-
-	public double getQuadEncPos() {
-		return leader.getSelectedSensorPosition(Constants.PID_IDX);
-	}
-
-	public double getEncoderVelocityFeetPerSecond() {
-		return (leader.getSelectedSensorVelocity(Constants.PID_IDX)) * (1 / (ENCODER_TICKS_PER_INCH * 12)) * (10 / 1);
+		return new TalonDrivePod(name, leaderCanNum, follower1CanNum, follower2CanNum, reverse);
 	}
 
-
+	/**
+	 * Read the encoder into a sensor snapshot, from the controller's cached
+	 * status.
+	 */
+	void sense(SensorSnapshot.Pod out);
+
+	/**
+	 * Add everything we want to see on the SmartDashboard to the telemetry
+	 * service
+	 */
+	void addTelemetry(TelemetryService telemetry);
+
+	/**
+	 * Open loop output, between -1.0 and 1.0. It corresponds well to speed.
+	 */
+	void setThrottle(double throttle);
+
+	/**
+	 * Run the velocity loop on the controller, with the gains for the selected
+	 * gear.
+	 *
+	 * @param inchesPerSecond positive for forward
+	 */
+	void setVelocityInchesPerSecond(double inchesPerSecond);
+
+	/**
+	 * Tell the pod which gear the shifter is in, for the velocity gains and any
+	 * unit conversions. Cheap to call every pass.
+	 */
+	void selectGear(boolean isHighGear);
+
+	/**
+	 * Get ready to stream a new motion profile: clear out any old points, and take
+	 * the current position as the profile's zero. May block.
+	 *
+	 * @param pointPeriodMs how long each point lasts
+	 */
+	void startProfile(int pointPeriodMs);
+
+	/**
+	 * Add one point to the end of the motion profile.
+	 *
+	 * @param positionInches  from the start of the profile
+	 * @param inchesPerSecond positive for forward
+	 * @param durationMs      how long to spend on this point
+	 * @param isHighGear      picks the gains the path was planned for
+	 * @param isLast          true for the final point
+	 * @return true if the point was accepted
+	 */
+	boolean pushProfilePoint(double positionInches, double inchesPerSecond, int durationMs, boolean isHighGear,
+			boolean isLast);
+
+	boolean isProfileBufferFull();
+
+	/**
+	 * Move buffered points along towards the controller
+	 */
+	void processProfileBuffer();
+
+	void getProfileStatus(MotionProfileStatus status);
+
+	void clearProfileUnderrun();
+
+	/**
+	 * Run the motion profile.
+	 *
+	 * @param output Disable, Enable or Hold
+	 */
+	void setProfileOutput(SetValueMotionProfile output);
+
+	/**
+	 * Throw away any points left in the motion profile buffers
+	 */
+	void stopProfile();
+
+	/**
+	 * Max output back and forward, as a positive number. This may be a blocking
+	 * config call, so don't call it from the periodic loop.
+	 */
+	void setMaxSpeed(double maxSpeed);
+
+	/**
+	 * @param rampRate seconds from neutral to full open loop output
+	 */
+	void setVoltageRamp(double rampRate);
+
+	void enableBrakeMode(boolean isEnabled);
+
+	/**
+	 * If any of the motor controllers has reset since we last looked (eg after a
+	 * brownout), send again whatever it has forgotten.
+	 */
+	void checkForReset();
+
+	/**
+	 * Change how often the controllers send their status frames. Doesn't wait for
+	 * them to confirm, so it's safe to call from the periodic loop.
+	 */
+	void setCanProfile(CanProfile profile);
+
+	CanProfile getCanProfile();
 }
@@ -0,0 +1,550 @@
+package frc.robot.components;
+
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.revrobotics.CANEncoder;
+import com.revrobotics.CANPIDController;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMax.IdleMode;
+import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+import com.revrobotics.ControlType;
+
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.Constants;
+import frc.robot.SensorSnapshot;
+import frc.robot.telemetry.TelemetryService;
+
+/**
+ * A drive pod on SPARK MAXes driving NEOs. The leader's integrated encoder
+ * measures the motor, ahead of the shifter, so its rotations are turned into
+ * inches with the ratio of whichever gear is selected. The velocity and
+ * position loops run on the leader.
+ *
+ * The SPARK MAX has no motion profile executor, so the profile points are
+ * buffered here, and the control loop walks through them, sending each pass's
+ * position with the point's velocity as a feedforward. The profile runs at the
+ * control loop's rate rather than the Talon's 1 kHz, but the position loop
+ * between setpoints still runs on the SPARK MAX.
+ *
+ * The encoder's velocity filtering can't be configured, so CanProfile's
+ * velocity measurement settings don't apply here.
+ */
+public class SparkMaxDrivePod implements DrivePod {
+	// Until the NEO gearboxes are measured, assume the top speeds are at the motor's free speed
+	private static final double LOW_GEAR_INCHES_PER_ROTATION = Constants.LOW_GEAR_TOP_SPEED * 12.0
+			/ (Constants.NEO_FREE_SPEED_RPM / 60.0);
+	private static final double HIGH_GEAR_INCHES_PER_ROTATION = Constants.HIGH_GEAR_TOP_SPEED * 12.0
+			/ (Constants.NEO_FREE_SPEED_RPM / 60.0);
+	// So the velocity feedforward is the same in both gears: full output at free speed
+	private static final double VELOCITY_KF = 1.0 / Constants.NEO_FREE_SPEED_RPM;
+
+	// Ignored for open loop output, but part of every command
+	private static final int OPEN_LOOP_SLOT = 0;
+
+	// As many points as the Talon's top level buffer holds
+	private static final int PROFILE_CAPACITY = 2048;
+
+	private final CANSparkMax leader, follower1, follower2;
+	private final CANEncoder encoder;
+	// All writes go through these, so that repeated values never reach the bus
+	private final CachingSparkMax leaderOut, follower1Out, follower2Out;
+	private final String name;
+
+	// Status frame periods in use; reapplied if a controller resets, since it forgets them
+	private volatile CanProfile canProfile = CanProfile.MATCH;
+
+	private volatile boolean highGear = false;
+	private volatile double maxOutput = 1.0;
+	// Set after the flash was burnt, so lost in a reset; checkForReset() sends them again
+	private volatile double rampRate = Double.NaN;
+	private volatile IdleMode idleMode = null;
+	private volatile double targetInchesPerSecond = 0; // For telemetry
+
+	// Odometry, integrated on the control loop thread so each rotation counts in the gear it was driven in
+	private double lastRotations;
+	private volatile double positionInches = 0;
+
+	// The motion profile, pushed by the trajectory executor and run by the control loop
+	private final Object profileLock = new Object();
+	private final double[] profileRotations = new double[PROFILE_CAPACITY];
+	private final double[] profileRotationsPerSecond = new double[PROFILE_CAPACITY];
+	private final double[] profileFeedForward = new double[PROFILE_CAPACITY];
+	private final int[] profileDurationMs = new int[PROFILE_CAPACITY];
+	private final boolean[] profileIsLast = new boolean[PROFILE_CAPACITY];
+	private int profileHead = 0; // The active point, once running
+	private int profileCount = 0; // Including the active point
+	private double profileStartRotations = 0; // Profile positions are relative to this
+	private boolean profileRunning = false;
+	private long pointStartUs = 0; // When the active point started, on the FPGA clock
+	private boolean profileUnderrun = false;
+	private double holdRotations = Double.NaN; // Last position the profile asked for
+
+	// How often to sample each kind of telemetry, in Hz
+	private static final double TELEMETRY_MOTION_RATE_HZ = 20;
+	private static final double TELEMETRY_ELECTRICAL_RATE_HZ = 4;
+	// Smallest changes worth a dashboard update
+	private static final double TELEMETRY_POSITION_DEADBAND_IN = 0.25;
+	private static final double TELEMETRY_VELOCITY_DEADBAND_INPS = 0.5;
+	private static final double TELEMETRY_VOLTAGE_DEADBAND = 0.1;
+	private static final double TELEMETRY_CURRENT_DEADBAND_A = 1.0;
+	private static final double TELEMETRY_TEMPERATURE_DEADBAND_C = 1.0;
+
+	/**
+	 * Provide the CAN addresses of the three SPARK MAXes.
+	 *
+	 * @param name    for the dashboard, likely "Left" or "Right"
+	 * @param reverse true if positive output moves the robot backwards
+	 */
+	public SparkMaxDrivePod(String name, int leaderCanNum, int follower1CanNum, int follower2CanNum,
+			boolean reverse) {
+		this.name = name;
+
+		leader = new CANSparkMax(leaderCanNum, MotorType.kBrushless);
+		follower1 = new CANSparkMax(follower1CanNum, MotorType.kBrushless);
+		follower2 = new CANSparkMax(follower2CanNum, MotorType.kBrushless);
+		encoder = leader.getEncoder();
+
+		leaderOut = new CachingSparkMax(leader);
+		follower1Out = new CachingSparkMax(follower1);
+		follower2Out = new CachingSparkMax(follower2);
+
+		init(reverse);
+	}
+
+	private void init(boolean reverse) {
+		// Unlike a Talon's, the settings are lost in a reset unless they're in flash.
+		// The flash only takes so many writes, so only burn it when what's there
+		// isn't what we want, eg the first boot after the gains change.
+		if (!isConfigured(reverse)) {
+			System.out.println(name + " drive SPARK MAXes not configured; writing their flash");
+			configure(reverse);
+		}
+
+		lastRotations = encoder.getPosition();
+		applyCanProfile(canProfile);
+	}
+
+	/**
+	 * @return true if the controllers already have the inversion, following and
+	 *         gains that configure() would give them
+	 */
+	private boolean isConfigured(boolean reverse) {
+		CANPIDController pid = leader.getPIDController();
+		return leader.getInverted() == reverse && follower1.isFollower() && follower2.isFollower()
+				&& hasGains(pid, Constants.LOW_GEAR_SLOT, VELOCITY_KF, Constants.SPARK_LOW_GEAR_KP,
+						Constants.SPARK_LOW_GEAR_KI, Constants.SPARK_LOW_GEAR_KD)
+				&& hasGains(pid, Constants.HIGH_GEAR_SLOT, VELOCITY_KF, Constants.SPARK_HIGH_GEAR_KP,
+						Constants.SPARK_HIGH_GEAR_KI, Constants.SPARK_HIGH_GEAR_KD)
+				&& hasGains(pid, Constants.POSITION_SLOT, 0, Constants.SPARK_POSITION_KP,
+						Constants.SPARK_POSITION_KI, Constants.SPARK_POSITION_KD);
+	}
+
+	private static boolean hasGains(CANPIDController pid, int slot, double kF, double kP, double kI, double kD) {
+		// The SPARK MAX keeps them as floats
+		return (float) pid.getFF(slot) == (float) kF && (float) pid.getP(slot) == (float) kP
+				&& (float) pid.getI(slot) == (float) kI && (float) pid.getD(slot) == (float) kD
+				&& pid.getIZone(slot) == 0;
+	}
+
+	/**
+	 * Start from a known configuration, whatever was left in the controllers, and
+	 * save it to flash. Slow, and wears the flash, so only when it has changed.
+	 */
+	private void configure(boolean reverse) {
+		leader.restoreFactoryDefaults();
+		follower1.restoreFactoryDefaults();
+		follower2.restoreFactoryDefaults();
+
+		// The followers copy the leader's output, inversion and all
+		leader.setInverted(reverse);
+		follower1.follow(leader);
+		follower2.follow(leader);
+
+		configGains(Constants.LOW_GEAR_SLOT, VELOCITY_KF, Constants.SPARK_LOW_GEAR_KP, Constants.SPARK_LOW_GEAR_KI,
+				Constants.SPARK_LOW_GEAR_KD);
+		configGains(Constants.HIGH_GEAR_SLOT, VELOCITY_KF, Constants.SPARK_HIGH_GEAR_KP,
+				Constants.SPARK_HIGH_GEAR_KI, Constants.SPARK_HIGH_GEAR_KD);
+		// No kFF, since in position mode it would multiply the target position
+		configGains(Constants.POSITION_SLOT, 0, Constants.SPARK_POSITION_KP, Constants.SPARK_POSITION_KI,
+				Constants.SPARK_POSITION_KD);
+
+		leader.burnFlash();
+		follower1.burnFlash();
+		follower2.burnFlash();
+	}
+
+	private void configGains(int slot, double kF, double kP, double kI, double kD) {
+		CANPIDController pid = leader.getPIDController();
+		pid.setFF(kF, slot);
+		pid.setP(kP, slot);
+		pid.setI(kI, slot);
+		pid.setD(kD, slot);
+		pid.setIZone(0, slot);
+	}
+
+	@Override
+	public void setCanProfile(CanProfile profile) {
+		if (profile != canProfile) {
+			canProfile = profile;
+			applyCanProfile(profile);
+		}
+	}
+
+	@Override
+	public CanProfile getCanProfile() {
+		return canProfile;
+	}
+
+	/**
+	 * The SPARK MAX sends three frames: applied output and faults, velocity with
+	 * the electrical readings, and position. There is no closed loop error or
+	 * target frame to speed up for tuning.
+	 */
+	private void applyCanProfile(CanProfile profile) {
+		// The followers mirror the leader's applied output, so it always goes at the default rate
+		leader.setPeriodicFramePeriod(PeriodicFrame.kStatus0, CanProfile.LEADER_GENERAL_MS);
+		leader.setPeriodicFramePeriod(PeriodicFrame.kStatus1, profile.leaderFeedbackMs);
+		leader.setPeriodicFramePeriod(PeriodicFrame.kStatus2, profile.leaderFeedbackMs);
+
+		applyFollowerCanProfile(follower1, profile);
+		applyFollowerCanProfile(follower2, profile);
+	}
+
+	private static void applyFollowerCanProfile(CANSparkMax follower, CanProfile profile) {
+		follower.setPeriodicFramePeriod(PeriodicFrame.kStatus0, profile.followerGeneralMs);
+		follower.setPeriodicFramePeriod(PeriodicFrame.kStatus1, profile.followerAnalogMs);
+		follower.setPeriodicFramePeriod(PeriodicFrame.kStatus2, CanProfile.SLOWEST_MS);
+	}
+
+	private static double inchesPerRotation(boolean isHighGear) {
+		return isHighGear ? HIGH_GEAR_INCHES_PER_ROTATION : LOW_GEAR_INCHES_PER_ROTATION;
+	}
+
+	private static double staticFeedForward(double inchesPerSecond) {
+		return (inchesPerSecond == 0) ? 0 : Math.copySign(Constants.VELOCITY_KS, inchesPerSecond);
+	}
+
+	/**
+	 * Read the encoder into a sensor snapshot, and add the distance since the
+	 * last read to the odometry. Call once per control loop pass.
+	 *
+	 * positionTicks is in motor rotations, which don't map to distance across a
+	 * shift.
+	 */
+	@Override
+	public void sense(SensorSnapshot.Pod out) {
+		double rotations = encoder.getPosition();
+		double inchesPerRotation = inchesPerRotation(highGear);
+		positionInches += (rotations - lastRotations) * inchesPerRotation;
+		lastRotations = rotations;
+
+		out.positionTicks = rotations;
+		out.positionInches = positionInches;
+		out.velocityFeetPerSecond = getEncoderVelocityInchesPerSecond() / 12.0;
+	}
+
+	private double getEncoderVelocityInchesPerSecond() {
+		return encoder.getVelocity() / 60.0 * inchesPerRotation(highGear);
+	}
+
+	/**
+	 * Add everything we want to see on the SmartDashboard to the telemetry
+	 * service. Signal names start with "name", which should be "left" or "right".
+	 *
+	 * The samplers run on the telemetry thread, and only read the controllers'
+	 * cached status frames.
+	 */
+	@Override
+	public void addTelemetry(TelemetryService telemetry) {
+		telemetry.addSignal(name + " position (in)", TELEMETRY_MOTION_RATE_HZ, TELEMETRY_POSITION_DEADBAND_IN,
+				() -> positionInches);
+		telemetry.addSignal(name + " velocity (inps)", TELEMETRY_MOTION_RATE_HZ, TELEMETRY_VELOCITY_DEADBAND_INPS,
+				this::getEncoderVelocityInchesPerSecond);
+		telemetry.addSignal(name + " target velocity (inps)", TELEMETRY_MOTION_RATE_HZ,
+				TELEMETRY_VELOCITY_DEADBAND_INPS, () -> targetInchesPerSecond);
+		telemetry.addSignal(name + " BUSvoltage", TELEMETRY_ELECTRICAL_RATE_HZ, TELEMETRY_VOLTAGE_DEADBAND,
+				leader::getBusVoltage);
+		telemetry.addSignal(name + " OutputVoltage", TELEMETRY_ELECTRICAL_RATE_HZ, TELEMETRY_VOLTAGE_DEADBAND,
+				() -> leader.getAppliedOutput() * leader.getBusVoltage());
+		telemetry.addSignal(name + " current (A)", TELEMETRY_ELECTRICAL_RATE_HZ, TELEMETRY_CURRENT_DEADBAND_A,
+				leader::getOutputCurrent);
+		telemetry.addSignal(name + " motor temperature (C)", TELEMETRY_ELECTRICAL_RATE_HZ,
+				TELEMETRY_TEMPERATURE_DEADBAND_C, leader::getMotorTemperature);
+	}
+
+	@Override
+	public void setThrottle(double throttle) {
+		// The output range only limits the closed loops, so clamp open loop output here
+		double max = maxOutput;
+		targetInchesPerSecond = 0;
+		leaderOut.set(ControlType.kDutyCycle, Math.max(-max, Math.min(max, throttle)), OPEN_LOOP_SLOT, 0);
+		// followers follow
+	}
+
+	/**
+	 * Run the velocity loop on the leader, at the given speed, in the selected
+	 * gear. Adds a static friction feedforward in the direction of travel.
+	 *
+	 * @param inchesPerSecond positive for forward
+	 */
+	@Override
+	public void setVelocityInchesPerSecond(double inchesPerSecond) {
+		boolean isHighGear = highGear;
+		double rpm = inchesPerSecond / inchesPerRotation(isHighGear) * 60.0;
+		targetInchesPerSecond = inchesPerSecond;
+		leaderOut.set(ControlType.kVelocity, rpm, isHighGear ? Constants.HIGH_GEAR_SLOT : Constants.LOW_GEAR_SLOT,
+				staticFeedForward(inchesPerSecond));
+	}
+
+	/**
+	 * Pick the gear for the velocity gains and the encoder scaling. Only the
+	 * control loop should call this, and it should call it in step with the
+	 * shifter.
+	 */
+	@Override
+	public void selectGear(boolean isHighGear) {
+		highGear = isHighGear;
+	}
+
+	/**
+	 * Get ready to stream a new motion profile: clear out any old points, and take
+	 * the current position as the profile's zero. Points are run by the control
+	 * loop, so the point period needs no setting up here.
+	 */
+	@Override
+	public void startProfile(int pointPeriodMs) {
+		synchronized (profileLock) {
+			clearProfile();
+			profileUnderrun = false;
+			holdRotations = Double.NaN;
+			profileStartRotations = encoder.getPosition();
+		}
+	}
+
+	@Override
+	public boolean pushProfilePoint(double positionInches, double inchesPerSecond, int durationMs,
+			boolean isHighGear, boolean isLast) {
+		double inchesPerRotation = inchesPerRotation(isHighGear);
+		double topSpeed = (isHighGear ? Constants.HIGH_GEAR_TOP_SPEED : Constants.LOW_GEAR_TOP_SPEED) * 12.0;
+		synchronized (profileLock) {
+			if (profileCount == PROFILE_CAPACITY) {
+				return false;
+			}
+			int i = (profileHead + profileCount) % PROFILE_CAPACITY;
+			profileRotations[i] = profileStartRotations + positionInches / inchesPerRotation;
+			profileRotationsPerSecond[i] = inchesPerSecond / inchesPerRotation;
+			profileFeedForward[i] = inchesPerSecond / topSpeed + staticFeedForward(inchesPerSecond);
+			profileDurationMs[i] = durationMs;
+			profileIsLast[i] = isLast;
+			profileCount++;
+			return true;
+		}
+	}
+
+	@Override
+	public boolean isProfileBufferFull() {
+		synchronized (profileLock) {
+			return profileCount == PROFILE_CAPACITY;
+		}
+	}
+
+	/**
+	 * Nothing to do; the points are already where the control loop runs them.
+	 */
+	@Override
+	public void processProfileBuffer() {
+	}
+
+	/**
+	 * Report on the profile in the Talon's terms. Every point not yet finished
+	 * counts as being in the bottom buffer.
+	 */
+	@Override
+	public void getProfileStatus(MotionProfileStatus status) {
+		synchronized (profileLock) {
+			boolean activePointValid = profileRunning && profileCount > 0;
+			status.topBufferRem = PROFILE_CAPACITY - profileCount;
+			status.topBufferCnt = 0;
+			status.btmBufferCnt = profileCount;
+			status.hasUnderrun = profileUnderrun;
+			status.isUnderrun = profileUnderrun;
+			status.activePointValid = activePointValid;
+			status.isLast = activePointValid && profileIsLast[profileHead];
+			status.profileSlotSelect0 = Constants.POSITION_SLOT;
+			status.timeDurMs = activePointValid ? profileDurationMs[profileHead] : 0;
+			status.outputEnable = profileRunning ? SetValueMotionProfile.Enable : SetValueMotionProfile.Disable;
+		}
+	}
+
+	@Override
+	public void clearProfileUnderrun() {
+		synchronized (profileLock) {
+			profileUnderrun = false;
+		}
+	}
+
+	/**
+	 * Run the motion profile for this control loop pass.
+	 *
+	 * @param output Disable, Enable or Hold
+	 */
+	@Override
+	public void setProfileOutput(SetValueMotionProfile output) {
+		targetInchesPerSecond = 0;
+		switch (output) {
+		case Enable:
+			runProfile();
+			break;
+		case Hold:
+			holdProfile();
+			break;
+		default:
+			synchronized (profileLock) {
+				profileRunning = false;
+			}
+			leaderOut.set(ControlType.kDutyCycle, 0, OPEN_LOOP_SLOT, 0);
+			break;
+		}
+	}
+
+	/**
+	 * Move on to the point that covers now, like the Talon's executor, and send
+	 * where the profile should be. Stays on the last point once it's done, and
+	 * flags an underrun if the points run out before the last one.
+	 */
+	private void runProfile() {
+		double target, feedForward;
+		synchronized (profileLock) {
+			if (profileCount == 0) {
+				profileUnderrun = true;
+				target = holdRotations;
+				feedForward = 0;
+			} else {
+				long now = RobotController.getFPGATime();
+				if (!profileRunning) {
+					profileRunning = true;
+					pointStartUs = now;
+				}
+				long durationUs = profileDurationMs[profileHead] * 1000L;
+				while (now - pointStartUs >= durationUs && !profileIsLast[profileHead]) {
+					if (profileCount == 1) {
+						profileUnderrun = true;
+						break;
+					}
+					pointStartUs += durationUs;
+					profileHead = (profileHead + 1) % PROFILE_CAPACITY;
+					profileCount--;
+					durationUs = profileDurationMs[profileHead] * 1000L;
+				}
+				double elapsedS = Math.min(now - pointStartUs, durationUs) / 1e6;
+				target = profileRotations[profileHead] + profileRotationsPerSecond[profileHead] * elapsedS;
+				feedForward = profileFeedForward[profileHead];
+				holdRotations = target;
+			}
+		}
+		if (Double.isNaN(target)) {
+			target = lastRotations;
+		}
+		leaderOut.set(ControlType.kPosition, target, Constants.POSITION_SLOT, feedForward);
+	}
+
+	/**
+	 * Stay where the profile last put us
+	 */
+	private void holdProfile() {
+		double target;
+		synchronized (profileLock) {
+			profileRunning = false;
+			target = holdRotations;
+			if (Double.isNaN(target)) {
+				target = lastRotations;
+				holdRotations = target;
+			}
+		}
+		leaderOut.set(ControlType.kPosition, target, Constants.POSITION_SLOT, 0);
+	}
+
+	@Override
+	public void stopProfile() {
+		synchronized (profileLock) {
+			clearProfile();
+		}
+	}
+
+	private void clearProfile() {
+		profileHead = 0;
+		profileCount = 0;
+		profileRunning = false;
+	}
+
+	/**
+	 * Max output back and forward, as a positive number. Waits for the leader to
+	 * confirm, so don't call it from the periodic loop.
+	 */
+	@Override
+	public void setMaxSpeed(double maxSpeed) {
+		maxOutput = maxSpeed;
+		sendOutputRange(maxSpeed);
+	}
+
+	private void sendOutputRange(double maxSpeed) {
+		leaderOut.setOutputRange(-maxSpeed, maxSpeed, Constants.LOW_GEAR_SLOT, Constants.HIGH_GEAR_SLOT,
+				Constants.POSITION_SLOT);
+	}
+
+	@Override
+	public void setVoltageRamp(double rampRate) {
+		this.rampRate = rampRate;
+		leaderOut.setOpenLoopRampRate(rampRate);
+	}
+
+	@Override
+	public void enableBrakeMode(boolean isEnabled) {
+		IdleMode mode = isEnabled ? IdleMode.kBrake : IdleMode.kCoast;
+		idleMode = mode;
+		sendIdleMode(mode);
+	}
+
+	private void sendIdleMode(IdleMode mode) {
+		leaderOut.setIdleMode(mode);
+		follower1Out.setIdleMode(mode);
+		follower2Out.setIdleMode(mode);
+	}
+
+	/**
+	 * If any of the controllers has reset since we last looked (eg after a
+	 * brownout), forget what we sent it, so that the next commands go out again.
+	 * The gains, inversion and following come back from flash, but the status
+	 * frame periods, output range, ramp and idle mode were set after it was burnt,
+	 * so send them again. Those wait for the controllers to confirm, which holds up
+	 * the control loop, but only after a reset.
+	 */
+	@Override
+	public void checkForReset() {
+		boolean reset = checkForReset(leader, leaderOut);
+		reset |= checkForReset(follower1, follower1Out);
+		reset |= checkForReset(follower2, follower2Out);
+		if (reset) {
+			applyCanProfile(canProfile);
+			sendOutputRange(maxOutput);
+			double ramp = rampRate;
+			if (!Double.isNaN(ramp)) {
+				leaderOut.setOpenLoopRampRate(ramp);
+			}
+			IdleMode mode = idleMode;
+			if (mode != null) {
+				sendIdleMode(mode);
+			}
+		}
+	}
+
+	private static boolean checkForReset(CANSparkMax controller, CachingSparkMax out) {
+		if (!controller.getStickyFault(CANSparkMax.FaultID.kHasReset)) {
+			return false;
+		}
+		controller.clearFaults();
+		out.invalidate();
+		return true;
+	}
+}
@@ -0,0 +1,411 @@
+
+package frc.robot.components;
+
+import frc.robot.Constants;
+import frc.robot.SensorSnapshot;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motion.TrajectoryPoint;
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.IMotorControllerEnhanced;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
+import com.ctre.phoenix.motorcontrol.can.TalonSRX;
+
+import frc.robot.telemetry.TelemetryService;
+
+/**
+ * A drive pod on Talon SRXs, with the quadrature encoder on the gearbox output
+ * shaft wired to the leader. The velocity, position and motion profile loops
+ * all run on the leader.
+ */
+
+public class TalonDrivePod implements DrivePod {
+	// Measured 2/13/18 on practice robot on "field" carpet
+	public static final double ENCODER_TICKS_PER_INCH = 23840.0 / (4 * 12); // 25560.0 / (4 * 12);
+
+	private IMotorControllerEnhanced leader, follower1, follower2;
+	// All writes go through these, so that repeated values never reach the bus
+	private CachingMotorController leaderOut, follower1Out, follower2Out;
+	private String name;
+
+	// Reused for every motion profile point we push, so streaming doesn't allocate
+	private final TrajectoryPoint profilePoint = new TrajectoryPoint();
+	private double profileStartTicks = 0; // Profile positions are relative to this
+
+	// Status frame periods in use; reapplied if a Talon resets, since it forgets them
+	private volatile CanProfile canProfile = CanProfile.MATCH;
+
+	// Velocity gains for the gear we're in; only sent when a velocity command needs them
+	private volatile int gearSlot = Constants.LOW_GEAR_SLOT;
+
+	// How often to sample each kind of telemetry, in Hz
+	private static final double TELEMETRY_MOTION_RATE_HZ = 20;
+	private static final double TELEMETRY_ELECTRICAL_RATE_HZ = 4;
+	// Smallest changes worth a dashboard update
+	private static final double TELEMETRY_POSITION_DEADBAND_IN = 0.25;
+	private static final double TELEMETRY_VELOCITY_DEADBAND_INPS = 0.5;
+	private static final double TELEMETRY_VOLTAGE_DEADBAND = 0.1;
+
+	// Provide the CAN addresses of the three motor controllers.
+	// Set reverse to true if positive throttle values correspond to moving the
+	// robot backwards.
+	// (This is to account for the way the drive pods are mounted in a rotationally
+	// symmetric way.)
+	// Name is for feedback on the SmartDashboard - likely "left" or "right"
+	public TalonDrivePod(String name, int leaderCanNum, int follower1CanNum, int follower2CanNum, boolean reverse) {
+		this(name, new TalonSRX(leaderCanNum), new TalonSRX(follower1CanNum), new TalonSRX(follower2CanNum), reverse);
+	}
+
+	/**
+	 * Build a pod around motor controllers made elsewhere, eg simulated ones
+	 */
+	public TalonDrivePod(String name, IMotorControllerEnhanced leader, IMotorControllerEnhanced follower1,
+			IMotorControllerEnhanced follower2, boolean reverse) {
+		this.name = name;
+
+		this.leader = leader;
+		this.follower1 = follower1;
+		this.follower2 = follower2;
+		
+		// Tell the followers to follow the leader
+		follower1.follow(leader);
+		follower2.follow(leader);
+
+		leader.setInverted(reverse);
+		follower1.setInverted(reverse);
+		follower2.setInverted(reverse);
+
+		leaderOut = new CachingMotorController(leader);
+		follower1Out = new CachingMotorController(follower1);
+		follower2Out = new CachingMotorController(follower2);
+
+		init();
+	}
+
+	private void init() {
+		// Leaders have quadrature encoders connected to their inputs
+		leader.configSelectedFeedbackSensor(FeedbackDevice.QuadEncoder, Constants.PID_IDX, Constants.CAN_TIMEOUT_MS);
+		leader.setSensorPhase(true);
+
+		leader.configForwardSoftLimitEnable(false, Constants.CAN_TIMEOUT_MS);
+		leader.configReverseSoftLimitEnable(false, Constants.CAN_TIMEOUT_MS);
+
+		// Velocity gains for each gear, so that shifting only has to pick a slot
+		configVelocityGains(Constants.LOW_GEAR_SLOT, Constants.LOW_GEAR_TOP_SPEED, Constants.LOW_GEAR_KP,
+				Constants.LOW_GEAR_KI, Constants.LOW_GEAR_KD);
+		configVelocityGains(Constants.HIGH_GEAR_SLOT, Constants.HIGH_GEAR_TOP_SPEED, Constants.HIGH_GEAR_KP,
+				Constants.HIGH_GEAR_KI, Constants.HIGH_GEAR_KD);
+		leaderOut.selectProfileSlot(Constants.LOW_GEAR_SLOT, Constants.PID_IDX);
+
+		applyCanProfile(canProfile, Constants.CAN_TIMEOUT_MS);
+	}
+
+	/**
+	 * Change how often the Talons send their status frames, and how they measure
+	 * velocity. Doesn't wait for the Talons to confirm, so it's safe to call from
+	 * the periodic loop.
+	 */
+	@Override
+	public void setCanProfile(CanProfile profile) {
+		if (profile != canProfile) {
+			canProfile = profile;
+			applyCanProfile(profile, 0);
+		}
+	}
+
+	@Override
+	public CanProfile getCanProfile() {
+		return canProfile;
+	}
+
+	private void applyCanProfile(CanProfile profile, int timeoutMs) {
+		leader.setStatusFramePeriod(StatusFrameEnhanced.Status_1_General, CanProfile.LEADER_GENERAL_MS, timeoutMs);
+		leader.setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, profile.leaderFeedbackMs, timeoutMs);
+		leader.setStatusFramePeriod(StatusFrameEnhanced.Status_13_Base_PIDF0, profile.leaderPidMs, timeoutMs);
+		leader.setStatusFramePeriod(StatusFrameEnhanced.Status_10_Targets, profile.leaderTargetsMs, timeoutMs);
+		leader.setStatusFramePeriod(StatusFrameEnhanced.Status_9_MotProfBuffer, profile.leaderMotionProfileMs,
+				timeoutMs);
+		leader.setStatusFramePeriod(StatusFrameEnhanced.Status_4_AinTempVbat, profile.leaderAnalogMs, timeoutMs);
+		setUnusedFramePeriods(leader, timeoutMs);
+		leader.configVelocityMeasurementPeriod(profile.velocityMeasurementPeriod, timeoutMs);
+		leader.configVelocityMeasurementWindow(profile.velocityMeasurementWindow, timeoutMs);
+
+		applyFollowerCanProfile(follower1, profile, timeoutMs);
+		applyFollowerCanProfile(follower2, profile, timeoutMs);
+	}
+
+	private static void applyFollowerCanProfile(IMotorControllerEnhanced follower, CanProfile profile,
+			int timeoutMs) {
+		follower.setStatusFramePeriod(StatusFrameEnhanced.Status_1_General, profile.followerGeneralMs, timeoutMs);
+		follower.setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, CanProfile.SLOWEST_MS, timeoutMs);
+		follower.setStatusFramePeriod(StatusFrameEnhanced.Status_13_Base_PIDF0, CanProfile.SLOWEST_MS, timeoutMs);
+		follower.setStatusFramePeriod(StatusFrameEnhanced.Status_10_Targets, CanProfile.SLOWEST_MS, timeoutMs);
+		follower.setStatusFramePeriod(StatusFrameEnhanced.Status_9_MotProfBuffer, CanProfile.SLOWEST_MS, timeoutMs);
+		follower.setStatusFramePeriod(StatusFrameEnhanced.Status_4_AinTempVbat, profile.followerAnalogMs, timeoutMs);
+		setUnusedFramePeriods(follower, timeoutMs);
+	}
+
+	/**
+	 * Slow down the frames for sensors and loops we never use
+	 */
+	private static void setUnusedFramePeriods(IMotorControllerEnhanced talon, int timeoutMs) {
+		talon.setStatusFramePeriod(StatusFrameEnhanced.Status_3_Quadrature, CanProfile.SLOWEST_MS, timeoutMs);
+		talon.setStatusFramePeriod(StatusFrameEnhanced.Status_8_PulseWidth, CanProfile.SLOWEST_MS, timeoutMs);
+		talon.setStatusFramePeriod(StatusFrameEnhanced.Status_11_UartGadgeteer, CanProfile.SLOWEST_MS, timeoutMs);
+		talon.setStatusFramePeriod(StatusFrameEnhanced.Status_12_Feedback1, CanProfile.SLOWEST_MS, timeoutMs);
+		talon.setStatusFramePeriod(StatusFrameEnhanced.Status_14_Turn_PIDF1, CanProfile.SLOWEST_MS, timeoutMs);
+	}
+
+	/**
+	 * Load one slot of velocity gains into the leader. kF is set so that the top
+	 * speed needs full output.
+	 * 
+	 * @param topSpeed top speed in this gear, in feet per second
+	 */
+	private void configVelocityGains(int slot, double topSpeed, double kP, double kI, double kD) {
+		double topSpeedTicksPer100ms = inchesPerSecondToTicksPer100ms(topSpeed * 12.0);
+		leader.config_kF(slot, 1023.0 / topSpeedTicksPer100ms, Constants.CAN_TIMEOUT_MS);
+		leader.config_kP(slot, kP, Constants.CAN_TIMEOUT_MS);
+		leader.config_kI(slot, kI, Constants.CAN_TIMEOUT_MS);
+		leader.config_kD(slot, kD, Constants.CAN_TIMEOUT_MS);
+		leader.config_IntegralZone(slot, Constants.VELOCITY_I_ZONE, Constants.CAN_TIMEOUT_MS);
+	}
+
+	private static double inchesPerSecondToTicksPer100ms(double inchesPerSecond) {
+		return inchesPerSecond * ENCODER_TICKS_PER_INCH / 10.0;
+	}
+
+	/**
+	 * Read the encoder into a sensor snapshot. This makes one read each for
+	 * position and velocity.
+	 */
+	@Override
+	public void sense(SensorSnapshot.Pod out) {
+		out.positionTicks = getQuadEncPos();
+		out.positionInches = out.positionTicks / ENCODER_TICKS_PER_INCH;
+		out.velocityFeetPerSecond = getEncoderVelocityFeetPerSecond();
+	}
+
+	public double getPositionInches() {
+		return leader.getSelectedSensorPosition(Constants.PID_IDX) / ENCODER_TICKS_PER_INCH;
+	}
+
+
+	public double getTargetVelocityInchesPerSecond() {
+		if (getControlMode() == ControlMode.Velocity) {
+			double speedTicksPer100ms = leader.getClosedLoopTarget(Constants.PID_IDX);
+			return (speedTicksPer100ms / ENCODER_TICKS_PER_INCH) * 10.0;
+		} else {
+			return 0;
+		}
+	}
+
+	private ControlMode getControlMode() {
+		return leader.getControlMode();
+	}
+
+	/**
+	 * Add everything we want to see on the SmartDashboard to the telemetry
+	 * service. Signal names start with "name", which should be "left" or "right".
+	 * 
+	 * The samplers run on the telemetry thread, and only read the Talon's cached
+	 * status frames.
+	 */
+	@Override
+	public void addTelemetry(TelemetryService telemetry) {
+		telemetry.addSignal(name + " position (in)", TELEMETRY_MOTION_RATE_HZ, TELEMETRY_POSITION_DEADBAND_IN,
+				this::getPositionInches);
+		telemetry.addSignal(name + " velocity (inps)", TELEMETRY_MOTION_RATE_HZ, TELEMETRY_VELOCITY_DEADBAND_INPS,
+				() -> getEncoderVelocityFeetPerSecond() * 12.0);
+		telemetry.addSignal(name + " target velocity (inps)", TELEMETRY_MOTION_RATE_HZ,
+				TELEMETRY_VELOCITY_DEADBAND_INPS, this::getTargetVelocityInchesPerSecond);
+		telemetry.addSignal(name + " BUSvoltage", TELEMETRY_ELECTRICAL_RATE_HZ, TELEMETRY_VOLTAGE_DEADBAND,
+				leader::getBusVoltage);
+		telemetry.addSignal(name + " OutputVoltage", TELEMETRY_ELECTRICAL_RATE_HZ, TELEMETRY_VOLTAGE_DEADBAND,
+				leader::getMotorOutputVoltage);
+		// The low gear slot's integral zone and kI, as configured in init()
+		telemetry.publishConstant(name + " eIZone", Constants.VELOCITY_I_ZONE);
+		telemetry.publishConstant(name + " eIValue", Constants.LOW_GEAR_KI);
+	}
+
+	// Throttle here is the traditional value, between -1.0 and 1.0, indicating
+	// how much power should
+	// be applied to the motor. It corresponds well to speed.
+	@Override
+	public void setThrottle(double throttle) {
+		// This is the only set...() method where we don't need to call either
+		// applySpeedPidConsts() or applyPositionPidConsts().
+		leaderOut.set(ControlMode.PercentOutput, throttle);
+		// followers follow
+	}
+
+	/**
+	 * Run the velocity loop on the Talon, at the given speed. The Talon adds a
+	 * static friction feedforward in the direction of travel.
+	 * 
+	 * @param inchesPerSecond positive for forward
+	 */
+	@Override
+	public void setVelocityInchesPerSecond(double inchesPerSecond) {
+		double feedForward = (inchesPerSecond == 0) ? 0 : Math.copySign(Constants.VELOCITY_KS, inchesPerSecond);
+		leaderOut.selectProfileSlot(gearSlot, Constants.PID_IDX);
+		leaderOut.set(ControlMode.Velocity, inchesPerSecondToTicksPer100ms(inchesPerSecond), feedForward);
+	}
+
+	/**
+	 * Pick the velocity gains for a gear. The encoder is after the gearbox, so
+	 * nothing else changes.
+	 * 
+	 * @param isHighGear true for high gear, false for low gear
+	 */
+	@Override
+	public void selectGear(boolean isHighGear) {
+		gearSlot = isHighGear ? Constants.HIGH_GEAR_SLOT : Constants.LOW_GEAR_SLOT;
+	}
+
+	/**
+	 * Get ready to stream a new motion profile: clear out any old points, and take
+	 * the current position as the profile's zero. Makes blocking config calls.
+	 * 
+	 * @param pointPeriodMs how long each point lasts
+	 */
+	@Override
+	public void startProfile(int pointPeriodMs) {
+		leader.clearMotionProfileTrajectories();
+		leader.clearMotionProfileHasUnderrun(Constants.CAN_TIMEOUT_MS);
+		leader.configMotionProfileTrajectoryPeriod(0, Constants.CAN_TIMEOUT_MS); // Each point carries its own duration
+		// Send points to the Talon twice as fast as it uses them
+		leader.changeMotionControlFramePeriod(Math.max(1, pointPeriodMs / 2));
+		profileStartTicks = leader.getSelectedSensorPosition(Constants.PID_IDX);
+	}
+
+	/**
+	 * Add one point to the end of the motion profile, in the API's top level
+	 * buffer.
+	 * 
+	 * @param positionInches  from the start of the profile
+	 * @param inchesPerSecond positive for forward
+	 * @param durationMs      how long the Talon should spend on this point
+	 * @param isHighGear      picks the gains the path was planned for
+	 * @param isLast          true for the final point
+	 * @return true if the point was accepted
+	 */
+	@Override
+	public boolean pushProfilePoint(double positionInches, double inchesPerSecond, int durationMs,
+			boolean isHighGear, boolean isLast) {
+		profilePoint.position = profileStartTicks + positionInches * ENCODER_TICKS_PER_INCH;
+		profilePoint.velocity = inchesPerSecondToTicksPer100ms(inchesPerSecond);
+		profilePoint.arbFeedFwd = (inchesPerSecond == 0) ? 0 : Math.copySign(Constants.VELOCITY_KS, inchesPerSecond);
+		profilePoint.auxiliaryPos = 0;
+		profilePoint.auxiliaryVel = 0;
+		profilePoint.auxiliaryArbFeedFwd = 0;
+		profilePoint.profileSlotSelect0 = isHighGear ? Constants.HIGH_GEAR_SLOT : Constants.LOW_GEAR_SLOT;
+		profilePoint.profileSlotSelect1 = 0;
+		profilePoint.isLastPoint = isLast;
+		profilePoint.zeroPos = false;
+		profilePoint.timeDur = durationMs;
+		profilePoint.useAuxPID = false;
+		return leader.pushMotionProfileTrajectory(profilePoint) == ErrorCode.OK;
+	}
+
+	@Override
+	public boolean isProfileBufferFull() {
+		return leader.isMotionProfileTopLevelBufferFull();
+	}
+
+	/**
+	 * Move points from the API's top level buffer down to the Talon
+	 */
+	@Override
+	public void processProfileBuffer() {
+		leader.processMotionProfileBuffer();
+	}
+
+	@Override
+	public void getProfileStatus(MotionProfileStatus status) {
+		leader.getMotionProfileStatus(status);
+	}
+
+	@Override
+	public void clearProfileUnderrun() {
+		leader.clearMotionProfileHasUnderrun(0); // Don't wait for the Talon to confirm
+	}
+
+	/**
+	 * Run the motion profile. Puts the Talon into motion profile mode.
+	 * 
+	 * @param output Disable, Enable or Hold
+	 */
+	@Override
+	public void setProfileOutput(SetValueMotionProfile output) {
+		leaderOut.set(ControlMode.MotionProfile, output.value);
+	}
+
+	/**
+	 * Throw away any points left in the motion profile buffers
+	 */
+	@Override
+	public void stopProfile() {
+		leader.clearMotionProfileTrajectories();
+	}
+
+	// Max speed back and forward, always make this number positve when setting it.
+	// This is a blocking config call, so don't call it from the periodic loop.
+	@Override
+	public void setMaxSpeed(double maxSpeed) {
+		leaderOut.configPeakOutput(maxSpeed, -maxSpeed);
+	}
+
+	@Override
+	public void setVoltageRamp(double rampRate) {
+		leaderOut.configOpenloopRamp(rampRate);
+	}
+
+	@Override
+	public void enableBrakeMode(boolean isEnabled) {
+		NeutralMode mode = isEnabled ? NeutralMode.Brake : NeutralMode.Coast;
+		leaderOut.setNeutralMode(mode);
+		follower1Out.setNeutralMode(mode);
+		follower2Out.setNeutralMode(mode);
+	}
+
+	/**
+	 * If any of the motor controllers has reset since we last looked (eg after a
+	 * brownout), forget what we sent it, so that the next commands go out again,
+	 * and send the status frame periods again.
+	 */
+	@Override
+	public void checkForReset() {
+		boolean reset = false;
+		if (leader.hasResetOccurred()) {
+			leaderOut.invalidate();
+			reset = true;
+		}
+		if (follower1.hasResetOccurred()) {
+			follower1Out.invalidate();
+			reset = true;
+		}
+		if (follower2.hasResetOccurred()) {
+			follower2Out.invalidate();
+			reset = true;
+		}
+		if (reset) {
+			// Status frame periods aren't kept across a reset either
+			applyCanProfile(canProfile, 0);
+		}
+	}
+
+	public double getQuadEncPos() {
+		return leader.getSelectedSensorPosition(Constants.PID_IDX);
+	}
+
+	public double getEncoderVelocityFeetPerSecond() {
+		return (leader.getSelectedSensorVelocity(Constants.PID_IDX)) * (1 / (ENCODER_TICKS_PER_INCH * 12)) * (10 / 1);
+	}
+
+
+}
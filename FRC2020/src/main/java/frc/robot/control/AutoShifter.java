@@ -0,0 +1,175 @@
+package frc.robot.control;
+
+import frc.robot.Constants;
+
+/**
+ * Picks the gear when the drivebase is free to shift by itself.
+ *
+ * Runs on every control loop pass from the pods' velocities. An alpha-beta
+ * filter smooths the chassis speed without much lag, and estimates the
+ * acceleration as well, so that a hard launch shifts up before low gear runs
+ * out of speed rather than after. Shifts are held off while the robot turns,
+ * while the shifter is still moving, and for a while after each shift, so the
+ * gearbox can't hunt between gears.
+ *
+ * Only touched on the control loop thread, apart from the getters, which are
+ * safe from anywhere. Has no hardware, so a simulation can drive it directly.
+ */
+public class AutoShifter {
+	/** Where the shifter is */
+	public enum State {
+		LOW, UPSHIFTING, HIGH, DOWNSHIFTING,
+	}
+
+	// Filter gains, tuned for the 200 Hz control loop
+	private static final double ALPHA = 0.25;
+	private static final double BETA = 0.01;
+	// Longer gaps than this mean the readings are stale; start the filter over
+	private static final double MAX_DT_S = 0.1;
+
+	// Shift up this long before we'd reach SPEED_TO_SHIFT_UP at the present acceleration
+	private static final double LOOKAHEAD_S = 0.25;
+	// Below this, high gear bogs down, however hard we are accelerating (ft/s)
+	private static final double MIN_UPSHIFT_SPEED = 3.5;
+	// Difference between the sides' speeds that counts as turning (ft/s)
+	private static final double TURNING_SPEED = 2.0;
+	// The shifter's travel, during which the gearbox is in neutral and the speeds mean little
+	private static final double SHIFT_TIME_S = 0.1;
+	// Least time in each gear before shifting again, from the start of the shift
+	private static final double MIN_HIGH_GEAR_S = 1.0;
+	private static final double MIN_LOW_GEAR_S = 0.25;
+
+	private State state = State.LOW;
+	private double stateStart = Double.NEGATIVE_INFINITY;
+
+	// Filter state, in ft/s and ft/s^2; speed is forward positive, turn is right side minus left
+	private boolean filterStarted = false;
+	private double lastTime;
+	private double speed, acceleration;
+	private double turn;
+
+	// For the getters
+	private volatile State publishedState = state;
+	private volatile double publishedSpeed = 0;
+	private volatile double publishedAcceleration = 0;
+
+	/**
+	 * Filter the latest speeds and move the state machine along
+	 *
+	 * @param now        current time, in seconds
+	 * @param leftSpeed  left pod speed, in ft/s, forward positive
+	 * @param rightSpeed right pod speed, in ft/s, forward positive
+	 */
+	public void update(double now, double leftSpeed, double rightSpeed) {
+		filter(now, (leftSpeed + rightSpeed) / 2, rightSpeed - leftSpeed);
+
+		// Speed and acceleration in the direction of travel
+		double travelSpeed = Math.abs(speed);
+		double travelAcceleration = Math.copySign(acceleration, speed);
+		double predictedSpeed = travelSpeed + travelAcceleration * LOOKAHEAD_S;
+		boolean turning = Math.abs(turn) > TURNING_SPEED;
+		double inState = now - stateStart;
+
+		switch (state) {
+		case LOW:
+			if (!turning && inState >= MIN_LOW_GEAR_S && travelSpeed >= MIN_UPSHIFT_SPEED
+					&& (travelSpeed >= Constants.SPEED_TO_SHIFT_UP || predictedSpeed >= Constants.SPEED_TO_SHIFT_UP)) {
+				enter(State.UPSHIFTING, now);
+			}
+			break;
+		case UPSHIFTING:
+			if (inState >= SHIFT_TIME_S) {
+				state = State.HIGH; // Keeps the shift's start time, for the dwell
+			}
+			break;
+		case HIGH:
+			if (!turning && inState >= MIN_HIGH_GEAR_S && travelSpeed <= Constants.SPEED_TO_SHIFT_DOWN
+					&& predictedSpeed <= Constants.SPEED_TO_SHIFT_DOWN) {
+				enter(State.DOWNSHIFTING, now);
+			}
+			break;
+		case DOWNSHIFTING:
+			if (inState >= SHIFT_TIME_S) {
+				state = State.LOW;
+			}
+			break;
+		}
+		publishedState = state;
+	}
+
+	/**
+	 * Follow a gear chosen by someone else, eg the driver or an auto move, so that
+	 * autoshifting picks up from there when they let go. Call instead of update().
+	 *
+	 * @param now       current time, in seconds
+	 * @param highGear  the gear in use
+	 * @param leftSpeed left pod speed, in ft/s, forward positive
+	 * @param rightSpeed right pod speed, in ft/s, forward positive
+	 */
+	public void hold(double now, boolean highGear, double leftSpeed, double rightSpeed) {
+		filter(now, (leftSpeed + rightSpeed) / 2, rightSpeed - leftSpeed);
+		if (highGear != isHighGear()) {
+			enter(highGear ? State.UPSHIFTING : State.DOWNSHIFTING, now);
+		} else if (state == State.UPSHIFTING || state == State.DOWNSHIFTING) {
+			if (now - stateStart >= SHIFT_TIME_S) {
+				state = highGear ? State.HIGH : State.LOW;
+			}
+		}
+		publishedState = state;
+	}
+
+	/**
+	 * @return the gear the shifter should be in
+	 */
+	public boolean isHighGear() {
+		return state == State.HIGH || state == State.UPSHIFTING;
+	}
+
+	/**
+	 * @return where the shifter is; safe from any thread
+	 */
+	public State getState() {
+		return publishedState;
+	}
+
+	/**
+	 * @return filtered chassis speed, in ft/s, forward positive; safe from any thread
+	 */
+	public double getSpeed() {
+		return publishedSpeed;
+	}
+
+	/**
+	 * @return filtered chassis acceleration, in ft/s^2; safe from any thread
+	 */
+	public double getAcceleration() {
+		return publishedAcceleration;
+	}
+
+	private void enter(State next, double now) {
+		state = next;
+		stateStart = now;
+	}
+
+	/**
+	 * Alpha-beta filter on the chassis speed, and a plain low pass on the turn
+	 */
+	private void filter(double now, double measuredSpeed, double measuredTurn) {
+		double dt = now - lastTime;
+		lastTime = now;
+		if (!filterStarted || !(dt > 0) || dt > MAX_DT_S) {
+			speed = measuredSpeed;
+			acceleration = 0;
+			turn = measuredTurn;
+			filterStarted = true;
+		} else {
+			double predicted = speed + acceleration * dt;
+			double residual = measuredSpeed - predicted;
+			speed = predicted + ALPHA * residual;
+			acceleration += BETA * residual / dt;
+			turn += ALPHA * (measuredTurn - turn);
+		}
+		publishedSpeed = speed;
+		publishedAcceleration = acceleration;
+	}
+}
@@ -0,0 +1,73 @@
+package frc.robot.control;
+
+import frc.robot.subsystems.DriveBase.GearShiftMode;
+
+/**
+ * What the commands want the drivebase to do, handed from the robot loop to the
+ * drive control loop once per pass.
+ */
+public class DriveCommand {
+	public enum Mode {
+		STOP, // Motors at zero
+		JOYSTICK, // Shape forwardAxis and turnAxis, as the driver would expect
+		TANK, // Send leftThrottle and rightThrottle as they are
+		VELOCITY, // Hold leftVelocity and rightVelocity with the Talons' velocity loops
+		PROFILE, // Run the motion profile streamed by the TrajectoryExecutor
+		AIM, // Turn toward aimX, aimY and drive up to aimStopRange from it
+	}
+
+	public Mode mode = Mode.STOP;
+
+	// Used in JOYSTICK mode
+	public double forwardAxis; // between -1 and +1
+	public double turnAxis; // between -1 and +1, where -1 is full leftward
+
+	// Used in JOYSTICK and TANK modes; when set, full throttle means top speed in
+	// high gear, held by the Talons' velocity loops
+	public boolean closedLoop;
+
+	// Used in TANK mode
+	public double leftThrottle; // between -1 and +1
+	public double rightThrottle; // between -1 and +1
+
+	// Used in VELOCITY mode
+	public double leftVelocity; // inches per second
+	public double rightVelocity; // inches per second
+
+	// Gear selection
+	public GearShiftMode shiftMode = GearShiftMode.AUTOSHIFT;
+	public boolean highGearRequested; // Driver override
+	public boolean lowGearRequested; // Driver override
+
+	// Used in AIM mode; a point in the odometry frame
+	public double aimX; // inches
+	public double aimY; // inches
+	public double aimStopRange; // inches
+
+	// Odometry is reset to resetPose whenever odometryResets changes
+	public int odometryResets;
+	public final Pose resetPose = new Pose();
+
+	// When the command was made, in seconds on the FPGA clock
+	public double timestamp;
+
+	public void copyFrom(DriveCommand other) {
+		mode = other.mode;
+		forwardAxis = other.forwardAxis;
+		turnAxis = other.turnAxis;
+		leftThrottle = other.leftThrottle;
+		rightThrottle = other.rightThrottle;
+		closedLoop = other.closedLoop;
+		leftVelocity = other.leftVelocity;
+		rightVelocity = other.rightVelocity;
+		aimX = other.aimX;
+		aimY = other.aimY;
+		aimStopRange = other.aimStopRange;
+		shiftMode = other.shiftMode;
+		highGearRequested = other.highGearRequested;
+		lowGearRequested = other.lowGearRequested;
+		odometryResets = other.odometryResets;
+		resetPose.copyFrom(other.resetPose);
+		timestamp = other.timestamp;
+	}
+}
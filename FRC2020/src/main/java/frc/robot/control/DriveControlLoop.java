@@ -0,0 +1,335 @@
+package frc.robot.control;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.interfaces.Gyro;
+import frc.robot.Constants;
+import frc.robot.auto.TrajectoryExecutor;
+import frc.robot.components.CachingSolenoid;
+import frc.robot.components.DrivePod;
+import frc.robot.telemetry.TelemetryService;
+
+/**
+ * Runs the drivebase on its own Notifier thread, faster than the robot loop and
+ * independent of how long the commands take.
+ * 
+ * Each pass reads the latest DriveCommand handed over by the robot loop, reads
+ * the pods, shapes the throttles, picks the gear, and writes the actuators. What
+ * it sensed and decided is handed back as a DriveState. Once started, this is
+ * the only thread that commands the pods and the shifter.
+ */
+public class DriveControlLoop {
+	private static final double PERIOD_S = 0.005; // 200 Hz
+	private static final long PERIOD_US = (long) (PERIOD_S * 1e6);
+	private static final int THREAD_PRIORITY = 40; // Real time, above the robot loop
+	private static final double COMMAND_TIMEOUT_S = 0.25; // Stop if the robot loop stops talking to us
+	private static final int RESET_CHECK_INTERVAL = 50; // Passes between checks for Talon resets
+	private static final long STATS_WINDOW_US = 1000000;
+	private static final double POSE_HISTORY_S = 2.0;
+	private static final double TOP_SPEED_IPS = Constants.HIGH_GEAR_TOP_SPEED * 12.0;
+	private static final double LOW_GEAR_TOP_SPEED_IPS = Constants.LOW_GEAR_TOP_SPEED * 12.0;
+
+	private final DrivePod leftPod, rightPod;
+	private final CachingSolenoid shifter;
+	private final TrajectoryExecutor trajectoryExecutor;
+	private final Gyro gyro;
+
+	// Where the robot is, and where it has been
+	private final Odometry odometry = new Odometry();
+	private final PoseHistory poseHistory = new PoseHistory((int) Math.ceil(POSE_HISTORY_S / PERIOD_S));
+	private int odometryResets = 0; // Matches DriveCommand.odometryResets once we've done the reset
+
+	private final TripleBuffer<DriveCommand> commands = new TripleBuffer<>(DriveCommand::new);
+	private final TripleBuffer<DriveState> states = new TripleBuffer<>(DriveState::new);
+	private final Notifier notifier = new Notifier(this::step);
+
+	// Output of aim(); only touched on the loop thread
+	private double aimForward;
+	private double aimSpin;
+
+	// Gear logic state; only touched on the loop thread
+	private boolean highGear = false;
+	private final AutoShifter autoShifter = new AutoShifter();
+
+	// Timing; only touched on the loop thread
+	private boolean priorityIsSet = false;
+	private long passCount = 0;
+	private long lastStartUs = 0;
+	private long windowStartUs = 0;
+	private long windowPasses = 0;
+	private long windowExecSumUs = 0;
+	private long windowMaxExecUs = 0;
+	private long windowMaxPeriodUs = 0;
+
+	// Timing stats over the last complete window, for anyone to read
+	private volatile long overruns = 0; // Passes that took longer than the period
+	private volatile long lateStarts = 0; // Passes that started more than half a period late
+	private volatile double meanExecMs = 0;
+	private volatile double maxExecMs = 0;
+	private volatile double maxPeriodMs = 0;
+
+	public DriveControlLoop(DrivePod leftPod, DrivePod rightPod, CachingSolenoid shifter,
+			TrajectoryExecutor trajectoryExecutor, Gyro gyro) {
+		this.leftPod = leftPod;
+		this.rightPod = rightPod;
+		this.shifter = shifter;
+		this.trajectoryExecutor = trajectoryExecutor;
+		this.gyro = gyro;
+	}
+
+	/**
+	 * Start running at the loop rate
+	 */
+	public void start() {
+		notifier.startPeriodic(PERIOD_S);
+	}
+
+	/**
+	 * Stop running. Commands already sent to the Talons stay in effect.
+	 */
+	public void stop() {
+		notifier.stop();
+	}
+
+	/**
+	 * Robot loop only: the command to fill in before calling sendCommand()
+	 */
+	public DriveCommand commandBuffer() {
+		return commands.writeBuffer();
+	}
+
+	/**
+	 * Robot loop only: hand the filled in commandBuffer() to the control loop
+	 */
+	public void sendCommand() {
+		commands.publish();
+	}
+
+	/**
+	 * The robot's recent poses, for matching up delayed measurements. Safe to read
+	 * from any thread.
+	 */
+	public PoseHistory getPoseHistory() {
+		return poseHistory;
+	}
+
+	/**
+	 * Robot loop only: what the control loop sensed and decided on its latest
+	 * pass. Stays unchanged until the next call.
+	 */
+	public DriveState readState() {
+		return states.read();
+	}
+
+	/**
+	 * One pass of the control loop. Called by the Notifier; call it directly only
+	 * if the loop isn't started.
+	 */
+	public void step() {
+		if (!priorityIsSet) {
+			Threads.setCurrentThreadPriority(true, THREAD_PRIORITY);
+			priorityIsSet = true;
+		}
+		long startUs = RobotController.getFPGATime();
+		double now = startUs / 1e6;
+		passCount++;
+
+		// Sense
+		DriveCommand command = commands.read();
+		DriveState state = states.writeBuffer();
+		leftPod.sense(state.leftPod);
+		rightPod.sense(state.rightPod);
+		state.gyroHeading = -gyro.getAngle(); // The gyro is CW positive
+
+		// Where are we now?
+		if (command.odometryResets != odometryResets) {
+			odometry.reset(command.resetPose.x, command.resetPose.y, command.resetPose.heading);
+			poseHistory.clear();
+			odometryResets = command.odometryResets;
+		}
+		odometry.update(state.leftPod.positionInches, state.rightPod.positionInches, state.gyroHeading);
+		state.pose.copyFrom(odometry.getPose());
+		poseHistory.add(now, state.pose);
+
+		if (passCount % RESET_CHECK_INTERVAL == 0) {
+			leftPod.checkForReset();
+			rightPod.checkForReset();
+		}
+
+		// Compute
+		double leftThrottle = 0;
+		double rightThrottle = 0;
+		boolean closedLoop = command.closedLoop;
+		DriveCommand.Mode mode = command.mode;
+		if (now - command.timestamp > COMMAND_TIMEOUT_S && mode != DriveCommand.Mode.PROFILE) {
+			// A profile runs on the Talons and ends by itself, so let it carry on
+			mode = DriveCommand.Mode.STOP;
+		}
+		switch (mode) {
+		case JOYSTICK:
+			/*
+			 * "Exponential" drive, where the movements are more sensitive during slow
+			 * movement, permitting easier fine control
+			 */
+			double forward = Math.pow(command.forwardAxis, 3);
+			double spin = Math.pow(command.turnAxis, 3);
+			leftThrottle = forward - spin;
+			rightThrottle = forward + spin;
+			break;
+		case TANK:
+			leftThrottle = command.leftThrottle;
+			rightThrottle = command.rightThrottle;
+			break;
+		case VELOCITY:
+			closedLoop = true;
+			leftThrottle = command.leftVelocity / TOP_SPEED_IPS;
+			rightThrottle = command.rightVelocity / TOP_SPEED_IPS;
+			break;
+		case AIM:
+			aim(command, state.pose);
+			leftThrottle = aimForward - aimSpin;
+			rightThrottle = aimForward + aimSpin;
+			break;
+		case PROFILE:
+		case STOP:
+			closedLoop = false;
+			break;
+		}
+		handleGear(command, state, now);
+
+		// Actuate
+		leftPod.selectGear(highGear);
+		rightPod.selectGear(highGear);
+		if (mode == DriveCommand.Mode.PROFILE) {
+			leftPod.setProfileOutput(trajectoryExecutor.getOutput());
+			rightPod.setProfileOutput(trajectoryExecutor.getOutput());
+		} else if (closedLoop) {
+			// Full throttle is top speed in high gear; in low gear, don't ask for more than it can do
+			double gearTopSpeed = highGear ? TOP_SPEED_IPS : LOW_GEAR_TOP_SPEED_IPS;
+			leftPod.setVelocityInchesPerSecond(clamp(leftThrottle * TOP_SPEED_IPS, gearTopSpeed));
+			rightPod.setVelocityInchesPerSecond(clamp(rightThrottle * TOP_SPEED_IPS, gearTopSpeed));
+		} else {
+			leftPod.setThrottle(leftThrottle);
+			rightPod.setThrottle(rightThrottle);
+		}
+		if (shifter != null) {
+			shifter.set(highGear);
+		}
+
+		state.highGear = highGear;
+		state.timestamp = now;
+		states.publish();
+
+		updateTiming(startUs, RobotController.getFPGATime());
+	}
+
+	/**
+	 * The inner aiming loop: turn toward the aim point from the latest odometry,
+	 * and drive up to the stop range, slowing for large heading errors so that we
+	 * turn before we drive.
+	 */
+	private void aim(DriveCommand command, Pose pose) {
+		double dx = command.aimX - pose.x;
+		double dy = command.aimY - pose.y;
+		double headingError = Math.toDegrees(Math.atan2(dy, dx)) - pose.heading;
+		headingError = Math.IEEEremainder(headingError, 360); // Take the short way around
+		aimSpin = clamp(Constants.AIM_HEADING_KP * headingError, Constants.AIM_MAX_SPIN);
+
+		double rangeError = Math.hypot(dx, dy) - command.aimStopRange;
+		double forward = clamp(Constants.AIM_RANGE_KP * rangeError, Constants.AIM_MAX_FORWARD);
+		aimForward = forward * Math.max(0, Math.cos(Math.toRadians(headingError)));
+	}
+
+	private static double clamp(double value, double limit) {
+		return Math.max(-limit, Math.min(limit, value));
+	}
+
+	/**
+	 * Enact whichever shift mode is appropriate
+	 */
+	private void handleGear(DriveCommand command, DriveState state, double now) {
+		double leftSpeed = state.leftPod.velocityFeetPerSecond;
+		double rightSpeed = state.rightPod.velocityFeetPerSecond;
+		// Driver commanded override?
+		if (command.highGearRequested) {
+			highGear = true;
+		} else if (command.lowGearRequested) {
+			highGear = false;
+		} else {
+			// No override from driver. Auto move commanded override?
+			switch (command.shiftMode) {
+			case LOCK_HIGH_GEAR:
+				highGear = true;
+				break;
+			case LOCK_LOW_GEAR:
+				highGear = false;
+				break;
+			// No override commanded; handle automatic gear shifting.
+			case AUTOSHIFT:
+				autoShifter.update(now, leftSpeed, rightSpeed);
+				highGear = autoShifter.isHighGear();
+				return;
+			}
+		}
+		// Keep the autoshifter's filters running, and its state in step with the gear we chose
+		autoShifter.hold(now, highGear, leftSpeed, rightSpeed);
+	}
+
+	private void updateTiming(long startUs, long endUs) {
+		long execUs = endUs - startUs;
+		if (execUs > PERIOD_US) {
+			overruns++;
+		}
+		if (lastStartUs != 0) {
+			long periodUs = startUs - lastStartUs;
+			if (periodUs > PERIOD_US + PERIOD_US / 2) {
+				lateStarts++;
+			}
+			windowMaxPeriodUs = Math.max(windowMaxPeriodUs, periodUs);
+		}
+		lastStartUs = startUs;
+
+		windowPasses++;
+		windowExecSumUs += execUs;
+		windowMaxExecUs = Math.max(windowMaxExecUs, execUs);
+		if (endUs - windowStartUs >= STATS_WINDOW_US) {
+			meanExecMs = windowExecSumUs / 1000.0 / windowPasses;
+			maxExecMs = windowMaxExecUs / 1000.0;
+			maxPeriodMs = windowMaxPeriodUs / 1000.0;
+			windowStartUs = endUs;
+			windowPasses = 0;
+			windowExecSumUs = 0;
+			windowMaxExecUs = 0;
+			windowMaxPeriodUs = 0;
+		}
+	}
+
+	/**
+	 * @return how many passes have taken longer than the loop period
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * @return how many passes have started more than half a period late
+	 */
+	public long getLateStarts() {
+		return lateStarts;
+	}
+
+	/**
+	 * Add the loop timing stats to the telemetry service
+	 */
+	public void addTelemetry(TelemetryService telemetry) {
+		telemetry.addSignal("drive loop overruns", 1, () -> overruns);
+		telemetry.addSignal("drive loop late starts", 1, () -> lateStarts);
+		telemetry.addSignal("drive loop mean exec (ms)", 1, () -> meanExecMs);
+		telemetry.addSignal("drive loop max exec (ms)", 1, () -> maxExecMs);
+		telemetry.addSignal("drive loop max period (ms)", 1, () -> maxPeriodMs);
+		telemetry.addTextSignal("autoshift state", 10, () -> autoShifter.getState().name());
+		telemetry.addSignal("autoshift speed (fps)", 20, 0.1, autoShifter::getSpeed);
+		telemetry.addSignal("autoshift accel (fps2)", 20, 0.5, autoShifter::getAcceleration);
+	}
+}
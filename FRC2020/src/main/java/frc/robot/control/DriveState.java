@@ -0,0 +1,18 @@
+package frc.robot.control;
+
+import frc.robot.SensorSnapshot;
+
+/**
+ * What the drive control loop sensed and decided on its latest pass, handed back
+ * to the robot loop.
+ */
+public class DriveState {
+	public final SensorSnapshot.Pod leftPod = new SensorSnapshot.Pod();
+	public final SensorSnapshot.Pod rightPod = new SensorSnapshot.Pod();
+	public boolean highGear;
+	public double gyroHeading; // degrees, CCW positive
+	public final Pose pose = new Pose();
+
+	// When the pods were read, in seconds on the FPGA clock
+	public double timestamp;
+}
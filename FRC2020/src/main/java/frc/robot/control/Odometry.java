@@ -0,0 +1,54 @@
+package frc.robot.control;
+
+/**
+ * Dead reckoning for the drivebase: integrates the distance each side has
+ * travelled along the heading from the gyro.
+ * 
+ * Call update() every pass of the control loop. Not thread safe; owned by the
+ * control loop.
+ */
+public class Odometry {
+	private final Pose pose = new Pose();
+	private double lastLeftInches;
+	private double lastRightInches;
+	private double lastHeading;
+	private boolean hasReading = false;
+
+	/**
+	 * Move the robot forward by what the encoders have travelled since the last
+	 * update.
+	 * 
+	 * @param leftInches    left encoder position
+	 * @param rightInches   right encoder position
+	 * @param headingDegrees gyro heading, CCW positive
+	 */
+	public void update(double leftInches, double rightInches, double headingDegrees) {
+		if (hasReading) {
+			double distance = ((leftInches - lastLeftInches) + (rightInches - lastRightInches)) / 2;
+			// Travel along the average heading over the step
+			double heading = Math.toRadians(pose.heading + (headingDegrees - lastHeading) / 2);
+			pose.x += distance * Math.cos(heading);
+			pose.y += distance * Math.sin(heading);
+		}
+		pose.heading += headingDegrees - lastHeading;
+		lastLeftInches = leftInches;
+		lastRightInches = rightInches;
+		lastHeading = headingDegrees;
+		hasReading = true;
+	}
+
+	/**
+	 * Declare where the robot is now. Takes effect from the next update().
+	 */
+	public void reset(double x, double y, double heading) {
+		pose.set(x, y, heading);
+		hasReading = false;
+	}
+
+	/**
+	 * @return the current pose. Changes with every update(); copy it to keep it.
+	 */
+	public Pose getPose() {
+		return pose;
+	}
+}
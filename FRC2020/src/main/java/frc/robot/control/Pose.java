@@ -0,0 +1,28 @@
+package frc.robot.control;
+
+/**
+ * Where the robot is on the field: position in inches and heading in degrees
+ * (CCW positive), relative to where odometry was last reset.
+ * 
+ * Mutable, so that it can be filled in and reused without allocating.
+ */
+public class Pose {
+	public double x; // inches, +x is straight ahead at the last reset
+	public double y; // inches, +y is to the left at the last reset
+	public double heading; // degrees, CCW positive; not wrapped
+
+	public void set(double x, double y, double heading) {
+		this.x = x;
+		this.y = y;
+		this.heading = heading;
+	}
+
+	public void copyFrom(Pose other) {
+		set(other.x, other.y, other.heading);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("(%.1f in, %.1f in, %.1f deg)", x, y, heading);
+	}
+}
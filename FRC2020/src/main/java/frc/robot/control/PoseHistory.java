@@ -0,0 +1,97 @@
+package frc.robot.control;
+
+/**
+ * The robot's recent poses, timestamped on the FPGA clock, so that a delayed
+ * measurement such as a vision result can be matched to where the robot was
+ * when it was captured.
+ * 
+ * A fixed size ring of primitive arrays: adding and looking up never allocate.
+ * Written by the control loop, read from any thread.
+ */
+public class PoseHistory {
+	private final double[] time;
+	private final double[] x;
+	private final double[] y;
+	private final double[] heading;
+	private int newest = -1; // Index of the newest entry
+	private int count = 0;
+
+	/**
+	 * @param capacity how many poses to keep
+	 */
+	public PoseHistory(int capacity) {
+		time = new double[capacity];
+		x = new double[capacity];
+		y = new double[capacity];
+		heading = new double[capacity];
+	}
+
+	/**
+	 * Add a pose, dropping the oldest if full. Timestamps must increase.
+	 * 
+	 * @param timestamp seconds on the FPGA clock
+	 */
+	public synchronized void add(double timestamp, Pose pose) {
+		newest = (newest + 1) % time.length;
+		time[newest] = timestamp;
+		x[newest] = pose.x;
+		y[newest] = pose.y;
+		heading[newest] = pose.heading;
+		if (count < time.length) {
+			count++;
+		}
+	}
+
+	/**
+	 * Forget every pose, eg when odometry is reset
+	 */
+	public synchronized void clear() {
+		newest = -1;
+		count = 0;
+	}
+
+	/**
+	 * Find where the robot was at a given time, interpolating between the poses
+	 * either side. Times after the newest pose get the newest pose.
+	 * 
+	 * @param timestamp seconds on the FPGA clock
+	 * @param out       filled in with the pose
+	 * @return false, leaving out alone, if the history is empty or doesn't go back
+	 *         that far
+	 */
+	public synchronized boolean lookup(double timestamp, Pose out) {
+		if (count == 0 || timestamp < time[indexOf(0)]) {
+			return false;
+		}
+		if (timestamp >= time[newest]) {
+			out.set(x[newest], y[newest], heading[newest]);
+			return true;
+		}
+
+		// Binary search for the last entry at or before the timestamp, counting from the oldest
+		int lo = 0;
+		int hi = count - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (time[indexOf(mid)] <= timestamp) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		int before = indexOf(lo);
+		int after = indexOf(lo + 1);
+		double span = time[after] - time[before];
+		double f = (span > 0) ? (timestamp - time[before]) / span : 0;
+		out.set(x[before] + f * (x[after] - x[before]), y[before] + f * (y[after] - y[before]),
+				heading[before] + f * (heading[after] - heading[before]));
+		return true;
+	}
+
+	/**
+	 * @return array index of the i'th entry, counting from the oldest
+	 */
+	private int indexOf(int i) {
+		return (newest - count + 1 + i + time.length) % time.length;
+	}
+}
@@ -0,0 +1,60 @@
+package frc.robot.control;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hands the latest value from one writer thread to one reader thread without
+ * locks or allocation.
+ * 
+ * There are three preallocated buffers: the writer owns one, the reader owns
+ * one, and the third holds the latest published value. Publishing and reading
+ * each swap the caller's buffer with the middle one, so neither side ever waits
+ * for the other, and the reader always sees a complete value.
+ * 
+ * The writer must fill in every field of writeBuffer() before publish(), since
+ * it may hold a value from a few writes ago.
+ */
+public class TripleBuffer<T> {
+	private static final int INDEX_MASK = 3;
+	private static final int FRESH = 4; // Set in middle when it holds a value the reader hasn't seen
+
+	private final Object[] buffers;
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 2; // Only touched by the writer
+	private int front = 0; // Only touched by the reader
+
+	/**
+	 * @param factory makes each of the three buffers
+	 */
+	public TripleBuffer(Supplier<T> factory) {
+		buffers = new Object[] { factory.get(), factory.get(), factory.get() };
+	}
+
+	/**
+	 * Writer only: the buffer to fill in before calling publish()
+	 */
+	@SuppressWarnings("unchecked")
+	public T writeBuffer() {
+		return (T) buffers[back];
+	}
+
+	/**
+	 * Writer only: make the contents of writeBuffer() the latest value
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * Reader only: get the latest published value. The returned object stays
+	 * unchanged until the next call to read().
+	 */
+	@SuppressWarnings("unchecked")
+	public T read() {
+		if ((middle.get() & FRESH) != 0) {
+			front = middle.getAndSet(front) & INDEX_MASK;
+		}
+		return (T) buffers[front];
+	}
+}
@@ -0,0 +1,306 @@
+package frc.robot.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Logs a LogRecord per pass to binary files, for looking at after a match.
+ * 
+ * Any thread may call log(). It copies the record into a lock-free ring and
+ * returns; it never allocates or blocks, and if the ring is full the record is
+ * dropped and counted. A low priority background thread drains the ring into a
+ * memory mapped file, starting a new file whenever one fills up.
+ * 
+ * Files are numbered in sequence, carrying on from the highest number already
+ * in the directory, since the wall clock isn't set until the Driver Station
+ * connects. Before each new file, the oldest files are deleted to keep the logs
+ * under MAX_LOG_BYTES and leave MIN_FREE_BYTES free on the disk. The file being
+ * written is never deleted.
+ * 
+ * File format, little endian:
+ * <pre>
+ *   int   magic            'FRCL'
+ *   int   version          1
+ *   int   record size      LogRecord.RECORD_BYTES
+ *   int   record count     n, updated as records are written
+ *   LogRecord[n]
+ * </pre>
+ * The file is created at full size, so anything past the nth record is zeros.
+ * Read the files back with LogReader, or turn them into CSV with LogDecoder.
+ */
+public class DataLogger {
+	public static final String EXTENSION = ".bin";
+
+	static final int MAGIC = 0x4652434C; // 'FRCL'
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+
+	private static final int RING_RECORDS = 1024; // Power of two; 20 s at 50 Hz
+	private static final int FILE_RECORDS = 65536; // A bit over 20 minutes at 50 Hz
+	private static final long FILE_BYTES = HEADER_BYTES + (long) FILE_RECORDS * LogRecord.RECORD_BYTES;
+	private static final long MAX_LOG_BYTES = 64L * 1024 * 1024; // About 19 files, or 6 hours of passes
+	private static final long MIN_FREE_BYTES = 64L * 1024 * 1024; // For everything else on the disk
+	private static final int SEQUENCE_DIGITS = 6;
+	private static final long DRAIN_PERIOD_MS = 100;
+
+	private final Path directory;
+	private final String prefix;
+
+	// The ring. A slot's sequence number says whose turn it is: equal to the
+	// record's index when free for that producer, index + 1 when written and
+	// ready to drain.
+	private final ByteBuffer ring = ByteBuffer.allocateDirect(RING_RECORDS * LogRecord.RECORD_BYTES)
+			.order(ByteOrder.LITTLE_ENDIAN);
+	private final AtomicLongArray sequences = new AtomicLongArray(RING_RECORDS);
+	private final AtomicLong tail = new AtomicLong(0); // Next index to claim
+	private final AtomicLong dropped = new AtomicLong(0);
+	private long head = 0; // Next index to drain; writer thread only
+
+	// Writer thread only
+	private final ByteBuffer drainView = ring.duplicate();
+	private FileChannel channel = null;
+	private MappedByteBuffer file = null;
+	private int fileRecords = 0;
+	private long nextSequence = 0;
+	private volatile long written = 0;
+
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	/**
+	 * @param directory where to write the files; created if missing
+	 * @param prefix    start of each file's name
+	 */
+	public DataLogger(Path directory, String prefix) {
+		this.directory = directory;
+		this.prefix = prefix;
+		for (int i = 0; i < RING_RECORDS; ++i) {
+			sequences.set(i, i);
+		}
+		thread = new Thread(this::run, "Data logger");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Pick the USB stick if there is one, otherwise the roboRIO's own flash
+	 */
+	public static Path defaultDirectory() {
+		Path usb = Paths.get("/u");
+		if (Files.isDirectory(usb) && Files.isWritable(usb)) {
+			return usb.resolve("logs");
+		}
+		return Paths.get("/home/lvuser/logs");
+	}
+
+	/**
+	 * Queue a record to be written. Copies the record, so it can be reused
+	 * straight away.
+	 * 
+	 * @return false if the ring was full and the record was dropped
+	 */
+	public boolean log(LogRecord record) {
+		long index = tail.get();
+		while (true) {
+			int slot = (int) (index & (RING_RECORDS - 1));
+			long diff = sequences.get(slot) - index;
+			if (diff == 0) {
+				if (tail.compareAndSet(index, index + 1)) {
+					record.write(ring, slot * LogRecord.RECORD_BYTES);
+					sequences.set(slot, index + 1); // Publish to the writer
+					return true;
+				}
+				index = tail.get(); // Another producer got it; try the next one
+			} else if (diff < 0) {
+				dropped.incrementAndGet(); // The writer is a whole ring behind
+				return false;
+			} else {
+				index = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * @return how many records have been dropped because the ring was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return how many records have been written to file
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	/**
+	 * Write out what is in the ring, and stop. Records logged afterwards are
+	 * dropped.
+	 */
+	public void close() {
+		running = false;
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		try {
+			Files.createDirectories(directory);
+			List<Path> existing = listFiles();
+			if (!existing.isEmpty()) {
+				nextSequence = Math.max(0, sequenceOf(existing.get(existing.size() - 1)) + 1);
+			}
+			while (running) {
+				drain();
+				try {
+					Thread.sleep(DRAIN_PERIOD_MS);
+				} catch (InterruptedException e) {
+					// Closing; drain once more below
+				}
+			}
+			drain();
+		} catch (IOException e) {
+			System.err.println("Data logger stopped: " + e);
+		} finally {
+			closeFile();
+		}
+	}
+
+	/**
+	 * Copy every published record from the ring into the file
+	 */
+	private void drain() throws IOException {
+		int drained = 0;
+		while (true) {
+			int slot = (int) (head & (RING_RECORDS - 1));
+			if (sequences.get(slot) != head + 1) {
+				break; // Not written yet
+			}
+			if (file == null || fileRecords == FILE_RECORDS) {
+				nextFile();
+			}
+			int offset = slot * LogRecord.RECORD_BYTES;
+			drainView.limit(offset + LogRecord.RECORD_BYTES).position(offset);
+			file.position(HEADER_BYTES + fileRecords * LogRecord.RECORD_BYTES);
+			file.put(drainView);
+			fileRecords++;
+			sequences.set(slot, head + RING_RECORDS); // Free for the producer one lap on
+			head++;
+			drained++;
+		}
+		if (drained > 0) {
+			// Records first, then the count, so a reader never sees a half-written record
+			file.putInt(12, fileRecords);
+			written += drained;
+		}
+	}
+
+	private void nextFile() throws IOException {
+		closeFile();
+		makeRoom();
+		// The sequence number orders the files; the time is only a hint for people,
+		// and is wrong until the Driver Station sets the clock
+		String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		Path path = directory.resolve(
+				String.format("%s-%0" + SEQUENCE_DIGITS + "d-%s%s", prefix, nextSequence, stamp, EXTENSION));
+		nextSequence++;
+		channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		file = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+		file.order(ByteOrder.LITTLE_ENDIAN);
+		file.putInt(0, MAGIC);
+		file.putInt(4, VERSION);
+		file.putInt(8, LogRecord.RECORD_BYTES);
+		file.putInt(12, 0);
+		fileRecords = 0;
+	}
+
+	private void closeFile() {
+		if (file == null) {
+			return;
+		}
+		file.force();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.err.println("could not close data log: " + e);
+		}
+		file = null;
+		channel = null;
+	}
+
+	/**
+	 * Delete the oldest files until a new one fits in the budget. Only called
+	 * between files, so nothing is open.
+	 */
+	private void makeRoom() throws IOException {
+		List<Path> files = listFiles();
+		long total = 0;
+		for (Path path : files) {
+			total += Files.size(path);
+		}
+		FileStore store = Files.getFileStore(directory);
+		int oldest = 0;
+		while (total + FILE_BYTES > MAX_LOG_BYTES || store.getUsableSpace() - FILE_BYTES < MIN_FREE_BYTES) {
+			if (oldest == files.size()) {
+				throw new IOException("no room for another data log in " + directory);
+			}
+			Path path = files.get(oldest++);
+			total -= Files.size(path);
+			Files.deleteIfExists(path);
+		}
+	}
+
+	/**
+	 * @return our files in the directory, oldest first. Files without a sequence
+	 *         number, eg from an older version, count as the oldest.
+	 */
+	private List<Path> listFiles() throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "-*" + EXTENSION)) {
+			stream.forEach(files::add);
+		}
+		files.sort(Comparator.comparingLong(this::sequenceOf).thenComparing(Comparator.naturalOrder()));
+		return files;
+	}
+
+	/**
+	 * @return the sequence number in the file's name, or -1 if it hasn't got one
+	 */
+	private long sequenceOf(Path path) {
+		String name = path.getFileName().toString();
+		int start = prefix.length() + 1;
+		int end = start + SEQUENCE_DIGITS;
+		if (name.length() <= end || name.charAt(end) != '-') {
+			return -1;
+		}
+		for (int i = start; i < end; ++i) {
+			if (!Character.isDigit(name.charAt(i))) {
+				return -1;
+			}
+		}
+		return Long.parseLong(name.substring(start, end));
+	}
+}
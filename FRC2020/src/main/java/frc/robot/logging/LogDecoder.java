@@ -0,0 +1,56 @@
+package frc.robot.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Turns data log files into CSV, for a spreadsheet or plotting tool.
+ * 
+ * Copy the logs off the robot (eg scp lvuser@roboRIO-xxxx-frc.local:logs/*.bin .),
+ * then from the FRC2020 directory:
+ * java -cp build/libs/FRC2020.jar frc.robot.logging.LogDecoder [-o out.csv] file.bin...
+ * 
+ * Files are written one after another, in the order given, under a single
+ * header line. Without -o the CSV goes to standard output.
+ */
+public final class LogDecoder {
+
+	private LogDecoder() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		int first = 0;
+		Path output = null;
+		if (args.length >= 2 && args[0].equals("-o")) {
+			output = Paths.get(args[1]);
+			first = 2;
+		}
+		if (first >= args.length) {
+			System.err.println("usage: LogDecoder [-o out.csv] file.bin...");
+			System.exit(1);
+		}
+
+		try (Writer out = (output != null) ? Files.newBufferedWriter(output)
+				: new BufferedWriter(new OutputStreamWriter(System.out))) {
+			out.write(LogRecord.csvHeader());
+			out.write('\n');
+			LogRecord record = new LogRecord();
+			StringBuilder line = new StringBuilder();
+			for (int i = first; i < args.length; ++i) {
+				LogReader reader = LogReader.open(Paths.get(args[i]));
+				while (reader.next(record)) {
+					line.setLength(0);
+					record.appendCsv(line);
+					line.append('\n');
+					out.append(line);
+				}
+				System.err.println(args[i] + ": " + reader.size() + " records");
+			}
+		}
+	}
+}
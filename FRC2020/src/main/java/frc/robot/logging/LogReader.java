@@ -0,0 +1,110 @@
+package frc.robot.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads back a file written by DataLogger, for replaying a match through
+ * analysis code or a test.
+ * 
+ * <pre>
+ * LogReader reader = LogReader.open(path);
+ * LogRecord record = new LogRecord();
+ * while (reader.next(record)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public class LogReader {
+	private final ByteBuffer buffer;
+	private final int count;
+	private int next = 0;
+
+	private LogReader(ByteBuffer buffer, int count) {
+		this.buffer = buffer;
+		this.count = count;
+	}
+
+	/**
+	 * Memory map a log file and check its header
+	 * 
+	 * @throws IOException if the file can't be read or isn't a log file we understand
+	 */
+	public static LogReader open(Path file) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if (buffer.capacity() < DataLogger.HEADER_BYTES || buffer.getInt(0) != DataLogger.MAGIC) {
+			throw new IOException(file + " is not a data log");
+		}
+		if (buffer.getInt(4) != DataLogger.VERSION) {
+			throw new IOException(file + " is version " + buffer.getInt(4) + ", expected " + DataLogger.VERSION);
+		}
+		if (buffer.getInt(8) != LogRecord.RECORD_BYTES) {
+			throw new IOException(file + " has " + buffer.getInt(8) + " byte records, expected " + LogRecord.RECORD_BYTES);
+		}
+		// A file cut short (eg by a full disk) still has its whole records
+		int fits = (buffer.capacity() - DataLogger.HEADER_BYTES) / LogRecord.RECORD_BYTES;
+		return new LogReader(buffer, Math.max(0, Math.min(buffer.getInt(12), fits)));
+	}
+
+	/**
+	 * @return how many records are in the file
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Read any record
+	 * 
+	 * @param i   from 0 to size() - 1
+	 * @param out filled with the record
+	 */
+	public void read(int i, LogRecord out) {
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException("record " + i + " of " + count);
+		}
+		out.read(buffer, DataLogger.HEADER_BYTES + i * LogRecord.RECORD_BYTES);
+	}
+
+	/**
+	 * Read the next record in order
+	 * 
+	 * @param out filled with the record
+	 * @return false, leaving out alone, once every record has been read
+	 */
+	public boolean next(LogRecord out) {
+		if (next >= count) {
+			return false;
+		}
+		read(next++, out);
+		return true;
+	}
+
+	/**
+	 * Go back to the first record
+	 */
+	public void rewind() {
+		next = 0;
+	}
+
+	/**
+	 * Hand every record to the consumer in order. The same LogRecord is passed each
+	 * time, so copy out anything you want to keep.
+	 */
+	public void replay(Consumer<LogRecord> consumer) {
+		LogRecord record = new LogRecord();
+		for (int i = 0; i < count; ++i) {
+			read(i, record);
+			consumer.accept(record);
+		}
+	}
+}
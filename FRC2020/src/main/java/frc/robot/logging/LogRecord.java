@@ -0,0 +1,113 @@
+package frc.robot.logging;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One pass of the robot loop, as written to the data log. Fixed size and all
+ * primitives, so it can be written to and read from a buffer without
+ * allocating.
+ * 
+ * Layout, little endian, RECORD_BYTES long:
+ * <pre>
+ *   double timestamp               seconds on the FPGA clock
+ *   float  forwardAxis, turnAxis   -1 to +1
+ *   float  leftPosition            inches
+ *   float  leftVelocity            feet per second
+ *   float  rightPosition           inches
+ *   float  rightVelocity           feet per second
+ *   float  heading                 degrees, CCW positive
+ *   float  busVoltage              volts
+ *   byte   flags                   see FLAG_*
+ *   byte   visionTargets           how many targets vision sees
+ *   short  (padding)
+ *   float  visionRange             inches to the closest target, NaN if none
+ *   float  visionBearing           degrees to the closest target, NaN if none
+ * </pre>
+ * If you change the layout, bump DataLogger.VERSION.
+ */
+public class LogRecord {
+	public static final int RECORD_BYTES = 52;
+
+	private static final int FLAG_HIGH_GEAR = 1;
+	private static final int FLAG_HIGH_GEAR_REQUESTED = 2;
+	private static final int FLAG_LOW_GEAR_REQUESTED = 4;
+
+	public double timestamp;
+	public double forwardAxis;
+	public double turnAxis;
+	public double leftPosition;
+	public double leftVelocity;
+	public double rightPosition;
+	public double rightVelocity;
+	public double heading;
+	public double busVoltage;
+	public boolean highGear;
+	public boolean highGearRequested;
+	public boolean lowGearRequested;
+	public int visionTargets;
+	public double visionRange = Double.NaN;
+	public double visionBearing = Double.NaN;
+
+	/**
+	 * Write this record at the given offset, without moving the buffer's position
+	 */
+	public void write(ByteBuffer buffer, int offset) {
+		buffer.putDouble(offset, timestamp);
+		buffer.putFloat(offset + 8, (float) forwardAxis);
+		buffer.putFloat(offset + 12, (float) turnAxis);
+		buffer.putFloat(offset + 16, (float) leftPosition);
+		buffer.putFloat(offset + 20, (float) leftVelocity);
+		buffer.putFloat(offset + 24, (float) rightPosition);
+		buffer.putFloat(offset + 28, (float) rightVelocity);
+		buffer.putFloat(offset + 32, (float) heading);
+		buffer.putFloat(offset + 36, (float) busVoltage);
+		int flags = (highGear ? FLAG_HIGH_GEAR : 0) | (highGearRequested ? FLAG_HIGH_GEAR_REQUESTED : 0)
+				| (lowGearRequested ? FLAG_LOW_GEAR_REQUESTED : 0);
+		buffer.put(offset + 40, (byte) flags);
+		buffer.put(offset + 41, (byte) Math.min(visionTargets, Byte.MAX_VALUE));
+		buffer.putShort(offset + 42, (short) 0);
+		buffer.putFloat(offset + 44, (float) visionRange);
+		buffer.putFloat(offset + 48, (float) visionBearing);
+	}
+
+	/**
+	 * Fill this record from the given offset, without moving the buffer's position
+	 */
+	public void read(ByteBuffer buffer, int offset) {
+		timestamp = buffer.getDouble(offset);
+		forwardAxis = buffer.getFloat(offset + 8);
+		turnAxis = buffer.getFloat(offset + 12);
+		leftPosition = buffer.getFloat(offset + 16);
+		leftVelocity = buffer.getFloat(offset + 20);
+		rightPosition = buffer.getFloat(offset + 24);
+		rightVelocity = buffer.getFloat(offset + 28);
+		heading = buffer.getFloat(offset + 32);
+		busVoltage = buffer.getFloat(offset + 36);
+		int flags = buffer.get(offset + 40);
+		highGear = (flags & FLAG_HIGH_GEAR) != 0;
+		highGearRequested = (flags & FLAG_HIGH_GEAR_REQUESTED) != 0;
+		lowGearRequested = (flags & FLAG_LOW_GEAR_REQUESTED) != 0;
+		visionTargets = buffer.get(offset + 41);
+		visionRange = buffer.getFloat(offset + 44);
+		visionBearing = buffer.getFloat(offset + 48);
+	}
+
+	public static String csvHeader() {
+		return "timestamp (s),forward axis,turn axis,left position (in),left velocity (ft/s),"
+				+ "right position (in),right velocity (ft/s),heading (deg),bus voltage (V),high gear,"
+				+ "high gear requested,low gear requested,vision targets,vision range (in),vision bearing (deg)";
+	}
+
+	/**
+	 * Append this record as a CSV line, without the line ending
+	 */
+	public void appendCsv(StringBuilder sb) {
+		sb.append(timestamp).append(',').append((float) forwardAxis).append(',').append((float) turnAxis).append(',')
+				.append((float) leftPosition).append(',').append((float) leftVelocity).append(',')
+				.append((float) rightPosition).append(',').append((float) rightVelocity).append(',')
+				.append((float) heading).append(',').append((float) busVoltage).append(',')
+				.append(highGear ? 1 : 0).append(',').append(highGearRequested ? 1 : 0).append(',')
+				.append(lowGearRequested ? 1 : 0).append(',').append(visionTargets).append(',')
+				.append((float) visionRange).append(',').append((float) visionBearing);
+	}
+}
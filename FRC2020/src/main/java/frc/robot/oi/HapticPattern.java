@@ -0,0 +1,61 @@
+package frc.robot.oi;
+
+/**
+ * A fixed sequence of rumble segments, built once and played as often as needed
+ * by Haptics. Times are relative to when the pattern is played.
+ */
+public final class HapticPattern {
+	final double[] offsets; // Seconds from the start of the pattern
+	final double[] durations; // Seconds
+	final double[] intensities; // 0 to 1
+
+	private HapticPattern(double[] offsets, double[] durations, double[] intensities) {
+		if (offsets.length > Haptics.MAX_SEGMENTS) {
+			throw new IllegalArgumentException("A pattern can have at most " + Haptics.MAX_SEGMENTS + " segments");
+		}
+		this.offsets = offsets;
+		this.durations = durations;
+		this.intensities = intensities;
+	}
+
+	/**
+	 * A single steady rumble
+	 * 
+	 * @param intensity between 0 and 1
+	 * @param duration  seconds
+	 */
+	public static HapticPattern steady(double intensity, double duration) {
+		return pulses(1, intensity, duration, 0);
+	}
+
+	/**
+	 * A train of equal pulses
+	 * 
+	 * @param count     how many pulses
+	 * @param intensity between 0 and 1
+	 * @param onTime    length of each pulse, in seconds
+	 * @param offTime   gap between pulses, in seconds
+	 */
+	public static HapticPattern pulses(int count, double intensity, double onTime, double offTime) {
+		double[] offsets = new double[count];
+		double[] durations = new double[count];
+		double[] intensities = new double[count];
+		for (int i = 0; i < count; ++i) {
+			offsets[i] = i * (onTime + offTime);
+			durations[i] = onTime;
+			intensities[i] = Math.max(0, Math.min(1, intensity));
+		}
+		return new HapticPattern(offsets, durations, intensities);
+	}
+
+	/**
+	 * @return seconds from the start of the pattern to the end of its last segment
+	 */
+	public double getLength() {
+		double length = 0;
+		for (int i = 0; i < offsets.length; ++i) {
+			length = Math.max(length, offsets[i] + durations[i]);
+		}
+		return length;
+	}
+}
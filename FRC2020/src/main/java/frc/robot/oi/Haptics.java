@@ -0,0 +1,151 @@
+package frc.robot.oi;
+
+import edu.wpi.first.wpilibj.GenericHID;
+import edu.wpi.first.wpilibj.GenericHID.RumbleType;
+
+/**
+ * Schedules the rumblers on the operator controllers.
+ * 
+ * Each side of each controller has a small timeline of rumble segments, all
+ * allocated up front. Where segments overlap the strongest one wins. update()
+ * works out what every rumbler should be doing now and only sends an output to
+ * the driver station when that changes, so an idle controller costs nothing.
+ * 
+ * Call everything from the robot loop.
+ */
+public class Haptics {
+	/** Most segments that can be waiting on one side of one controller */
+	public static final int MAX_SEGMENTS = 8;
+
+	private static final RumbleType[] SIDES = { RumbleType.kLeftRumble, RumbleType.kRightRumble };
+
+	/** The segments for one side of one controller */
+	private static class Timeline {
+		final GenericHID controller;
+		final RumbleType side;
+		final double[] start = new double[MAX_SEGMENTS];
+		final double[] end = new double[MAX_SEGMENTS];
+		final double[] intensity = new double[MAX_SEGMENTS];
+		int count = 0;
+		double sent = Double.NaN; // Nothing sent yet, so the first update always sends
+
+		Timeline(GenericHID controller, RumbleType side) {
+			this.controller = controller;
+			this.side = side;
+		}
+
+		void add(double segmentStart, double segmentEnd, double segmentIntensity) {
+			int slot = count;
+			if (count == MAX_SEGMENTS) {
+				// Full, so make room by dropping whichever segment ends first
+				slot = 0;
+				for (int i = 1; i < count; ++i) {
+					if (end[i] < end[slot]) {
+						slot = i;
+					}
+				}
+			} else {
+				count++;
+			}
+			start[slot] = segmentStart;
+			end[slot] = segmentEnd;
+			intensity[slot] = segmentIntensity;
+		}
+
+		/** Drop finished segments, and return the strongest one playing now */
+		double intensityAt(double now) {
+			double strongest = 0;
+			int kept = 0;
+			for (int i = 0; i < count; ++i) {
+				if (end[i] <= now) {
+					continue;
+				}
+				if (start[i] <= now) {
+					strongest = Math.max(strongest, intensity[i]);
+				}
+				start[kept] = start[i];
+				end[kept] = end[i];
+				intensity[kept] = intensity[i];
+				kept++;
+			}
+			count = kept;
+			return strongest;
+		}
+	}
+
+	private final Timeline[] timelines;
+
+	/**
+	 * @param controllers the controllers to rumble, which are then referred to by
+	 *                    their index in this list
+	 */
+	public Haptics(GenericHID... controllers) {
+		timelines = new Timeline[controllers.length * SIDES.length];
+		for (int c = 0; c < controllers.length; ++c) {
+			for (int s = 0; s < SIDES.length; ++s) {
+				timelines[c * SIDES.length + s] = new Timeline(controllers[c], SIDES[s]);
+			}
+		}
+	}
+
+	/**
+	 * Play a pattern on one side of a controller, on top of anything already
+	 * playing there. Takes effect on the next update().
+	 * 
+	 * @param controller index of the controller
+	 * @param side       left (heavier) or right (lighter) rumbler
+	 * @param pattern    what to play
+	 * @param now        current time, in seconds
+	 */
+	public void play(int controller, RumbleType side, HapticPattern pattern, double now) {
+		Timeline timeline = timeline(controller, side);
+		for (int i = 0; i < pattern.offsets.length; ++i) {
+			double start = now + pattern.offsets[i];
+			timeline.add(start, start + pattern.durations[i], pattern.intensities[i]);
+		}
+	}
+
+	/**
+	 * Play a single steady rumble, like HapticPattern.steady() but without
+	 * building a pattern for it.
+	 * 
+	 * @param controller index of the controller
+	 * @param side       left (heavier) or right (lighter) rumbler
+	 * @param intensity  between 0 and 1
+	 * @param duration   seconds
+	 * @param now        current time, in seconds
+	 */
+	public void play(int controller, RumbleType side, double intensity, double duration, double now) {
+		timeline(controller, side).add(now, now + duration, Math.max(0, Math.min(1, intensity)));
+	}
+
+	/**
+	 * Stop both sides of a controller. Takes effect on the next update().
+	 * 
+	 * @param controller index of the controller
+	 */
+	public void stop(int controller) {
+		for (int s = 0; s < SIDES.length; ++s) {
+			timelines[controller * SIDES.length + s].count = 0;
+		}
+	}
+
+	private Timeline timeline(int controller, RumbleType side) {
+		return timelines[controller * SIDES.length + (side == RumbleType.kLeftRumble ? 0 : 1)];
+	}
+
+	/**
+	 * Send any rumbler whose intensity has changed its new intensity
+	 * 
+	 * @param now current time, in seconds
+	 */
+	public void update(double now) {
+		for (Timeline timeline : timelines) {
+			double intensity = timeline.intensityAt(now);
+			if (intensity != timeline.sent) {
+				timeline.controller.setRumble(timeline.side, intensity);
+				timeline.sent = intensity;
+			}
+		}
+	}
+}
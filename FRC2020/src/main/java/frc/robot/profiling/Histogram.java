@@ -0,0 +1,91 @@
+package frc.robot.profiling;
+
+/**
+ * A histogram of durations in the style of HdrHistogram: buckets are linear
+ * within each power of two, so every value is kept to within about 12% whatever
+ * its size, in a small fixed array. Recording never allocates.
+ * 
+ * Not thread safe.
+ */
+public class Histogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // Values below this get a bucket each
+	private static final int HALF = SUB_BUCKETS / 2; // Buckets per power of two above that
+	private static final long MAX_VALUE = (1L << 31) - 1;
+	private static final int MAX_EXPONENT = 31 - SUB_BUCKET_BITS;
+
+	private final long[] counts = new long[SUB_BUCKETS + MAX_EXPONENT * HALF];
+	private long total = 0;
+	private long max = 0;
+	private long sum = 0;
+
+	/**
+	 * Add one value. Negative values count as 0, and huge values as about 2^31.
+	 */
+	public void record(long value) {
+		value = Math.max(0, Math.min(value, MAX_VALUE));
+		counts[bucketOf(value)]++;
+		total++;
+		sum += value;
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	public void reset() {
+		java.util.Arrays.fill(counts, 0);
+		total = 0;
+		max = 0;
+		sum = 0;
+	}
+
+	public long getCount() {
+		return total;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return (total > 0) ? (double) sum / total : 0;
+	}
+
+	/**
+	 * @param fraction between 0 and 1, eg 0.99 for the 99th percentile
+	 * @return a value at least as large as that fraction of the values, and no
+	 *         larger than the max; 0 if empty
+	 */
+	public long getPercentile(double fraction) {
+		if (total == 0) {
+			return 0;
+		}
+		long wanted = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			seen += counts[i];
+			if (seen >= wanted) {
+				return Math.min(upperBoundOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+		int sub = (int) (value >> exponent); // Between HALF and SUB_BUCKETS - 1
+		return SUB_BUCKETS + (exponent - 1) * HALF + (sub - HALF);
+	}
+
+	private static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket - SUB_BUCKETS) / HALF + 1;
+		long sub = (bucket - SUB_BUCKETS) % HALF + HALF;
+		return ((sub + 1) << exponent) - 1;
+	}
+}
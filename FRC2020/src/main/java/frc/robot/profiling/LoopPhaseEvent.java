@@ -0,0 +1,27 @@
+package frc.robot.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one section of Robot.robotPeriodic(), such as the
+ * scheduler run or a subsystem visit. The event's duration is the time spent in the section.
+ * 
+ * LoopProfiler records these as it times each section, reusing one event per
+ * section, so recording them doesn't allocate.
+ */
+@Name("frc.robot.LoopPhase")
+@Label("Loop Phase")
+@Category({ "FRC", "Robot" })
+@Description("One phase of the periodic robot loop")
+public class LoopPhaseEvent extends Event {
+	@Label("Loop")
+	@Description("Sequence number of the pass through robotPeriodic()")
+	long loop;
+
+	@Label("Phase")
+	String phase;
+}
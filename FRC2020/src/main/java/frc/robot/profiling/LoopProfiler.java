@@ -0,0 +1,359 @@
+package frc.robot.profiling;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.Semaphore;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Times named sections of the robot loop, so that a loop overrun can be pinned
+ * on whatever caused it.
+ * 
+ * Every section has a histogram of its durations, and about once a second the
+ * 50th and 99th percentiles and the max are published to the "profiling" table,
+ * along with the sections with the worst 99th percentiles. The last few seconds
+ * of loops are kept in a ring, and when a loop overruns the ring is written to a
+ * CSV file on a background thread.
+ * 
+ * Sections may nest, eg each command inside the scheduler. A section that runs
+ * more than once in a loop has its durations added together.
+ * 
+ * Each section is also recorded as a LoopPhaseEvent when the Flight Recorder has
+ * that event turned on, so the loop only needs timing in one place.
+ * 
+ * All the arrays are allocated up front, so timing a section never allocates.
+ * Not thread safe; call everything from the robot loop.
+ */
+public class LoopProfiler {
+	private static final int MAX_SECTIONS = 32;
+	private static final double HISTORY_S = 5.0;
+	private static final double PUBLISH_PERIOD_S = 1.0;
+	private static final double MIN_DUMP_INTERVAL_S = 30.0; // So a string of overruns doesn't fill the disk
+	private static final int WORST_COUNT = 3;
+	private static final int LOOP_SECTION = 0;
+
+	private final long overrunUs;
+	private final int publishLoops;
+	private final String directory;
+
+	// Per section
+	private final String[] names = new String[MAX_SECTIONS];
+	private final Histogram[] histograms = new Histogram[MAX_SECTIONS];
+	private final NetworkTableEntry[][] entries = new NetworkTableEntry[MAX_SECTIONS][];
+	private final LoopPhaseEvent[] events = new LoopPhaseEvent[MAX_SECTIONS]; // Reused every loop
+	private final long[] startNs = new long[MAX_SECTIONS];
+	private final long[] loopUs = new long[MAX_SECTIONS]; // This loop's durations
+	private int sectionCount = 0;
+
+	// Bytes allocated on the loop thread per section, when tracking is turned on
+	private com.sun.management.ThreadMXBean threads = null;
+	private final long[] startBytes = new long[MAX_SECTIONS];
+	private final long[] startReads = new long[MAX_SECTIONS];
+	private final long[] allocatedBytes = new long[MAX_SECTIONS];
+	private long reads = 0;
+	private long bytesPerRead = 0; // What reading the counter allocates itself
+
+	// The last few seconds of loops, oldest overwritten first
+	private final long[][] history;
+	private final long[] historyLoop;
+	private int historyNext = 0;
+	private long loopCount = 0;
+
+	// Copy of the history taken on an overrun, for the dump thread to write out
+	private final long[][] frozen;
+	private final long[] frozenLoop;
+	private int frozenNext, frozenSections;
+	private final Semaphore dumpRequested = new Semaphore(0);
+	private volatile boolean dumping = false;
+	private long lastDumpNs;
+	private Runnable overrunListener = null;
+
+	private final NetworkTable table = NetworkTableInstance.getDefault().getTable("profiling");
+	private final NetworkTableEntry overrunsEntry = table.getEntry("loop overruns");
+	private final NetworkTableEntry worstEntry = table.getEntry("worst sections (p99)");
+	private final String[] worst = new String[WORST_COUNT];
+	private final double[] p99 = new double[MAX_SECTIONS];
+	private long overruns = 0;
+
+	/**
+	 * @param loopPeriodS the robot loop's period; a loop longer than this is an overrun
+	 * @param directory   where to write the overrun dumps
+	 */
+	public LoopProfiler(double loopPeriodS, String directory) {
+		this.overrunUs = (long) (loopPeriodS * 1e6);
+		this.publishLoops = Math.max(1, (int) Math.round(PUBLISH_PERIOD_S / loopPeriodS));
+		this.directory = directory;
+		int historyLoops = (int) Math.ceil(HISTORY_S / loopPeriodS);
+		history = new long[historyLoops][MAX_SECTIONS];
+		historyLoop = new long[historyLoops];
+		frozen = new long[historyLoops][MAX_SECTIONS];
+		frozenLoop = new long[historyLoops];
+		lastDumpNs = System.nanoTime() - (long) (MIN_DUMP_INTERVAL_S * 1e9);
+
+		section("robotPeriodic");
+
+		Thread dumper = new Thread(this::dumpOnOverrun, "Loop profile dump");
+		dumper.setDaemon(true);
+		dumper.setPriority(Thread.MIN_PRIORITY);
+		dumper.start();
+	}
+
+	/**
+	 * Get the id of a section, adding it if it is new. Adding allocates, so look
+	 * ids up once (eg in a constructor) and keep them.
+	 * 
+	 * @param name what is being timed, eg "scheduler"
+	 * @return the id to pass to start() and stop()
+	 */
+	public int section(String name) {
+		for (int i = 0; i < sectionCount; ++i) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		if (sectionCount == MAX_SECTIONS) {
+			throw new IllegalStateException("Too many profiler sections adding '" + name + "'");
+		}
+		names[sectionCount] = name;
+		histograms[sectionCount] = new Histogram();
+		events[sectionCount] = new LoopPhaseEvent();
+		events[sectionCount].phase = name;
+		entries[sectionCount] = new NetworkTableEntry[] { table.getEntry(name + " p50 (ms)"),
+				table.getEntry(name + " p99 (ms)"), table.getEntry(name + " max (ms)") };
+		return sectionCount++;
+	}
+
+	/**
+	 * Do something more whenever a loop profile is dumped, eg dump the Flight
+	 * Recorder too.
+	 * 
+	 * @param listener run on the dump thread after each dump
+	 */
+	public void setOverrunListener(Runnable listener) {
+		overrunListener = listener;
+	}
+
+	/**
+	 * Start timing a pass through the robot loop
+	 */
+	public void startLoop() {
+		Arrays.fill(loopUs, 0, sectionCount, 0);
+		start(LOOP_SECTION);
+	}
+
+	public void start(int section) {
+		if (threads != null) {
+			startBytes[section] = readAllocatedBytes();
+			// After the read, since what it allocated is already in startBytes
+			startReads[section] = reads;
+		}
+		startNs[section] = System.nanoTime();
+		LoopPhaseEvent event = events[section];
+		if (event.isEnabled()) {
+			event.begin();
+		}
+	}
+
+	public void stop(int section) {
+		long us = (System.nanoTime() - startNs[section]) / 1000;
+		LoopPhaseEvent event = events[section];
+		if (event.isEnabled()) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.loop = loopCount;
+				event.commit();
+			}
+		}
+		histograms[section].record(us);
+		loopUs[section] += us;
+		if (threads != null) {
+			long bytes = readAllocatedBytes() - startBytes[section];
+			// Don't count what our own reads allocated: this one, and those of nested sections
+			allocatedBytes[section] += bytes - (reads - startReads[section]) * bytesPerRead;
+		}
+	}
+
+	/**
+	 * Count the bytes each section allocates, for finding what makes garbage in
+	 * the loop. Off by default; reading the counter costs about a microsecond.
+	 * Turning it on clears the counts.
+	 */
+	public void setAllocationTracking(boolean enabled) {
+		if (!enabled) {
+			threads = null;
+			return;
+		}
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		threads.setThreadAllocatedMemoryEnabled(true);
+		Arrays.fill(allocatedBytes, 0);
+		// Some JVMs allocate an array or two to read the counter
+		readAllocatedBytes();
+		long first = readAllocatedBytes();
+		bytesPerRead = readAllocatedBytes() - first;
+	}
+
+	private long readAllocatedBytes() {
+		reads++;
+		return threadAllocatedBytes();
+	}
+
+	/**
+	 * The loop thread's allocation counter. Package-private so tests can make
+	 * reading it allocate, as it does on the roboRIO.
+	 */
+	long threadAllocatedBytes() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return bytes the section has allocated since allocation tracking was
+	 *         turned on
+	 */
+	public long getAllocatedBytes(int section) {
+		return allocatedBytes[section];
+	}
+
+	public int getSectionCount() {
+		return sectionCount;
+	}
+
+	public String getSectionName(int section) {
+		return names[section];
+	}
+
+	/**
+	 * Finish timing a pass through the robot loop. Publishes the percentiles when
+	 * they are due, and starts a dump if the loop overran.
+	 */
+	public void endLoop() {
+		stop(LOOP_SECTION);
+		int row = historyNext;
+		System.arraycopy(loopUs, 0, history[row], 0, sectionCount);
+		historyLoop[row] = loopCount;
+		historyNext = (row + 1) % history.length;
+		loopCount++;
+
+		if (loopUs[LOOP_SECTION] > overrunUs) {
+			overruns++;
+			overrunsEntry.setDouble(overruns);
+			long now = System.nanoTime();
+			if (!dumping && now - lastDumpNs > MIN_DUMP_INTERVAL_S * 1e9) {
+				lastDumpNs = now;
+				freeze();
+			}
+		}
+
+		if (loopCount % publishLoops == 0) {
+			publish();
+		}
+	}
+
+	/**
+	 * Copy the history for the dump thread, and wake it up
+	 */
+	private void freeze() {
+		for (int i = 0; i < history.length; ++i) {
+			System.arraycopy(history[i], 0, frozen[i], 0, sectionCount);
+		}
+		System.arraycopy(historyLoop, 0, frozenLoop, 0, historyLoop.length);
+		frozenNext = historyNext;
+		frozenSections = sectionCount;
+		dumping = true;
+		dumpRequested.release();
+	}
+
+	/**
+	 * Publish each section's percentiles over the last window, then start a new window
+	 */
+	private void publish() {
+		for (int i = 0; i < sectionCount; ++i) {
+			Histogram h = histograms[i];
+			p99[i] = h.getPercentile(0.99) / 1000.0;
+			entries[i][0].setDouble(h.getPercentile(0.5) / 1000.0);
+			entries[i][1].setDouble(p99[i]);
+			entries[i][2].setDouble(h.getMax() / 1000.0);
+			h.reset();
+		}
+
+		// Pick out the worst few, leaving out the whole loop
+		for (int w = 0; w < WORST_COUNT; ++w) {
+			int worstSection = -1;
+			for (int i = LOOP_SECTION + 1; i < sectionCount; ++i) {
+				if (!isListed(names[i], w) && (worstSection < 0 || p99[i] > p99[worstSection])) {
+					worstSection = i;
+				}
+			}
+			worst[w] = (worstSection < 0) ? "" : names[worstSection];
+		}
+		worstEntry.setStringArray(worst);
+	}
+
+	private boolean isListed(String name, int count) {
+		for (int i = 0; i < count; ++i) {
+			if (worst[i] == name) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void dumpOnOverrun() {
+		while (true) {
+			try {
+				dumpRequested.acquire();
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				System.out.println("Loop overrun; profile written to " + writeFrozen());
+			} catch (IOException e) {
+				System.err.println("could not write loop profile: " + e);
+			}
+			dumping = false;
+
+			Runnable listener = overrunListener;
+			if (listener != null) {
+				listener.run();
+			}
+		}
+	}
+
+	/**
+	 * Write the frozen history as CSV, oldest loop first, one column of
+	 * microseconds per section
+	 */
+	private Path writeFrozen() throws IOException {
+		String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		Path path = Paths.get(directory, "loop-overrun-" + stamp + ".csv");
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+			out.print("loop");
+			for (int s = 0; s < frozenSections; ++s) {
+				out.print("," + names[s] + " (us)");
+			}
+			out.println();
+			for (int i = 0; i < frozen.length; ++i) {
+				int row = (frozenNext + i) % frozen.length;
+				if (frozenLoop[row] == 0 && row != 0) {
+					continue; // Not filled yet
+				}
+				out.print(frozenLoop[row]);
+				for (int s = 0; s < frozenSections; ++s) {
+					out.print(",");
+					out.print(frozen[row][s]);
+				}
+				out.println();
+			}
+		}
+		return path;
+	}
+}
@@ -0,0 +1,303 @@
+package frc.robot.sim;
+
+import java.util.function.BooleanSupplier;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Solenoid;
+import edu.wpi.first.wpilibj.interfaces.Gyro;
+import frc.robot.Constants;
+import frc.robot.components.CachingSolenoid;
+import frc.robot.components.DrivePod;
+import frc.robot.components.TalonDrivePod;
+import frc.robot.subsystems.DriveBase;
+
+/**
+ * Physics model of the drivetrain, for running the robot code off the robot.
+ * 
+ * Each side is a shifting gearbox driven by three CIMs, with the encoder on the
+ * output shaft. The model covers the motors' torque and current, battery sag,
+ * wheel traction, rolling resistance, turning scrub, and the torque cut while
+ * the shifter moves. The six Talons are SimTalons, fed from the model; the
+ * shifter is a real Solenoid, which the HAL simulator lets us read back; and the
+ * gyro reads the model's heading.
+ * 
+ * Call step() to advance the model. The robot code's own loops run on the FPGA
+ * clock, so to go faster than real time, pause the HAL simulator's timing and
+ * step it along with the model (see SimulatedMatches). To run in real time
+ * instead, eg in the desktop simulator, call start().
+ */
+public class DrivetrainSim {
+	public static final double STEP_S = 0.001; // The Talons run their loops at 1 kHz
+
+	// Robot
+	private static final double MASS_KG = 60.0; // With battery and bumpers
+	private static final double MOMENT_OF_INERTIA = 5.6; // kg m^2, about the center
+	private static final double TRACK_WIDTH_M = Constants.DRIVE_TRACK_WIDTH_INCHES * 0.0254;
+	private static final double GRAVITY = 9.81;
+	private static final double WHEEL_COF = 1.1; // Traction on carpet
+	private static final double ROLLING_RESISTANCE = 0.03; // Fraction of weight
+	private static final double SCRUB_COF = 0.3; // Sideways wheel scrub when turning
+	private static final double SHIFT_TIME_S = 0.05; // Gearbox in neutral while the dog moves
+
+	// CIM motor
+	private static final int MOTORS_PER_SIDE = 3;
+	private static final double CIM_FREE_SPEED = 5330 * 2 * Math.PI / 60; // rad/s
+	private static final double CIM_STALL_TORQUE = 2.41; // N m
+	private static final double CIM_STALL_CURRENT = 131; // A
+	private static final double CIM_FREE_CURRENT = 2.7; // A
+	private static final double NOMINAL_VOLTAGE = 12;
+	private static final double RESISTANCE = NOMINAL_VOLTAGE / CIM_STALL_CURRENT;
+	private static final double KV = (NOMINAL_VOLTAGE - RESISTANCE * CIM_FREE_CURRENT) / CIM_FREE_SPEED; // V per rad/s
+	private static final double KT = CIM_STALL_TORQUE / CIM_STALL_CURRENT; // N m per A
+
+	// Gearing, as motor rad/s per wheel m/s. Free speed is a bit above the top speeds we plan with.
+	private static final double FREE_SPEED_MARGIN = 0.9;
+	private static final double LOW_GEAR_RATIO = CIM_FREE_SPEED
+			/ (Constants.LOW_GEAR_TOP_SPEED * 0.3048 / FREE_SPEED_MARGIN);
+	private static final double HIGH_GEAR_RATIO = CIM_FREE_SPEED
+			/ (Constants.HIGH_GEAR_TOP_SPEED * 0.3048 / FREE_SPEED_MARGIN);
+
+	// Battery
+	private static final double BATTERY_VOLTAGE = 12.7;
+	private static final double BATTERY_RESISTANCE = 0.02; // Including the wiring
+	private static final double OTHER_LOAD_A = 2.0; // roboRIO, radio, etc
+
+	private static final double ENCODER_TICKS_PER_METER = TalonDrivePod.ENCODER_TICKS_PER_INCH / 0.0254;
+
+	/** One gearbox, with its Talons */
+	private static class Side {
+		final SimTalon leader, follower1, follower2;
+		double positionM = 0;
+		double velocityMps = 0;
+		double force = 0;
+		double currentA = 0; // All three motors
+
+		Side(int leaderId, int follower1Id, int follower2Id) {
+			leader = new SimTalon(leaderId);
+			follower1 = new SimTalon(follower1Id);
+			follower2 = new SimTalon(follower2Id);
+		}
+
+		DrivePod createPod(String name, boolean reverse) {
+			return new TalonDrivePod(name, leader.getController(), follower1.getController(), follower2.getController(),
+					reverse);
+		}
+	}
+
+	private final Side left = new Side(Constants.LEFT_LEAD, Constants.LEFT_F1, Constants.LEFT_F2);
+	private final Side right = new Side(Constants.RIGHT_LEAD, Constants.RIGHT_F1, Constants.RIGHT_F2);
+	private BooleanSupplier shifter = () -> false;
+	private Notifier notifier = null;
+
+	// Where the robot really is
+	private double x, y, heading; // m, m, rad CCW
+	private double velocity, angularVelocity; // m/s, rad/s CCW
+
+	// Gearbox and battery
+	private boolean highGear = false;
+	private boolean requestedGear = false;
+	private double shiftRemainingS = 0;
+	private int shifts = 0;
+	private double busVoltage = BATTERY_VOLTAGE;
+	private double minBusVoltage = BATTERY_VOLTAGE;
+
+	/**
+	 * Build a DriveBase that drives this model. Its control loop isn't started;
+	 * call DriveBase.startControlLoop() to run it on its Notifier, or
+	 * stepControlLoop() to run it in step with the model.
+	 */
+	public DriveBase createDriveBase() {
+		CachingSolenoid shifterSolenoid = new CachingSolenoid(new Solenoid(Constants.SHIFTER_SOLENOID_NUM));
+		shifter = shifterSolenoid::get;
+		return new DriveBase(left.createPod("Left", false), right.createPod("Right", true), shifterSolenoid,
+				new SimGyro(this));
+	}
+
+	/**
+	 * Step the model on its own Notifier, in real time
+	 */
+	public void start() {
+		if (notifier == null) {
+			notifier = new Notifier(() -> step(STEP_S));
+		}
+		notifier.startPeriodic(STEP_S);
+	}
+
+	public void stop() {
+		if (notifier != null) {
+			notifier.stop();
+		}
+	}
+
+	/**
+	 * Put the robot somewhere, at rest
+	 * 
+	 * @param xInches
+	 * @param yInches
+	 * @param headingDegrees CCW positive
+	 */
+	public synchronized void reset(double xInches, double yInches, double headingDegrees) {
+		x = xInches * 0.0254;
+		y = yInches * 0.0254;
+		heading = Math.toRadians(headingDegrees);
+		velocity = 0;
+		angularVelocity = 0;
+		left.velocityMps = 0;
+		right.velocityMps = 0;
+	}
+
+	/**
+	 * Advance the model. Steps much longer than STEP_S make the Talons' loops
+	 * unstable.
+	 * 
+	 * @param dtS seconds to advance
+	 */
+	public synchronized void step(double dtS) {
+		// The shifter takes a moment, and the gearbox is in neutral meanwhile
+		boolean wantHighGear = shifter.getAsBoolean();
+		if (wantHighGear != requestedGear) {
+			requestedGear = wantHighGear;
+			shiftRemainingS = SHIFT_TIME_S;
+		}
+		if (shiftRemainingS > 0) {
+			shiftRemainingS -= dtS;
+			if (shiftRemainingS <= 0 && highGear != requestedGear) {
+				highGear = requestedGear;
+				shifts++;
+			}
+		}
+		boolean engaged = shiftRemainingS <= 0;
+		double ratio = highGear ? HIGH_GEAR_RATIO : LOW_GEAR_RATIO;
+
+		// Forces at the wheels
+		driveSide(left, dtS, ratio, engaged);
+		driveSide(right, dtS, ratio, engaged);
+		busVoltage = BATTERY_VOLTAGE - BATTERY_RESISTANCE * (left.currentA + right.currentA + OTHER_LOAD_A);
+		minBusVoltage = Math.min(minBusVoltage, busVoltage);
+
+		// Move the chassis
+		double halfTrack = TRACK_WIDTH_M / 2;
+		double scrub = SCRUB_COF * MASS_KG * GRAVITY * TRACK_WIDTH_M / 4 * Math.tanh(angularVelocity / 0.1);
+		double acceleration = (left.force + right.force) / MASS_KG;
+		double angularAcceleration = ((right.force - left.force) * halfTrack - scrub) / MOMENT_OF_INERTIA;
+		velocity += acceleration * dtS;
+		angularVelocity += angularAcceleration * dtS;
+		heading += angularVelocity * dtS;
+		x += velocity * Math.cos(heading) * dtS;
+		y += velocity * Math.sin(heading) * dtS;
+
+		left.velocityMps = velocity - angularVelocity * halfTrack;
+		right.velocityMps = velocity + angularVelocity * halfTrack;
+		left.positionM += left.velocityMps * dtS;
+		right.positionM += right.velocityMps * dtS;
+	}
+
+	/**
+	 * Run one side's Talon, and work out the force its wheels put on the carpet
+	 */
+	private void driveSide(Side side, double dtS, double ratio, boolean engaged) {
+		side.leader.update(dtS, side.positionM * ENCODER_TICKS_PER_METER,
+				side.velocityMps * ENCODER_TICKS_PER_METER / 10, busVoltage);
+		double volts = side.leader.getOutput() * busVoltage;
+		double motorSpeed = side.velocityMps * ratio;
+		double motorCurrent = engaged ? (volts - KV * motorSpeed) / RESISTANCE : 0;
+		side.currentA = MOTORS_PER_SIDE * Math.abs(motorCurrent);
+
+		double maxTraction = WHEEL_COF * MASS_KG * GRAVITY / 2;
+		double force = MOTORS_PER_SIDE * KT * motorCurrent * ratio;
+		force = Math.max(-maxTraction, Math.min(maxTraction, force));
+		double rolling = ROLLING_RESISTANCE * MASS_KG * GRAVITY / 2;
+		side.force = force - rolling * Math.tanh(side.velocityMps / 0.05);
+	}
+
+	public synchronized double getXInches() {
+		return x / 0.0254;
+	}
+
+	public synchronized double getYInches() {
+		return y / 0.0254;
+	}
+
+	/**
+	 * @return the true heading, CCW positive, not wrapped
+	 */
+	public synchronized double getHeadingDegrees() {
+		return Math.toDegrees(heading);
+	}
+
+	/**
+	 * @return the true turn rate, CCW positive
+	 */
+	public synchronized double getTurnRateDegreesPerSecond() {
+		return Math.toDegrees(angularVelocity);
+	}
+
+	/**
+	 * @return forward speed of the chassis
+	 */
+	public synchronized double getSpeedFeetPerSecond() {
+		return velocity / 0.3048;
+	}
+
+	public synchronized boolean isHighGear() {
+		return highGear;
+	}
+
+	/**
+	 * @return how many times the gearbox has changed gear
+	 */
+	public synchronized int getShifts() {
+		return shifts;
+	}
+
+	public synchronized double getBusVoltage() {
+		return busVoltage;
+	}
+
+	/**
+	 * @return the lowest the battery has sagged to
+	 */
+	public synchronized double getMinBusVoltage() {
+		return minBusVoltage;
+	}
+
+	/**
+	 * @return current drawn by all six drive motors
+	 */
+	public synchronized double getDriveCurrent() {
+		return left.currentA + right.currentA;
+	}
+
+	/** Reads the model's heading, like the ADXRS450 would */
+	private static class SimGyro implements Gyro {
+		private final DrivetrainSim sim;
+		private double zero = 0;
+
+		SimGyro(DrivetrainSim sim) {
+			this.sim = sim;
+		}
+
+		@Override
+		public void calibrate() {
+		}
+
+		@Override
+		public void reset() {
+			zero = sim.getHeadingDegrees();
+		}
+
+		@Override
+		public double getAngle() {
+			return -(sim.getHeadingDegrees() - zero); // CW positive
+		}
+
+		@Override
+		public double getRate() {
+			return -sim.getTurnRateDegreesPerSecond();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
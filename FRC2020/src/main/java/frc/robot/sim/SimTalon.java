@@ -0,0 +1,376 @@
+package frc.robot.sim;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motion.TrajectoryPoint;
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.DemandType;
+import com.ctre.phoenix.motorcontrol.IMotorController;
+import com.ctre.phoenix.motorcontrol.IMotorControllerEnhanced;
+import com.ctre.phoenix.motorcontrol.VelocityMeasPeriod;
+
+/**
+ * A Talon SRX for simulation. It stands in for the real one behind the
+ * IMotorControllerEnhanced interface, and runs the parts of the Talon that the
+ * drive code uses: percent output with the open loop ramp, the velocity and
+ * position loops with their gain slots and arbitrary feedforward, the motion
+ * profile buffers and executor, and followers.
+ * 
+ * The physics model calls update() every step with where the encoder is, and
+ * reads back the output. Everything else is the API the robot code calls, on
+ * whatever thread it likes. Calls the simulation doesn't care about (eg most
+ * config calls) succeed and do nothing.
+ * 
+ * Motor and sensor inversion are left out; positive output always moves the
+ * encoder forward.
+ */
+public class SimTalon implements InvocationHandler {
+	private static final int SLOTS = 4;
+	private static final int TOP_BUFFER_SIZE = 2048; // Same as the Phoenix API
+	private static final int BOTTOM_BUFFER_SIZE = 128; // Same as the Talon
+	// The Talon measures velocity over a period, and averages a window of those
+	// measurements, taken one per millisecond. Both are configurable; these are the defaults.
+	private static final int DEFAULT_MEASUREMENT_PERIOD_MS = 100;
+	private static final int DEFAULT_MEASUREMENT_WINDOW = 64;
+	private static final int MAX_VELOCITY_SAMPLES = 100 + 64;
+
+	private final int deviceId;
+	private final IMotorControllerEnhanced controller;
+	private SimTalon leader = null;
+
+	// What the robot code asked for
+	private ControlMode mode = ControlMode.PercentOutput;
+	private double demand = 0;
+	private double arbFeedForward = 0;
+	private int slot = 0;
+	private final double[] kP = new double[SLOTS], kI = new double[SLOTS], kD = new double[SLOTS],
+			kF = new double[SLOTS], iZone = new double[SLOTS];
+	private double peakForward = 1, peakReverse = -1;
+	private double rampSeconds = 0;
+
+	// State of the Talon's loops
+	private double output = 0; // -1 to 1
+	private double positionTicks = 0;
+	private double velocityTicksPer100ms = 0; // Averaged, as the Talon reports it
+	// Instantaneous velocity, one sample per update, averaged over the period and window together
+	private final double[] velocitySamples = new double[MAX_VELOCITY_SAMPLES];
+	private double velocitySum = 0;
+	private int velocityNext = 0;
+	private int measurementPeriodMs = DEFAULT_MEASUREMENT_PERIOD_MS;
+	private int measurementWindow = DEFAULT_MEASUREMENT_WINDOW;
+	private int velocityWindow = velocityWindow();
+	private double integral = 0;
+	private double lastError = 0;
+	private double busVoltage = 12;
+
+	// Motion profile
+	private static class Point {
+		double position, velocity, arbFeedFwd;
+		int slot, durationMs;
+		boolean isLast;
+	}
+
+	private final ArrayDeque<Point> topBuffer = new ArrayDeque<>();
+	private final ArrayDeque<Point> bottomBuffer = new ArrayDeque<>();
+	private Point activePoint = null;
+	private double activePointElapsedMs = 0;
+	private boolean hasUnderrun = false;
+	private boolean isUnderrun = false;
+
+	/**
+	 * @param deviceId the CAN ID it pretends to have
+	 */
+	public SimTalon(int deviceId) {
+		this.deviceId = deviceId;
+		controller = (IMotorControllerEnhanced) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { IMotorControllerEnhanced.class }, this);
+	}
+
+	/**
+	 * @return the simulated Talon, for the robot code to use
+	 */
+	public IMotorControllerEnhanced getController() {
+		return controller;
+	}
+
+	/**
+	 * Run the Talon's control loop for one step.
+	 * 
+	 * @param dtS                   how long since the last update
+	 * @param positionTicks         where the encoder is now
+	 * @param velocityTicksPer100ms how fast the encoder is going now
+	 * @param busVoltage            battery voltage at the Talon
+	 */
+	public synchronized void update(double dtS, double positionTicks, double velocityTicksPer100ms,
+			double busVoltage) {
+		this.positionTicks = positionTicks;
+		this.busVoltage = busVoltage;
+		velocitySum += velocityTicksPer100ms - velocitySamples[velocityNext];
+		velocitySamples[velocityNext] = velocityTicksPer100ms;
+		velocityNext = (velocityNext + 1) % velocityWindow;
+		this.velocityTicksPer100ms = velocitySum / velocityWindow;
+
+		double target;
+		switch (mode) {
+		case PercentOutput:
+			target = demand;
+			if (rampSeconds > 0) {
+				double maxStep = dtS / rampSeconds;
+				target = output + Math.max(-maxStep, Math.min(maxStep, target - output));
+			}
+			break;
+		case Velocity:
+			target = closedLoop(demand - this.velocityTicksPer100ms, demand, slot) + arbFeedForward;
+			break;
+		case Position:
+			target = closedLoop(demand - positionTicks, 0, slot) + arbFeedForward;
+			break;
+		case MotionProfile:
+			target = runProfile(dtS);
+			break;
+		default: // Disabled, and any mode we don't simulate
+			target = 0;
+			break;
+		}
+		output = Math.max(peakReverse, Math.min(peakForward, target));
+	}
+
+	/**
+	 * Measuring over a period, then averaging a window of measurements, comes to
+	 * the same as averaging this many instantaneous samples
+	 */
+	private int velocityWindow() {
+		return measurementPeriodMs + measurementWindow - 1;
+	}
+
+	/**
+	 * Start the velocity average over at its new length, from the current value
+	 */
+	private void resizeVelocityWindow() {
+		velocityWindow = velocityWindow();
+		for (int i = 0; i < velocityWindow; ++i) {
+			velocitySamples[i] = velocityTicksPer100ms;
+		}
+		velocitySum = velocityTicksPer100ms * velocityWindow;
+		velocityNext = 0;
+	}
+
+	/**
+	 * @return the output the Talon is applying, from -1 to 1
+	 */
+	public synchronized double getOutput() {
+		return (leader != null) ? leader.getOutput() : output;
+	}
+
+	private double closedLoop(double error, double feedForwardTarget, int slot) {
+		if (iZone[slot] != 0 && Math.abs(error) > iZone[slot]) {
+			integral = 0;
+		} else {
+			integral += error;
+		}
+		double derivative = error - lastError;
+		lastError = error;
+		return (kF[slot] * feedForwardTarget + kP[slot] * error + kI[slot] * integral + kD[slot] * derivative) / 1023.0;
+	}
+
+	private double runProfile(double dtS) {
+		if (demand == SetValueMotionProfile.Disable.value) {
+			return 0;
+		}
+		if (demand == SetValueMotionProfile.Enable.value) {
+			if (activePoint == null) {
+				nextPoint();
+			} else {
+				activePointElapsedMs += dtS * 1000;
+				if (activePointElapsedMs >= activePoint.durationMs && !activePoint.isLast) {
+					nextPoint();
+				}
+			}
+		}
+		if (activePoint == null) {
+			return 0;
+		}
+		// Hold, or starved of points: stay where the last point left us
+		boolean moving = demand == SetValueMotionProfile.Enable.value && !isUnderrun && !activePoint.isLast;
+		double velocity = moving ? activePoint.velocity : 0;
+		double feedForward = moving ? activePoint.arbFeedFwd : 0;
+		return closedLoop(activePoint.position - positionTicks, velocity, activePoint.slot) + feedForward;
+	}
+
+	private void nextPoint() {
+		Point next = bottomBuffer.poll();
+		if (next == null) {
+			hasUnderrun = true;
+			isUnderrun = true;
+			return;
+		}
+		isUnderrun = false;
+		activePoint = next;
+		activePointElapsedMs = 0;
+	}
+
+	@Override
+	public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+		switch (method.getName()) {
+		case "set":
+			mode = (ControlMode) args[0];
+			if (mode == ControlMode.Follower) {
+				return null; // We only follow by follow()
+			}
+			demand = ((Number) args[1]).doubleValue();
+			arbFeedForward = (args.length == 4 && args[2] == DemandType.ArbitraryFeedForward)
+					? ((Number) args[3]).doubleValue()
+					: 0;
+			return null;
+		case "follow":
+			IMotorController other = (IMotorController) args[0];
+			leader = (SimTalon) Proxy.getInvocationHandler(other);
+			mode = ControlMode.Follower;
+			return null;
+		case "neutralOutput":
+			mode = ControlMode.Disabled;
+			return null;
+		case "selectProfileSlot":
+			slot = (Integer) args[0];
+			return null;
+		case "config_kP":
+			kP[(Integer) args[0]] = ((Number) args[1]).doubleValue();
+			return ErrorCode.OK;
+		case "config_kI":
+			kI[(Integer) args[0]] = ((Number) args[1]).doubleValue();
+			return ErrorCode.OK;
+		case "config_kD":
+			kD[(Integer) args[0]] = ((Number) args[1]).doubleValue();
+			return ErrorCode.OK;
+		case "config_kF":
+			kF[(Integer) args[0]] = ((Number) args[1]).doubleValue();
+			return ErrorCode.OK;
+		case "config_IntegralZone":
+			iZone[(Integer) args[0]] = ((Number) args[1]).doubleValue();
+			return ErrorCode.OK;
+		case "configPeakOutputForward":
+			peakForward = ((Number) args[0]).doubleValue();
+			return ErrorCode.OK;
+		case "configPeakOutputReverse":
+			peakReverse = ((Number) args[0]).doubleValue();
+			return ErrorCode.OK;
+		case "configVelocityMeasurementPeriod":
+			measurementPeriodMs = ((VelocityMeasPeriod) args[0]).value;
+			resizeVelocityWindow();
+			return ErrorCode.OK;
+		case "configVelocityMeasurementWindow":
+			measurementWindow = Math.max(1, Math.min(DEFAULT_MEASUREMENT_WINDOW, (Integer) args[0]));
+			resizeVelocityWindow();
+			return ErrorCode.OK;
+		case "configOpenloopRamp":
+			rampSeconds = ((Number) args[0]).doubleValue();
+			return ErrorCode.OK;
+		case "getSelectedSensorPosition":
+			return result(method, positionTicks);
+		case "getSelectedSensorVelocity":
+			return result(method, velocityTicksPer100ms);
+		case "getClosedLoopTarget":
+			return result(method, (mode == ControlMode.Velocity) ? demand : 0);
+		case "getControlMode":
+			return mode;
+		case "getBusVoltage":
+			return busVoltage;
+		case "getMotorOutputPercent":
+			return getOutput();
+		case "getMotorOutputVoltage":
+			return getOutput() * busVoltage;
+		case "getDeviceID":
+		case "getBaseID":
+			return deviceId;
+		case "pushMotionProfileTrajectory":
+			if (topBuffer.size() >= TOP_BUFFER_SIZE) {
+				return ErrorCode.BufferFull;
+			}
+			TrajectoryPoint tp = (TrajectoryPoint) args[0];
+			Point point = new Point();
+			point.position = tp.position;
+			point.velocity = tp.velocity;
+			point.arbFeedFwd = tp.arbFeedFwd;
+			point.slot = tp.profileSlotSelect0;
+			point.durationMs = tp.timeDur;
+			point.isLast = tp.isLastPoint;
+			topBuffer.add(point);
+			return ErrorCode.OK;
+		case "isMotionProfileTopLevelBufferFull":
+			return topBuffer.size() >= TOP_BUFFER_SIZE;
+		case "getMotionProfileTopLevelBufferCount":
+			return topBuffer.size();
+		case "processMotionProfileBuffer":
+			while (!topBuffer.isEmpty() && bottomBuffer.size() < BOTTOM_BUFFER_SIZE) {
+				bottomBuffer.add(topBuffer.poll());
+			}
+			return result(method, 0);
+		case "clearMotionProfileTrajectories":
+			topBuffer.clear();
+			bottomBuffer.clear();
+			activePoint = null;
+			return result(method, 0);
+		case "clearMotionProfileHasUnderrun":
+			hasUnderrun = false;
+			return ErrorCode.OK;
+		case "getMotionProfileStatus":
+			MotionProfileStatus status = (MotionProfileStatus) args[0];
+			status.topBufferCnt = topBuffer.size();
+			status.topBufferRem = TOP_BUFFER_SIZE - topBuffer.size();
+			status.btmBufferCnt = bottomBuffer.size();
+			status.hasUnderrun = hasUnderrun;
+			status.isUnderrun = isUnderrun;
+			status.activePointValid = activePoint != null;
+			status.isLast = activePoint != null && activePoint.isLast;
+			status.profileSlotSelect0 = (activePoint != null) ? activePoint.slot : 0;
+			status.timeDurMs = (activePoint != null) ? activePoint.durationMs : 0;
+			status.outputEnable = (mode == ControlMode.MotionProfile) ? profileOutput() : SetValueMotionProfile.Disable;
+			return ErrorCode.OK;
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "equals":
+			return proxy == args[0];
+		case "toString":
+			return "SimTalon " + deviceId;
+		default:
+			return result(method, 0);
+		}
+	}
+
+	private SetValueMotionProfile profileOutput() {
+		for (SetValueMotionProfile value : SetValueMotionProfile.values()) {
+			if (value.value == demand) {
+				return value;
+			}
+		}
+		return SetValueMotionProfile.Invalid;
+	}
+
+	/**
+	 * Turn a value into whatever the method returns. Calls we don't simulate get
+	 * zero, or OK.
+	 */
+	private static Object result(Method method, double value) {
+		Class<?> type = method.getReturnType();
+		if (type == ErrorCode.class) {
+			return ErrorCode.OK;
+		} else if (type == int.class) {
+			return (int) Math.round(value);
+		} else if (type == double.class) {
+			return value;
+		} else if (type == long.class) {
+			return (long) Math.round(value);
+		} else if (type == float.class) {
+			return (float) value;
+		} else if (type == boolean.class) {
+			return false;
+		}
+		return null;
+	}
+}
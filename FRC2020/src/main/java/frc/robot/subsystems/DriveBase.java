@@ -1,13 +1,26 @@
 
 package frc.robot.subsystems;
 
+import edu.wpi.first.wpilibj.ADXRS450_Gyro;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.Solenoid;
-import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.interfaces.Gyro;
 import edu.wpi.first.wpilibj.command.Subsystem;
 import frc.robot.Constants;
 import frc.robot.Robot;
+import frc.robot.SensorSnapshot;
+import frc.robot.auto.Trajectory;
+import frc.robot.auto.TrajectoryExecutor;
 import frc.robot.commands.drivebase.ManuallyControlDrivebase;
+import frc.robot.control.DriveCommand;
+import frc.robot.control.DriveControlLoop;
+import frc.robot.control.DriveState;
+import frc.robot.control.PoseHistory;
+import frc.robot.components.CachingSolenoid;
+import frc.robot.components.CanProfile;
+import frc.robot.components.CanWriteCounter;
 import frc.robot.components.DrivePod;
+import frc.robot.telemetry.TelemetryService;
 
 /**
  * The DriveBase subsystem incorporates the sensors and actuators attached to
@@ -16,32 +29,66 @@ import frc.robot.components.DrivePod;
 public class DriveBase extends Subsystem {
 
 	private DrivePod leftPod, rightPod;
-	private Solenoid shifter;
+	private CachingSolenoid shifter;
+	private Gyro gyro;
 
-	private double leftSpeed;
-	private double rightSpeed;
+	// Runs the pods and shifter on its own thread
+	private DriveControlLoop controlLoop;
+	// Streams motion profiles to the pods
+	private TrajectoryExecutor trajectoryExecutor;
+
+	// What the commands have asked for this pass; handed to the control loop by actuate()
+	private DriveCommand command = new DriveCommand();
+	private boolean highGear = false;
 
 	// Mode for the gearshift, as set by the auto moves
 	public enum GearShiftMode {
 		LOCK_HIGH_GEAR, LOCK_LOW_GEAR, AUTOSHIFT,
 	}
 
-	private GearShiftMode gearShiftMode = GearShiftMode.AUTOSHIFT;
-
-	private Timer shiftTimer = new Timer();
-	private boolean allowShift = true;
-	private boolean allowDeshift = true;
-	private boolean hasAlreadyShifted = false;
-
 	public DriveBase() {
-		super();
-
 		// Note that one pod must be inverted, since the gearbox assemblies are
 		// rotationally symmetrical
-		leftPod = new DrivePod("Left", Constants.LEFT_LEAD, Constants.LEFT_F1, Constants.LEFT_F2, false);
-		rightPod = new DrivePod("Right", Constants.RIGHT_LEAD, Constants.RIGHT_F1, Constants.RIGHT_F2, true);
-		shifter = new Solenoid(Constants.SHIFTER_SOLENOID_NUM);
+		this(DrivePod.create("Left", Constants.LEFT_LEAD, Constants.LEFT_F1, Constants.LEFT_F2, false),
+				DrivePod.create("Right", Constants.RIGHT_LEAD, Constants.RIGHT_F1, Constants.RIGHT_F2, true),
+				new CachingSolenoid(new Solenoid(Constants.SHIFTER_SOLENOID_NUM)),
+				new ADXRS450_Gyro()); // Calibrates, so keep the robot still while it starts
+		startControlLoop();
+	}
+
+	/**
+	 * Build a drivebase around hardware made elsewhere, eg simulated. The control
+	 * loop isn't started; call startControlLoop(), or stepControlLoop() to run it
+	 * by hand.
+	 */
+	public DriveBase(DrivePod leftPod, DrivePod rightPod, CachingSolenoid shifter, Gyro gyro) {
+		super();
+		this.leftPod = leftPod;
+		this.rightPod = rightPod;
+		this.shifter = shifter;
+		this.gyro = gyro;
 
+		// Config calls block on the CAN bus, so make them once here rather than every loop
+		setMaxSpeed(1);
+		setClosedLoop(Constants.DRIVE_VELOCITY_MODE);
+
+		trajectoryExecutor = new TrajectoryExecutor(leftPod, rightPod);
+		controlLoop = new DriveControlLoop(leftPod, rightPod, shifter, trajectoryExecutor, gyro);
+	}
+
+	/**
+	 * Start running the control loop on its own thread
+	 */
+	public void startControlLoop() {
+		controlLoop.start();
+	}
+
+	/**
+	 * Run one pass of the control loop on this thread, for simulations that keep
+	 * their own time. Only if the loop isn't started.
+	 */
+	public void stepControlLoop() {
+		controlLoop.step();
 	}
 
 	/**
@@ -53,6 +100,25 @@ public class DriveBase extends Subsystem {
 		setDefaultCommand(new ManuallyControlDrivebase());
 	}
 
+	/**
+	 * Add the drivebase's signals to the telemetry service. These replace putting
+	 * the subsystem itself on the SmartDashboard, which republished its state
+	 * every pass.
+	 */
+	public void addTelemetry(TelemetryService telemetry) {
+		telemetry.addTextSignal("drivebase command", 4, this::getCurrentCommandName);
+		telemetry.addSignal("CAN writes sent/s", 1, CanWriteCounter::getSentPerSecond);
+		telemetry.addSignal("CAN writes saved/s", 1, CanWriteCounter::getSavedPerSecond);
+		telemetry.addSignal("set() calls suppressed/s", 1, CanWriteCounter::getSuppressedPerSecond);
+		telemetry.addSignal("CAN utilization (%)", 2, 1,
+				() -> RobotController.getCANStatus().percentBusUtilization * 100);
+		telemetry.addTextSignal("CAN profile", 1, () -> leftPod.getCanProfile().name());
+		leftPod.addTelemetry(telemetry);
+		rightPod.addTelemetry(telemetry);
+		controlLoop.addTelemetry(telemetry);
+		trajectoryExecutor.addTelemetry(telemetry);
+	}
+
 	/**
 	 * Turn dynamic braking on or off
 	 * 
@@ -63,6 +129,15 @@ public class DriveBase extends Subsystem {
 		rightPod.enableBrakeMode(isEnabled);
 	}
 
+	/**
+	 * Pick how often the drive Talons report in. Only goes out on the bus when the
+	 * profile changes.
+	 */
+	public void setCanProfile(CanProfile profile) {
+		leftPod.setCanProfile(profile);
+		rightPod.setCanProfile(profile);
+	}
+
 	/**
 	 * Drive at the commanded throttle values
 	 * 
@@ -70,8 +145,9 @@ public class DriveBase extends Subsystem {
 	 * @param rightThrottle between -1 and +1
 	 */
 	public void driveWithTankControls(double leftThrottle, double rightThrottle) {
-		leftPod.setThrottle(leftThrottle);
-		rightPod.setThrottle(rightThrottle);
+		command.mode = DriveCommand.Mode.TANK;
+		command.leftThrottle = leftThrottle;
+		command.rightThrottle = rightThrottle;
 	}
 
 	/**
@@ -86,22 +162,93 @@ public class DriveBase extends Subsystem {
 	}
 
 	/**
-	 * Drive with the forward and turn values from the joysticks
+	 * Drive with the forward and turn values from the joysticks. The control loop
+	 * does the shaping, so it is applied at the control loop rate.
 	 */
 	public void driveWithJoysticks() {
-		setMaxSpeed(1);
-		double y = Robot.oi.getForwardAxis();
-		double x = Robot.oi.getTurnAxis();
+		command.mode = DriveCommand.Mode.JOYSTICK;
+		command.forwardAxis = Robot.sensors.forwardAxis;
+		command.turnAxis = Robot.sensors.turnAxis;
+	}
+
+	/**
+	 * Drive at the given speeds, held by the Talons' velocity loops
+	 * 
+	 * @param leftInchesPerSecond  positive for forward
+	 * @param rightInchesPerSecond positive for forward
+	 */
+	public void driveWithVelocity(double leftInchesPerSecond, double rightInchesPerSecond) {
+		command.mode = DriveCommand.Mode.VELOCITY;
+		command.leftVelocity = leftInchesPerSecond;
+		command.rightVelocity = rightInchesPerSecond;
+	}
+
+	/**
+	 * Start driving a precomputed path, run by the Talons' motion profile
+	 * executors. Positions in the path are relative to where the robot is now.
+	 * 
+	 * @param trajectory the path to drive
+	 * @param highGear   the gear the path was planned for
+	 */
+	public void followTrajectory(Trajectory trajectory, boolean highGear) {
+		setShiftMode(highGear ? GearShiftMode.LOCK_HIGH_GEAR : GearShiftMode.LOCK_LOW_GEAR);
+		trajectoryExecutor.start(trajectory, highGear);
+		command.mode = DriveCommand.Mode.PROFILE;
+	}
+
+	/**
+	 * @return true once the path started by followTrajectory() is complete
+	 */
+	public boolean isTrajectoryFinished() {
+		return trajectoryExecutor.isFinished();
+	}
+
+	/**
+	 * Choose whether joystick and tank throttles are open loop, or speeds held by
+	 * the Talons' velocity loops
+	 * 
+	 * @param isClosedLoop true for closed loop velocity
+	 */
+	public void setClosedLoop(boolean isClosedLoop) {
+		command.closedLoop = isClosedLoop;
+	}
 
-		/*
-		 * "Exponential" drive, where the movements are more sensitive during slow
-		 * movement, permitting easier fine control
-		 */
-		x = Math.pow(x, 3);
-		y = Math.pow(y, 3);
-		driveWithForwardAndSpin(y, x);
+	/**
+	 * Turn toward a point and drive up to it, with the heading held by the control
+	 * loop from odometry. Call again whenever the point is refined.
+	 * 
+	 * @param x         inches, in the odometry frame
+	 * @param y         inches, in the odometry frame
+	 * @param stopRange how far short of the point to stop, in inches
+	 */
+	public void driveToward(double x, double y, double stopRange) {
+		command.mode = DriveCommand.Mode.AIM;
+		command.aimX = x;
+		command.aimY = y;
+		command.aimStopRange = stopRange;
+	}
+
+	/**
+	 * Stop the motors
+	 */
+	public void stop() {
+		command.mode = DriveCommand.Mode.STOP;
 	}
 
+	/**
+	 * Stop following a path, and stop the motors
+	 */
+	public void stopTrajectory() {
+		stop();
+		trajectoryExecutor.stop();
+	}
+
+	/**
+	 * Limit the output of both drive pods. This makes blocking CAN config calls
+	 * when the limit changes, so keep it out of the periodic loop.
+	 * 
+	 * @param maxSpeed between 0 and 1
+	 */
 	public void setMaxSpeed(double maxSpeed) {
 		leftPod.setMaxSpeed(maxSpeed);
 		rightPod.setMaxSpeed(maxSpeed);
@@ -113,7 +260,7 @@ public class DriveBase extends Subsystem {
 	 * @return instantaneous speed of the left side drive pod, in feet per second
 	 */
 	public double getLeftSpeed() {
-		return leftPod.getEncoderVelocityFeetPerSecond();
+		return Robot.sensors.leftPod.velocityFeetPerSecond;
 	}
 
 	/**
@@ -122,37 +269,46 @@ public class DriveBase extends Subsystem {
 	 * @return instantaneous speed of the right side drive pod, in feet per second
 	 */
 	public double getRightSpeed() {
-		return rightPod.getEncoderVelocityFeetPerSecond();
+		return Robot.sensors.rightPod.velocityFeetPerSecond;
 	}
 
 	/**
-	 * Get the driven distance of the left drive pod in ticks
+	 * Get the driven distance of the left drive pod in inches
 	 * 
-	 * @return driven distance of the left drive pod in ticks
+	 * @return driven distance of the left drive pod in inches
 	 */
-	public double getLeftEncoderPos() {
-		return leftPod.getQuadEncPos();
+	public double getLeftPositionInches() {
+		return Robot.sensors.leftPod.positionInches;
 	}
 
 	/**
-	 * Get the driven distance of the right drive pod in ticks
+	 * Get the driven distance of the right drive pod in inches
 	 * 
-	 * @return driven distance of the right drive pod in ticks
+	 * @return driven distance of the right drive pod in inches
 	 */
-	public double getRightEncoderPos() {
-		return rightPod.getQuadEncPos();
+	public double getRightPositionInches() {
+		return Robot.sensors.rightPod.positionInches;
 	}
 
 	/**
-	 * Apply the appropriate gear decided by the auto/manual shifting logic
+	 * Declare where the robot is now. Takes effect on the control loop's next pass
+	 * after actuate(), and clears the pose history.
 	 * 
-	 * @param isHighGear true for high gear, false for low gear
+	 * @param x       inches
+	 * @param y       inches
+	 * @param heading degrees, CCW positive
+	 */
+	public void resetOdometry(double x, double y, double heading) {
+		command.resetPose.set(x, y, heading);
+		command.odometryResets++;
+	}
+
+	/**
+	 * The robot's recent poses, timestamped on the FPGA clock, for matching up
+	 * delayed measurements such as vision results. Safe to read from any thread.
 	 */
-	private void setGear(boolean isHighGear) {
-		// System.out.println("Shifting to " + (isHighGear? "high":"low") + " gear");
-		if (shifter != null) {
-			shifter.set(isHighGear);
-		}
+	public PoseHistory getPoseHistory() {
+		return controlLoop.getPoseHistory();
 	}
 
 	/**
@@ -162,55 +318,14 @@ public class DriveBase extends Subsystem {
 	public boolean getGear() {
 		// True in high gear
 		// False in low gear
-		if (shifter != null) {
-			return shifter.get();
-		} else {
-			return false;
-		}
-	}
-
-	/**
-	 * Apply the correct gear for the speed of the drivebase right now. Should only
-	 * be called when the gear shift mode permits auto shifting.
-	 */
-	private void autoShift() {
-		leftSpeed = Math.abs(Robot.drivebase.getLeftSpeed());
-		rightSpeed = Math.abs(Robot.drivebase.getRightSpeed());
-
-		// Autoshift framework based off speed
-		if (allowShift) {
-			if (((leftSpeed < Constants.SPEED_TO_SHIFT_DOWN) && (rightSpeed < Constants.SPEED_TO_SHIFT_DOWN))) {
-				setGear(false);
-				// System.out.println(elevatorIsTooHighToShift + " case 1");
-
-				if (hasAlreadyShifted) {
-					allowDeshift = true;
-					hasAlreadyShifted = false;
-				}
-
-			} else if (((leftSpeed > Constants.SPEED_TO_SHIFT_UP)) || ((rightSpeed > Constants.SPEED_TO_SHIFT_UP))) {
-				if (allowDeshift) {
-					shiftTimer.reset();
-					shiftTimer.start();
-					allowShift = false;
-					setGear(true);
-					// System.out.println(elevatorIsTooHighToShift + " case 2");
-				}
-			}
-		} else if (shiftTimer.get() > 1.0) {
-			allowShift = true;
-			shiftTimer.stop();
-			shiftTimer.reset();
-			allowDeshift = false;
-			hasAlreadyShifted = true;
-		}
+		return highGear;
 	}
 
 	/**
 	 * Ask if an autonomous move has asked the robot to remain in a particular gear
 	 */
 	public GearShiftMode getShiftMode() {
-		return gearShiftMode;
+		return command.shiftMode;
 	}
 
 	/**
@@ -222,37 +337,38 @@ public class DriveBase extends Subsystem {
 	 * @param shiftMode
 	 */
 	public void setShiftMode(GearShiftMode shiftMode) {
-		gearShiftMode = shiftMode;
+		command.shiftMode = shiftMode;
 	}
 
-	public void visit() {
-		handleGear();
+	/**
+	 * Copy what the control loop last sensed into the snapshot. Called at the
+	 * start of each pass, before anything computes from the snapshot.
+	 */
+	public void sense(SensorSnapshot sensors) {
+		DriveState state = controlLoop.readState();
+		sensors.leftPod.copyFrom(state.leftPod);
+		sensors.rightPod.copyFrom(state.rightPod);
+		highGear = state.highGear;
+		sensors.gyroHeading = state.gyroHeading;
+		sensors.pose.copyFrom(state.pose);
 	}
 
 	/**
-	 * Enact whichever shift mode is appropriate
+	 * Roll the CAN write counters forward. The telemetry service publishes them.
 	 */
-	private void handleGear() {
-		// Driver commanded override?
-		if (Robot.oi.getHighGear()) {
-			setGear(true);
-		} else if (Robot.oi.getLowGear()) {
-			setGear(false);
-		} else {
-			// No override from driver. Auto move commanded override?
-			switch (gearShiftMode) {
-			case LOCK_HIGH_GEAR:
-				setGear(true);
-				break;
-			case LOCK_LOW_GEAR:
-				setGear(false);
-				break;
-			// No override commanded; handle automatic gear shifting.
-			case AUTOSHIFT:
-				autoShift();
-				break;
-			}
-		}
+	public void visit() {
+		CanWriteCounter.update(Robot.sensors.timestamp);
 	}
 
+	/**
+	 * Hand everything the commands asked for this pass to the control loop.
+	 * Called at the end of each pass.
+	 */
+	public void actuate() {
+		command.highGearRequested = Robot.sensors.highGearRequested;
+		command.lowGearRequested = Robot.sensors.lowGearRequested;
+		command.timestamp = Robot.sensors.timestamp;
+		controlLoop.commandBuffer().copyFrom(command);
+		controlLoop.sendCommand();
+	}
 }
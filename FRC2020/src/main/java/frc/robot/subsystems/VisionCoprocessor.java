@@ -7,7 +7,7 @@
 
 package frc.robot.subsystems;
 
-import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicReference;
 
 import edu.wpi.first.networktables.EntryListenerFlags;
 import edu.wpi.first.networktables.EntryNotification;
@@ -15,65 +15,133 @@ import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.command.Subsystem;
+import frc.robot.Constants;
+import frc.robot.Robot;
 import frc.robot.commands.vision.SetCameraMode;
+import frc.robot.control.Pose;
+import frc.robot.control.PoseHistory;
+import frc.robot.vision.VisionSnapshot;
 
 /**
- * A subsystem to read from the vision coprocessor
+ * A subsystem to read from the vision coprocessor.
+ * 
+ * Each update from the coprocessor is decoded once, on the NetworkTables
+ * listener thread, into an immutable VisionSnapshot. The targets in it are
+ * matched to the robot's pose when the frame was captured, so they can be
+ * reported from wherever the robot is now.
  */
 public class VisionCoprocessor extends Subsystem {
-    private NetworkTableEntry bearingsListEntry = null;
-    private NetworkTableEntry rangesListEntry = null;
-    private double[] bearingsList = null;
-    private double[] rangesList = null;
+    private static final double[] NO_VALUES = new double[0];
 
-    private NetworkTableEntry isCameraHumanVisible;
+    private final NetworkTableEntry bearingsListEntry;
+    private final NetworkTableEntry rangesListEntry;
+    private final NetworkTableEntry latencyEntry;
+    private final NetworkTableEntry targetCountEntry;
+    private final NetworkTableEntry isCameraHumanVisible;
+
+    private final PoseHistory poseHistory;
+    private final Pose capturePose = new Pose(); // Only used by decode()
+    private final AtomicReference<VisionSnapshot> latest = new AtomicReference<>(VisionSnapshot.EMPTY);
+
+    /**
+     * @param poseHistory where the robot has been, for matching up the targets
+     */
+    public VisionCoprocessor(PoseHistory poseHistory) {
+        this.poseHistory = poseHistory;
 
-    @Override
-    public void initDefaultCommand() {
-        // Set the default command for a subsystem here.
-        setDefaultCommand(new SetCameraMode());
         NetworkTableInstance allTables = NetworkTableInstance.getDefault();
         NetworkTable visionTable = allTables.getTable("vision_metrics");
         bearingsListEntry = visionTable.getEntry("target bearings (deg)");
-        rangesListEntry = visionTable.getEntry("target bearings (deg)");
-        NetworkTableEntry numVisionTargetsVisibleEntry = visionTable.getEntry("target bearings (deg)");
-        numVisionTargetsVisibleEntry.addListener(event -> {this.onNumVtUpdated(event);} , EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+        rangesListEntry = visionTable.getEntry("target ranges (in)");
+        latencyEntry = visionTable.getEntry("pipeline latency (ms)");
+        targetCountEntry = visionTable.getEntry("target count");
+        // The coprocessor publishes the frame number last, and it changes every frame, so an update is complete
+        // when it changes. The count won't do, as NetworkTables doesn't send it again while it stays the same.
+        NetworkTableEntry frameNumberEntry = visionTable.getEntry("frame number");
+        frameNumberEntry.addListener(event -> {this.onFrameUpdated(event);} , EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
 
         isCameraHumanVisible = allTables.getTable("camera_control").getEntry("camera_for_humans");
     }
 
-    private void onNumVtUpdated(EntryNotification event) {
-        int numVisionTargets = (int)(event.value.getDouble());
-        double[] bearings = bearingsListEntry.getDoubleArray(new double[0]);
-        double[] ranges = rangesListEntry.getDoubleArray(new double[0]);
+    @Override
+    public void initDefaultCommand() {
+        // Set the default command for a subsystem here.
+        setDefaultCommand(new SetCameraMode());
+    }
+
+    private void onFrameUpdated(EntryNotification event) {
+        int numVisionTargets = (int)(targetCountEntry.getDouble(0));
+        double[] bearings = bearingsListEntry.getDoubleArray(NO_VALUES);
+        double[] ranges = rangesListEntry.getDoubleArray(NO_VALUES);
 
         // Simple synchronization confiration
-        if(numVisionTargets == bearings.length && numVisionTargets == ranges.length) {
-            bearingsList = bearings;
-            rangesList = ranges;
+        if(numVisionTargets != bearings.length || numVisionTargets != ranges.length) {
+            return;
         }
+
+        // On the robot, NetworkTables timestamps are on the FPGA clock, in microseconds
+        latest.set(decode(event.value.getTime() / 1e6, latencyEntry.getDouble(0), bearings, ranges));
     }
 
-    public class VisionTargetInfo {
-        VisionTargetInfo(double bearingDegrees, double rangeInches) {
-            this.bearingDegrees = bearingDegrees;
-            this.rangeInches = rangeInches;
-        }
+    /**
+     * Turn one update from the coprocessor into a snapshot, matched to where the
+     * robot was when the frame was captured. Only call from one thread at a time.
+     * @param arrivalTime when the update arrived, in seconds on the FPGA clock
+     * @param latencyMs how long the coprocessor took over the frame
+     * @param bearings to each target, in degrees
+     * @param ranges to each target, in inches
+     * @return the snapshot
+     */
+    public VisionSnapshot decode(double arrivalTime, double latencyMs, double[] bearings, double[] ranges) {
+        double captureTime = arrivalTime - latencyMs / 1000.0 - Constants.VISION_CAMERA_LATENCY_S;
+        boolean poseKnown = poseHistory.lookup(captureTime, capturePose);
+        return new VisionSnapshot(captureTime, bearings, ranges, poseKnown ? capturePose : null);
+    }
 
-        public double bearingDegrees;
+    /**
+     * A vision target, as seen from where the robot is now
+     */
+    public static class VisionTargetInfo {
+        public double bearingDegrees; // positive to the right
         public double rangeInches;
     }
 
     /**
-     * Returns the last-seen list of vision targets.
-     * @return the last-seen list of vision targets.
+     * Returns the latest update from the coprocessor. It never changes, so it
+     * may be held on to and shared between threads.
+     * @return the latest update from the coprocessor
      */
-    public LinkedList<VisionTargetInfo> getCurVisibleVisionTargets() {
-        LinkedList<VisionTargetInfo> vvts = new LinkedList<VisionTargetInfo>();
-        for(int i = 0; i < bearingsList.length; ++i) {
-            vvts.add(new VisionTargetInfo(bearingsList[i], rangesList[i]));
+    public VisionSnapshot getLatest() {
+        return latest.get();
+    }
+
+    /**
+     * Returns the closest target in the latest update, as seen from where the
+     * robot is now, unless the update is too old to trust.
+     * @param out filled in with the target
+     * @return false, leaving out alone, if there is no fresh target
+     */
+    public boolean getClosestTarget(VisionTargetInfo out) {
+        VisionSnapshot snapshot = latest.get();
+        Pose now = Robot.sensors.pose;
+        if (Robot.sensors.timestamp - snapshot.getCaptureTime() > Constants.VISION_MAX_AGE_S) {
+            return false;
+        }
+        int closest = -1;
+        double closestRange = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < snapshot.getTargetCount(); ++i) {
+            double range = snapshot.getRangeInches(i, now);
+            if (range < closestRange) {
+                closest = i;
+                closestRange = range;
+            }
+        }
+        if (closest < 0) {
+            return false;
         }
-        return vvts;
+        out.bearingDegrees = snapshot.getBearingDegrees(closest, now);
+        out.rangeInches = closestRange;
+        return true;
     }
 
     /**
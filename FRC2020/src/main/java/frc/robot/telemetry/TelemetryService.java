@@ -0,0 +1,319 @@
+package frc.robot.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Samples telemetry signals on its own low priority thread, and publishes each one
+ * to NetworkTables only when its value changes by more than its deadband.
+ *
+ * Each signal has its own sample rate. Samplers run on the telemetry thread, so they
+ * should read from cached status (eg Talon status frames) rather than make
+ * blocking calls; a slow sampler delays the other signals, but never the robot loop.
+ *
+ * Changed values are held back and written out together once per flush period,
+ * followed by a single NetworkTables flush, so a period's changes go out in one
+ * packet and the radio link is left to the camera stream in between. Setting the
+ * "telemetry full rate" entry to true (or calling setFullRate()) samples every
+ * signal at FULL_RATE_HZ with no deadbands, for graphing on the bench.
+ *
+ * Add all the signals, then call start().
+ */
+public class TelemetryService {
+	private static final long MIN_SLEEP_MS = 1;
+	private static final long MAX_SLEEP_MS = 100;
+	private static final long FLUSH_PERIOD_NS = 100000000L; // Matches the NT default update rate
+	private static final long FULL_RATE_FLUSH_PERIOD_NS = 20000000L;
+	private static final double FULL_RATE_HZ = 50;
+	// Signals slower than this are left alone in full rate mode; they are the ones that block
+	private static final double MIN_FULL_RATE_SIGNAL_HZ = 1;
+	private static final long STATS_PERIOD_NS = 1000000000L;
+
+	private final NetworkTableInstance instance;
+	private final NetworkTable table;
+	private final NetworkTableEntry fullRateEntry;
+	private final NetworkTableEntry valuesPerSecondEntry;
+	private final List<Signal> signals = new ArrayList<>();
+	private Thread thread = null;
+	private volatile boolean fullRate = false;
+
+	/** One value we publish, and when we next need to sample it */
+	private abstract static class Signal {
+		final NetworkTableEntry entry;
+		final long periodNs;
+		final long fullRatePeriodNs;
+		long nextDueNs = 0;
+		boolean dirty = false; // Sampled a change that hasn't been flushed yet
+		boolean failed = false; // So we report a broken sampler only once
+
+		Signal(NetworkTableEntry entry, double rateHz) {
+			this.entry = entry;
+			this.periodNs = (long) (1e9 / rateHz);
+			this.fullRatePeriodNs = (rateHz < MIN_FULL_RATE_SIGNAL_HZ) ? periodNs
+					: Math.min(periodNs, (long) (1e9 / FULL_RATE_HZ));
+		}
+
+		/** Read the current value, and mark the signal dirty if it needs publishing */
+		abstract void sample(boolean fullRate);
+
+		/** Write the sampled value to the entry */
+		abstract void publish();
+	}
+
+	private static class NumberSignal extends Signal {
+		final DoubleSupplier sampler;
+		final double deadband;
+		boolean published = false;
+		double lastValue = Double.NaN; // Last value published
+		double pendingValue = Double.NaN;
+
+		NumberSignal(NetworkTableEntry entry, double rateHz, double deadband, DoubleSupplier sampler) {
+			super(entry, rateHz);
+			this.sampler = sampler;
+			this.deadband = deadband;
+		}
+
+		@Override
+		void sample(boolean fullRate) {
+			double value = sampler.getAsDouble();
+			pendingValue = value;
+			if (!published) {
+				dirty = true;
+				return;
+			}
+			// Compare bitwise so that a NaN doesn't get republished forever
+			if (Double.doubleToLongBits(value) == Double.doubleToLongBits(lastValue)) {
+				dirty = false;
+				return;
+			}
+			// A NaN at either end always counts as a change
+			dirty = fullRate || !(Math.abs(value - lastValue) <= deadband);
+		}
+
+		@Override
+		void publish() {
+			entry.setDouble(pendingValue);
+			lastValue = pendingValue;
+			published = true;
+		}
+	}
+
+	private static class TextSignal extends Signal {
+		final Supplier<String> sampler;
+		String lastValue = null; // Last value published
+		String pendingValue = null;
+
+		TextSignal(NetworkTableEntry entry, double rateHz, Supplier<String> sampler) {
+			super(entry, rateHz);
+			this.sampler = sampler;
+		}
+
+		@Override
+		void sample(boolean fullRate) {
+			String value = sampler.get();
+			if (value == null) {
+				value = "";
+			}
+			pendingValue = value;
+			dirty = !value.equals(lastValue);
+		}
+
+		@Override
+		void publish() {
+			entry.setString(pendingValue);
+			lastValue = pendingValue;
+		}
+	}
+
+	/**
+	 * Publish to the SmartDashboard table
+	 */
+	public TelemetryService() {
+		this(NetworkTableInstance.getDefault().getTable("SmartDashboard"));
+	}
+
+	/**
+	 * @param table where to publish the signals
+	 */
+	public TelemetryService(NetworkTable table) {
+		this.table = table;
+		this.instance = table.getInstance();
+		fullRateEntry = table.getEntry("telemetry full rate");
+		fullRateEntry.setDefaultBoolean(false);
+		valuesPerSecondEntry = table.getEntry("telemetry values/s");
+	}
+
+	/**
+	 * Add a signal to be sampled, and published whenever it changes.
+	 *
+	 * @param name    entry name in the table
+	 * @param rateHz  how often to sample the signal
+	 * @param sampler reads the current value; runs on the telemetry thread
+	 */
+	public void addSignal(String name, double rateHz, DoubleSupplier sampler) {
+		addSignal(name, rateHz, 0, sampler);
+	}
+
+	/**
+	 * Add a signal to be sampled, and published whenever it moves by more than the
+	 * deadband from the last value published.
+	 *
+	 * @param name     entry name in the table
+	 * @param rateHz   how often to sample the signal
+	 * @param deadband smallest change worth publishing, in the signal's units
+	 * @param sampler  reads the current value; runs on the telemetry thread
+	 */
+	public synchronized void addSignal(String name, double rateHz, double deadband, DoubleSupplier sampler) {
+		add(new NumberSignal(table.getEntry(name), rateHz, deadband, sampler));
+	}
+
+	/**
+	 * Add a string signal to be sampled, and published whenever it changes.
+	 *
+	 * @param name    entry name in the table
+	 * @param rateHz  how often to sample the signal
+	 * @param sampler reads the current value; runs on the telemetry thread
+	 */
+	public synchronized void addTextSignal(String name, double rateHz, Supplier<String> sampler) {
+		add(new TextSignal(table.getEntry(name), rateHz, sampler));
+	}
+
+	/**
+	 * Publish a value that never changes, once, rather than sampling it. For
+	 * settings the code configures itself, which would otherwise take a blocking
+	 * read of the device.
+	 *
+	 * @param name  entry name in the table
+	 * @param value the value
+	 */
+	public void publishConstant(String name, double value) {
+		table.getEntry(name).setDouble(value);
+	}
+
+	private void add(Signal signal) {
+		if (thread != null) {
+			throw new IllegalStateException("Telemetry signals must be added before start()");
+		}
+		signals.add(signal);
+	}
+
+	/**
+	 * Sample every signal at full rate with no deadbands, for graphing, or go back
+	 * to the match rates. Same as setting the "telemetry full rate" entry.
+	 */
+	public void setFullRate(boolean fullRate) {
+		fullRateEntry.setBoolean(fullRate);
+		this.fullRate = fullRate;
+	}
+
+	/**
+	 * @return true if every signal is being sent at full rate
+	 */
+	public boolean isFullRate() {
+		return fullRate;
+	}
+
+	/**
+	 * Start sampling on the background thread
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		thread = new Thread(this::run, "Telemetry");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Stop sampling. Values already published stay where they are.
+	 */
+	public synchronized void stop() {
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	private void run() {
+		Signal[] toSample = signals.toArray(new Signal[0]);
+		long nextFlushNs = System.nanoTime();
+		long nextStatsNs = nextFlushNs + STATS_PERIOD_NS;
+		long valuesPublished = 0;
+		while (!Thread.currentThread().isInterrupted()) {
+			long now = System.nanoTime();
+			long nextDue = now + MAX_SLEEP_MS * 1000000L;
+			boolean full = fullRate;
+			for (Signal signal : toSample) {
+				if (now - signal.nextDueNs >= 0) {
+					sample(signal, full);
+					// Don't try to catch up on missed samples; just keep the rate
+					signal.nextDueNs = now + (full ? signal.fullRatePeriodNs : signal.periodNs);
+				}
+				if (signal.nextDueNs - nextDue < 0) {
+					nextDue = signal.nextDueNs;
+				}
+			}
+
+			if (now - nextFlushNs >= 0) {
+				valuesPublished += flush(toSample);
+				fullRate = fullRateEntry.getBoolean(false);
+				nextFlushNs = now + (fullRate ? FULL_RATE_FLUSH_PERIOD_NS : FLUSH_PERIOD_NS);
+			}
+			if (nextFlushNs - nextDue < 0) {
+				nextDue = nextFlushNs;
+			}
+
+			if (now - nextStatsNs >= 0) {
+				valuesPerSecondEntry.setDouble(valuesPublished * 1e9 / (now - nextStatsNs + STATS_PERIOD_NS));
+				valuesPublished = 0;
+				nextStatsNs = now + STATS_PERIOD_NS;
+			}
+
+			long sleepMs = Math.max(MIN_SLEEP_MS, (nextDue - System.nanoTime()) / 1000000L);
+			try {
+				Thread.sleep(sleepMs);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	private static void sample(Signal signal, boolean fullRate) {
+		try {
+			signal.sample(fullRate);
+		} catch (RuntimeException e) {
+			if (!signal.failed) {
+				System.err.println("Telemetry sampler for '" + signal.entry.getName() + "' failed: " + e);
+				signal.failed = true;
+			}
+		}
+	}
+
+	/**
+	 * Write out everything that changed since the last flush, and send it as one batch
+	 *
+	 * @return how many values were written
+	 */
+	private int flush(Signal[] toFlush) {
+		int written = 0;
+		for (Signal signal : toFlush) {
+			if (signal.dirty) {
+				signal.publish();
+				signal.dirty = false;
+				written++;
+			}
+		}
+		if (written > 0) {
+			instance.flush();
+		}
+		return written;
+	}
+}
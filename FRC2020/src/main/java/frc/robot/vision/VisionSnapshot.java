@@ -0,0 +1,117 @@
+package frc.robot.vision;
+
+import frc.robot.control.Pose;
+
+/**
+ * One update from the vision coprocessor, decoded once and never changed.
+ * 
+ * Targets are stored where they were on the field (in the odometry frame) at
+ * the moment the frame was captured, so they can be brought into the robot's
+ * current frame by however far it has moved since. If the robot's pose at
+ * capture wasn't known, they are reported as seen, uncompensated.
+ * 
+ * Bearings are in degrees, positive to the right of straight ahead, and ranges
+ * in inches, both from the center of the robot, as the coprocessor publishes
+ * them.
+ */
+public final class VisionSnapshot {
+	/** No targets, captured at the dawn of time */
+	public static final VisionSnapshot EMPTY = new VisionSnapshot(Double.NEGATIVE_INFINITY, new double[0],
+			new double[0], null);
+
+	private final double captureTime;
+	private final boolean compensated;
+	private final double[] bearingsAtCapture;
+	private final double[] rangesAtCapture;
+	// Target positions in the odometry frame; only if compensated
+	private final double[] fieldX;
+	private final double[] fieldY;
+
+	/**
+	 * @param captureTime when the frame was captured, in seconds on the FPGA clock
+	 * @param bearings    target bearings at capture; not copied, so don't change it
+	 * @param ranges      target ranges at capture; not copied, so don't change it
+	 * @param poseAtCapture where the robot was at capture, or null if unknown
+	 */
+	public VisionSnapshot(double captureTime, double[] bearings, double[] ranges, Pose poseAtCapture) {
+		this.captureTime = captureTime;
+		this.bearingsAtCapture = bearings;
+		this.rangesAtCapture = ranges;
+		this.compensated = (poseAtCapture != null);
+		fieldX = new double[bearings.length];
+		fieldY = new double[bearings.length];
+		if (compensated) {
+			double heading = Math.toRadians(poseAtCapture.heading);
+			double cos = Math.cos(heading);
+			double sin = Math.sin(heading);
+			for (int i = 0; i < bearings.length; ++i) {
+				// Robot frame: forward, and left (the coprocessor's bearings are positive to the right)
+				double forward = ranges[i] * Math.cos(Math.toRadians(bearings[i]));
+				double left = -ranges[i] * Math.sin(Math.toRadians(bearings[i]));
+				fieldX[i] = poseAtCapture.x + forward * cos - left * sin;
+				fieldY[i] = poseAtCapture.y + forward * sin + left * cos;
+			}
+		}
+	}
+
+	/**
+	 * @return when the frame was captured, in seconds on the FPGA clock
+	 */
+	public double getCaptureTime() {
+		return captureTime;
+	}
+
+	/**
+	 * @return false if the targets couldn't be matched to the robot's pose at capture
+	 */
+	public boolean isCompensated() {
+		return compensated;
+	}
+
+	public int getTargetCount() {
+		return bearingsAtCapture.length;
+	}
+
+	/**
+	 * @param i   which target
+	 * @param now where the robot is now
+	 * @return bearing to the target from where the robot is now, in degrees,
+	 *         positive to the right
+	 */
+	public double getBearingDegrees(int i, Pose now) {
+		if (!compensated) {
+			return bearingsAtCapture[i];
+		}
+		double dx = fieldX[i] - now.x;
+		double dy = fieldY[i] - now.y;
+		double heading = Math.toRadians(now.heading);
+		double forward = dx * Math.cos(heading) + dy * Math.sin(heading);
+		double left = -dx * Math.sin(heading) + dy * Math.cos(heading);
+		return Math.toDegrees(Math.atan2(-left, forward));
+	}
+
+	/**
+	 * @param i   which target
+	 * @param now where the robot is now
+	 * @return range to the target from where the robot is now, in inches
+	 */
+	public double getRangeInches(int i, Pose now) {
+		if (!compensated) {
+			return rangesAtCapture[i];
+		}
+		return Math.hypot(fieldX[i] - now.x, fieldY[i] - now.y);
+	}
+
+	/**
+	 * @param i   which target
+	 * @return the target's position in the odometry frame at capture, in inches,
+	 *         or NaN if not compensated
+	 */
+	public double getFieldX(int i) {
+		return compensated ? fieldX[i] : Double.NaN;
+	}
+
+	public double getFieldY(int i) {
+		return compensated ? fieldY[i] : Double.NaN;
+	}
+}
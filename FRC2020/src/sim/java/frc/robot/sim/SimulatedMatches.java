@@ -0,0 +1,247 @@
+package frc.robot.sim;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.DriverStationSim;
+import edu.wpi.first.hal.sim.SimHooks;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.command.Command;
+import edu.wpi.first.wpilibj.command.Scheduler;
+import frc.robot.Robot;
+import frc.robot.SensorSnapshot;
+import frc.robot.auto.Trajectory;
+import frc.robot.auto.TrajectoryFile;
+import frc.robot.commands.drivebase.FollowTrajectory;
+import frc.robot.subsystems.DriveBase;
+
+/**
+ * Drives the simulated drivetrain through a drag race, many randomized teleop
+ * stints, then every auto path, as fast as the CPU allows, and reports how the
+ * drive code did: acceleration, distance covered, gear shifts, battery sag,
+ * odometry drift, and how closely the paths were followed.
+ * 
+ * The HAL simulator's clock is paused and stepped along with the physics, so
+ * everything on the FPGA clock (the control loop's timing, command timeouts)
+ * sees simulated time, and a run is repeatable for a given seed.
+ * 
+ * ./gradlew simulateMatches [-Psim.matches=1000] [-Psim.seed=1]
+ */
+public final class SimulatedMatches {
+	private static final long STEP_US = (long) (DrivetrainSim.STEP_S * 1e6);
+	private static final int STEPS_PER_CONTROL_PASS = 5; // 200 Hz
+	private static final int STEPS_PER_ROBOT_PASS = 20; // 50 Hz
+	private static final double MATCH_S = 15.0;
+	private static final double MAX_AUTO_S = 15.0;
+	private static final double DRAG_RACE_FEET = 20.0;
+	private static final double DRAG_RACE_TIMEOUT_S = 10.0;
+
+	private final DrivetrainSim sim = new DrivetrainSim();
+	private final DriveBase drivebase;
+	private final SensorSnapshot sensors = Robot.sensors;
+	private long steps = 0;
+
+	// Driver stick script for the current segment
+	private double forward, turn;
+	private double segmentEnd;
+
+	private SimulatedMatches() {
+		drivebase = sim.createDriveBase();
+		Robot.drivebase = drivebase; // For the commands
+	}
+
+	public static void main(String[] args) {
+		int matches = Integer.getInteger("sim.matches", 1000);
+		long seed = Long.getLong("sim.seed", 1);
+
+		if (!HAL.initialize(500, 0)) {
+			System.err.println("could not start the HAL simulator");
+			System.exit(1);
+		}
+		SimHooks.pauseTiming();
+		DriverStationSim ds = new DriverStationSim();
+		ds.setDsAttached(true);
+		ds.setAutonomous(false);
+		ds.setEnabled(true);
+		ds.notifyNewData();
+
+		SimulatedMatches run = new SimulatedMatches();
+		long start = System.nanoTime();
+		run.dragRace();
+		run.teleop(matches, new Random(seed));
+		run.auto(Paths.get("src/main/deploy/paths"));
+		double realS = (System.nanoTime() - start) / 1e9;
+		double simS = run.steps * DrivetrainSim.STEP_S;
+		System.out.println(String.format("Simulated %.0f s in %.1f s, %.0fx real time", simS, realS, simS / realS));
+		System.exit(0); // The robot's own threads would keep us running
+	}
+
+	/**
+	 * Run the teleop stints and report on them
+	 */
+	private void teleop(int matches, Random random) {
+		double[] distance = new double[matches];
+		double[] shifts = new double[matches];
+		double[] minVoltage = new double[matches];
+		double[] odometryError = new double[matches];
+
+		for (int m = 0; m < matches; ++m) {
+			reset();
+			segmentEnd = 0;
+			int startShifts = sim.getShifts();
+			double lastX = sim.getXInches(), lastY = sim.getYInches();
+			minVoltage[m] = Double.POSITIVE_INFINITY;
+			double end = now() + MATCH_S;
+			while (now() < end) {
+				if (now() >= segmentEnd) {
+					nextSegment(random);
+				}
+				sensors.forwardAxis = forward;
+				sensors.turnAxis = turn;
+				robotPass(null);
+				distance[m] += Math.hypot(sim.getXInches() - lastX, sim.getYInches() - lastY) / 12;
+				lastX = sim.getXInches();
+				lastY = sim.getYInches();
+				minVoltage[m] = Math.min(minVoltage[m], sim.getBusVoltage());
+			}
+			shifts[m] = sim.getShifts() - startShifts;
+			odometryError[m] = Math.hypot(sensors.pose.x - sim.getXInches(), sensors.pose.y - sim.getYInches());
+		}
+
+		System.out.println(String.format("%d teleop stints of %.0f s:        mean    worst 5%%", matches, MATCH_S));
+		report("distance (ft)", distance, false);
+		report("gear shifts", shifts, true);
+		report("min battery (V)", minVoltage, false);
+		// No heading error: the simulated gyro reads the model's true heading, so it would always be zero
+		report("odometry error (in)", odometryError, true);
+	}
+
+	/**
+	 * Full stick forward from a standstill, and report how quickly we cover the
+	 * distance, and how the autoshift handled it
+	 */
+	private void dragRace() {
+		reset();
+		int startShifts = sim.getShifts();
+		double start = now();
+		double elapsed = Double.NaN;
+		while (now() - start < DRAG_RACE_TIMEOUT_S) {
+			sensors.forwardAxis = 1;
+			sensors.turnAxis = 0;
+			robotPass(null);
+			if (sim.getXInches() >= DRAG_RACE_FEET * 12) {
+				elapsed = now() - start;
+				break;
+			}
+		}
+		System.out.println(String.format("drag race: %.0f ft in %.2f s, %d gear shifts", DRAG_RACE_FEET, elapsed,
+				sim.getShifts() - startShifts));
+	}
+
+	/**
+	 * The driver holds the sticks for a while, then moves them. Sometimes they sprint.
+	 */
+	private void nextSegment(Random random) {
+		if (random.nextDouble() < 0.3) {
+			forward = random.nextBoolean() ? 1 : -1;
+			turn = 0;
+		} else {
+			forward = random.nextDouble() * 2 - 1;
+			turn = random.nextDouble() - 0.5;
+		}
+		segmentEnd = now() + 0.5 + random.nextDouble() * 2;
+	}
+
+	/**
+	 * Follow every auto path, and report how close to its end we finish
+	 */
+	private void auto(Path directory) {
+		Map<String, Trajectory> trajectories = TrajectoryFile.loadAll(directory);
+		for (Trajectory trajectory : trajectories.values()) {
+			reset();
+			sensors.forwardAxis = 0;
+			sensors.turnAxis = 0;
+			Command command = new FollowTrajectory(trajectory, false);
+			command.start();
+			double start = now();
+			robotPass(Scheduler.getInstance());
+			while (command.isRunning() && now() - start < MAX_AUTO_S) {
+				robotPass(Scheduler.getInstance());
+			}
+			int last = trajectory.length() - 1;
+			System.out.println(String.format("auto '%s': %.2f s (planned %.2f), ended %.1f in from the planned distance,"
+					+ " %s", trajectory.getName(), now() - start, trajectory.time(last),
+					Math.abs(pathDistance() - (trajectory.leftPosition(last) + trajectory.rightPosition(last)) / 2),
+					command.isRunning() ? "timed out" : "finished"));
+		}
+	}
+
+	private double leftStart, rightStart;
+
+	/**
+	 * @return how far the chassis has driven along its path since reset(), in inches
+	 */
+	private double pathDistance() {
+		return (sensors.leftPod.positionInches - leftStart + sensors.rightPod.positionInches - rightStart) / 2;
+	}
+
+	/**
+	 * Put the robot at the origin, at rest, and let the code catch up
+	 */
+	private void reset() {
+		sim.reset(0, 0, 0);
+		drivebase.resetOdometry(0, 0, 0);
+		sensors.forwardAxis = 0;
+		sensors.turnAxis = 0;
+		robotPass(null);
+		robotPass(null);
+		leftStart = sensors.leftPod.positionInches;
+		rightStart = sensors.rightPod.positionInches;
+	}
+
+	/**
+	 * Run the robot loop once, and the control loop and physics for the time until the next one
+	 * 
+	 * @param scheduler runs commands if given; otherwise the driver sticks drive
+	 */
+	private void robotPass(Scheduler scheduler) {
+		sensors.timestamp = Timer.getFPGATimestamp();
+		drivebase.sense(sensors);
+		if (scheduler != null) {
+			scheduler.run();
+		} else {
+			drivebase.driveWithJoysticks();
+		}
+		drivebase.actuate();
+
+		for (int i = 0; i < STEPS_PER_ROBOT_PASS; ++i) {
+			SimHooks.stepTiming(STEP_US);
+			sim.step(DrivetrainSim.STEP_S);
+			if (++steps % STEPS_PER_CONTROL_PASS == 0) {
+				drivebase.stepControlLoop();
+			}
+		}
+	}
+
+	private double now() {
+		return steps * DrivetrainSim.STEP_S;
+	}
+
+	/**
+	 * Print the mean, and the 95th percentile on the bad side
+	 * 
+	 * @param highIsBad true if larger values are worse
+	 */
+	private static void report(String name, double[] values, boolean highIsBad) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		double mean = Arrays.stream(sorted).average().orElse(Double.NaN);
+		int tail = (int) Math.ceil(0.95 * sorted.length) - 1;
+		double worst = highIsBad ? sorted[tail] : sorted[sorted.length - 1 - tail];
+		System.out.println(String.format("  %-22s %10.2f %10.2f", name, mean, worst));
+	}
+}
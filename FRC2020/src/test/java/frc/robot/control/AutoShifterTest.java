@@ -0,0 +1,164 @@
+package frc.robot.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import frc.robot.Constants;
+
+public class AutoShifterTest {
+	private static final double DT = 0.005; // The control loop's 200 Hz
+	private static final double LAUNCH_ACCELERATION = 10.0; // ft/s^2
+
+	private AutoShifter shifter;
+	private double now;
+
+	@Before
+	public void setUp() {
+		shifter = new AutoShifter();
+		now = 0;
+	}
+
+	/**
+	 * Run the shifter for a while with both sides at the same speed
+	 */
+	private void drive(double seconds, double speed) {
+		drive(seconds, speed, speed);
+	}
+
+	private void drive(double seconds, double leftSpeed, double rightSpeed) {
+		for (double end = now + seconds; now < end; now += DT) {
+			shifter.update(now, leftSpeed, rightSpeed);
+		}
+	}
+
+	/**
+	 * Put the shifter in high gear at the given speed, as if the driver had
+	 * shifted, and let the shift finish
+	 */
+	private void holdHighGear(double speed) {
+		for (double end = now + 0.5; now < end; now += DT) {
+			shifter.hold(now, true, speed, speed);
+		}
+		assertEquals(AutoShifter.State.HIGH, shifter.getState());
+	}
+
+	@Test
+	public void upshiftsBeforeReachingTheShiftSpeedWhenAccelerating() {
+		double speed = 0;
+		while (shifter.getState() == AutoShifter.State.LOW) {
+			assertTrue("never shifted up", speed < 2 * Constants.SPEED_TO_SHIFT_UP);
+			speed += LAUNCH_ACCELERATION * DT;
+			shifter.update(now, speed, speed);
+			now += DT;
+		}
+		assertEquals(AutoShifter.State.UPSHIFTING, shifter.getState());
+		assertTrue("shifted up at " + speed + " ft/s", speed < Constants.SPEED_TO_SHIFT_UP);
+		assertTrue("shifted up at " + speed + " ft/s", speed >= 3.5);
+	}
+
+	@Test
+	public void staysInLowGearCruisingJustBelowTheShiftSpeed() {
+		drive(3.0, Constants.SPEED_TO_SHIFT_UP - 0.5);
+		assertEquals(AutoShifter.State.LOW, shifter.getState());
+	}
+
+	@Test
+	public void upshiftsAtTheShiftSpeed() {
+		drive(1.0, Constants.SPEED_TO_SHIFT_UP + 0.5);
+		assertTrue(shifter.isHighGear());
+	}
+
+	@Test
+	public void downshiftsWhenSlowingDown() {
+		holdHighGear(12.0);
+		drive(1.0, 12.0);
+		double speed = 12.0;
+		while (shifter.isHighGear()) {
+			assertTrue("never shifted down", speed > 0);
+			speed -= LAUNCH_ACCELERATION * DT;
+			shifter.update(now, speed, speed);
+			now += DT;
+		}
+		assertEquals(AutoShifter.State.DOWNSHIFTING, shifter.getState());
+		assertTrue("shifted down at " + speed + " ft/s", speed <= Constants.SPEED_TO_SHIFT_DOWN);
+	}
+
+	@Test
+	public void staysInHighGearWhenSpeedingUpThroughTheDownshiftSpeed() {
+		// The driver held high gear to pull away gently, and lets go just below the
+		// downshift speed, still speeding up
+		double acceleration = 4.0;
+		double speed = 0;
+		for (double end = now + 1.1; now < end; now += DT) {
+			shifter.hold(now, true, speed, speed);
+			speed += acceleration * DT;
+		}
+		assertTrue(speed < Constants.SPEED_TO_SHIFT_DOWN);
+		while (speed < Constants.SPEED_TO_SHIFT_UP) {
+			shifter.update(now, speed, speed);
+			assertEquals("at " + speed + " ft/s", AutoShifter.State.HIGH, shifter.getState());
+			speed += acceleration * DT;
+			now += DT;
+		}
+	}
+
+	@Test
+	public void shiftTakesTheShifterTravelTime() {
+		drive(DT, Constants.SPEED_TO_SHIFT_UP + 1.0);
+		assertEquals(AutoShifter.State.UPSHIFTING, shifter.getState());
+		drive(0.09, Constants.SPEED_TO_SHIFT_UP + 1.0);
+		assertEquals(AutoShifter.State.UPSHIFTING, shifter.getState());
+		drive(0.02, Constants.SPEED_TO_SHIFT_UP + 1.0);
+		assertEquals(AutoShifter.State.HIGH, shifter.getState());
+	}
+
+	@Test
+	public void holdsHighGearForASecondAfterUpshifting() {
+		drive(DT, Constants.SPEED_TO_SHIFT_UP + 1.0);
+		assertEquals(AutoShifter.State.UPSHIFTING, shifter.getState());
+		// Stopping dead straight away doesn't drop back to low gear
+		drive(0.9, 0);
+		assertEquals(AutoShifter.State.HIGH, shifter.getState());
+		drive(0.15, 0);
+		assertEquals(AutoShifter.State.DOWNSHIFTING, shifter.getState());
+	}
+
+	@Test
+	public void holdsLowGearForAQuarterSecondAfterDownshifting() {
+		holdHighGear(0);
+		while (shifter.isHighGear()) {
+			drive(DT, 0);
+		}
+		double downshifted = now;
+		// Speeding straight back up waits out the dwell
+		while (!shifter.isHighGear()) {
+			assertTrue("never shifted up", now - downshifted < 1.0);
+			drive(DT, Constants.SPEED_TO_SHIFT_UP + 1.0);
+		}
+		assertTrue("shifted up after " + (now - downshifted) + " s", now - downshifted >= 0.2);
+	}
+
+	@Test
+	public void doesNotUpshiftWhileTurning() {
+		// Fast enough on average, but one side much faster than the other
+		drive(2.0, Constants.SPEED_TO_SHIFT_UP - 1.0, Constants.SPEED_TO_SHIFT_UP + 3.0);
+		assertEquals(AutoShifter.State.LOW, shifter.getState());
+		// Straighten out
+		drive(0.5, Constants.SPEED_TO_SHIFT_UP + 1.0);
+		assertTrue(shifter.isHighGear());
+	}
+
+	@Test
+	public void doesNotDownshiftWhileTurning() {
+		holdHighGear(10.0);
+		drive(1.0, 10.0);
+		// Slow on average, but spinning
+		drive(2.0, -2.0, 4.0);
+		assertEquals(AutoShifter.State.HIGH, shifter.getState());
+		drive(0.5, 0);
+		assertEquals(AutoShifter.State.LOW, shifter.getState());
+	}
+}
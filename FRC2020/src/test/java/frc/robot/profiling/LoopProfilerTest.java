@@ -0,0 +1,84 @@
+package frc.robot.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoopProfilerTest {
+	private static final int PASSES = 20000; // Enough for the JIT to compile the loop
+	private static final int ALLOCATION_BYTES = 1024;
+	private static final int READ_BYTES = 48; // Two small arrays, as the roboRIO's JVM allocates
+
+	/**
+	 * Desktop JVMs read the counter without allocating, which would hide any
+	 * mistake in taking the reads back out. So make each read cost something.
+	 */
+	private static class CostlyReadsProfiler extends LoopProfiler {
+		private long readBytes = 0;
+
+		CostlyReadsProfiler(String directory) {
+			super(0.02, directory);
+		}
+
+		@Override
+		long threadAllocatedBytes() {
+			readBytes += READ_BYTES;
+			return super.threadAllocatedBytes() + readBytes;
+		}
+	}
+
+	// Keeps the test allocations from being optimized away
+	static volatile Object sink;
+
+	private LoopProfiler profiler;
+
+	@Before
+	public void setUp() throws Exception {
+		profiler = new CostlyReadsProfiler(Files.createTempDirectory("profiler").toString());
+	}
+
+	@Test
+	public void allocationFreeSectionReportsZero() {
+		int idle = profiler.section("idle");
+		profiler.setAllocationTracking(true);
+		for (int i = 0; i < PASSES; ++i) {
+			profiler.start(idle);
+			profiler.stop(idle);
+		}
+		assertEquals(0, profiler.getAllocatedBytes(idle));
+	}
+
+	@Test
+	public void nestedReadsAreNotCounted() {
+		int outer = profiler.section("outer");
+		int inner = profiler.section("inner");
+		profiler.setAllocationTracking(true);
+		for (int i = 0; i < PASSES; ++i) {
+			profiler.start(outer);
+			profiler.start(inner);
+			profiler.stop(inner);
+			profiler.stop(outer);
+		}
+		assertEquals(0, profiler.getAllocatedBytes(inner));
+		assertEquals(0, profiler.getAllocatedBytes(outer));
+	}
+
+	@Test
+	public void allocatingSectionReportsItsAllocations() {
+		int allocating = profiler.section("allocating");
+		profiler.setAllocationTracking(true);
+		for (int i = 0; i < PASSES; ++i) {
+			profiler.start(allocating);
+			sink = new byte[ALLOCATION_BYTES];
+			profiler.stop(allocating);
+		}
+		long perPass = profiler.getAllocatedBytes(allocating) / PASSES;
+		// The array plus its header
+		assertTrue("allocated " + perPass + " bytes per pass",
+				perPass >= ALLOCATION_BYTES && perPass < ALLOCATION_BYTES + 64);
+	}
+}
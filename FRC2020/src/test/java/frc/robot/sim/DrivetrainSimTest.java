@@ -0,0 +1,167 @@
+package frc.robot.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.DriverStationSim;
+import edu.wpi.first.hal.sim.SimHooks;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants;
+import frc.robot.Robot;
+import frc.robot.SensorSnapshot;
+import frc.robot.auto.Trajectory;
+import frc.robot.subsystems.DriveBase;
+import frc.robot.subsystems.DriveBase.GearShiftMode;
+
+/**
+ * Runs the drive code against the drivetrain model, with the HAL simulator's
+ * clock paused and stepped along with the physics, the same way as
+ * SimulatedMatches.
+ */
+public class DrivetrainSimTest {
+	private static final long STEP_US = (long) (DrivetrainSim.STEP_S * 1e6);
+	private static final int STEPS_PER_CONTROL_PASS = 5; // 200 Hz
+	private static final int STEPS_PER_ROBOT_PASS = 20; // 50 Hz
+	private static final double LAUNCH_FEET = 20.0;
+	private static final double LAUNCH_TIMEOUT_S = 4.0;
+	private static final double REVERSE_INCHES = 48.0;
+	private static final double REVERSE_S = 2.0;
+	private static final double PATH_TOLERANCE_INCHES = 3.0;
+	private static final double PATH_TIMEOUT_S = 2.0; // Past the planned time
+
+	// One for the class: the shifter's Solenoid channel can only be allocated once
+	private static DrivetrainSim sim;
+	private static DriveBase drivebase;
+	private final SensorSnapshot sensors = Robot.sensors;
+	private long steps = 0;
+
+	@BeforeClass
+	public static void startSimulator() {
+		assertTrue("could not start the HAL simulator", HAL.initialize(500, 0));
+		SimHooks.pauseTiming();
+		DriverStationSim ds = new DriverStationSim();
+		ds.setDsAttached(true);
+		ds.setAutonomous(false);
+		ds.setEnabled(true);
+		ds.notifyNewData();
+
+		sim = new DrivetrainSim();
+		drivebase = sim.createDriveBase();
+		Robot.drivebase = drivebase;
+	}
+
+	/**
+	 * Put the robot at the origin, at rest in low gear, and let the code catch up
+	 */
+	@Before
+	public void setUp() {
+		drivebase.setShiftMode(GearShiftMode.LOCK_LOW_GEAR);
+		sim.reset(0, 0, 0);
+		drivebase.resetOdometry(0, 0, 0);
+		sensors.forwardAxis = 0;
+		sensors.turnAxis = 0;
+		robotPass(true);
+		robotPass(true);
+	}
+
+	@Test
+	public void fullThrottleLaunchUpshiftsOnceAndCoversTheDistance() {
+		drivebase.setShiftMode(GearShiftMode.AUTOSHIFT);
+		assertFalse(sim.isHighGear());
+		int startShifts = sim.getShifts();
+		double start = now();
+
+		sensors.forwardAxis = 1;
+		while (sim.getXInches() < LAUNCH_FEET * 12 && now() - start < LAUNCH_TIMEOUT_S) {
+			robotPass(true);
+		}
+		double elapsed = now() - start;
+
+		assertTrue("took " + elapsed + " s to cover " + LAUNCH_FEET + " ft", sim.getXInches() >= LAUNCH_FEET * 12);
+		// No faster than flat out in high gear from a standstill
+		assertTrue(elapsed > LAUNCH_FEET / Constants.HIGH_GEAR_TOP_SPEED);
+		assertEquals(1, sim.getShifts() - startShifts);
+		assertTrue(sim.isHighGear());
+		assertTrue(sim.getSpeedFeetPerSecond() > Constants.SPEED_TO_SHIFT_UP);
+		// Both sides get the same output, so it should go straight
+		assertEquals(0, sim.getYInches(), 2.0);
+		assertEquals(0, sim.getHeadingDegrees(), 2.0);
+	}
+
+	@Test
+	public void reversedPathEndsWithinTolerance() {
+		Trajectory trajectory = straightPath(-REVERSE_INCHES, REVERSE_S);
+		drivebase.followTrajectory(trajectory, false);
+		double start = now();
+		robotPass(false);
+		while (!drivebase.isTrajectoryFinished() && now() - start < REVERSE_S + PATH_TIMEOUT_S) {
+			robotPass(false);
+		}
+		boolean finished = drivebase.isTrajectoryFinished();
+		drivebase.stopTrajectory();
+		drivebase.setShiftMode(GearShiftMode.AUTOSHIFT);
+
+		assertTrue("path timed out", finished);
+		assertFalse(sim.isHighGear());
+		assertEquals(-REVERSE_INCHES, sim.getXInches(), PATH_TOLERANCE_INCHES);
+		assertEquals(0, sim.getYInches(), PATH_TOLERANCE_INCHES);
+		assertEquals(0, sim.getHeadingDegrees(), 3.0);
+		assertEquals(0, sim.getSpeedFeetPerSecond(), 0.5);
+		// Odometry follows the model
+		assertEquals(sim.getXInches(), sensors.pose.x, 1.0);
+	}
+
+	/**
+	 * A straight path that speeds up and slows down smoothly, with 20 ms points
+	 *
+	 * @param inches   how far to go; negative to back up
+	 * @param seconds  how long to take
+	 */
+	private static Trajectory straightPath(double inches, double seconds) {
+		int length = (int) Math.round(seconds / 0.02) + 1;
+		float[] time = new float[length];
+		float[] position = new float[length];
+		float[] velocity = new float[length];
+		float[] heading = new float[length];
+		for (int i = 0; i < length; ++i) {
+			double t = i * 0.02;
+			double phase = 2 * Math.PI * t / seconds;
+			time[i] = (float) t;
+			position[i] = (float) (inches * (t / seconds - Math.sin(phase) / (2 * Math.PI)));
+			velocity[i] = (float) (inches / seconds * (1 - Math.cos(phase)));
+		}
+		return new Trajectory("straight", time, position, velocity, position.clone(), velocity.clone(), heading);
+	}
+
+	/**
+	 * Run the robot loop once, and the control loop and physics for the time until the next one
+	 *
+	 * @param sticks true to drive with the driver sticks; false leaves the drivebase on its last command
+	 */
+	private void robotPass(boolean sticks) {
+		sensors.timestamp = Timer.getFPGATimestamp();
+		drivebase.sense(sensors);
+		if (sticks) {
+			drivebase.driveWithJoysticks();
+		}
+		drivebase.actuate();
+
+		for (int i = 0; i < STEPS_PER_ROBOT_PASS; ++i) {
+			SimHooks.stepTiming(STEP_US);
+			sim.step(DrivetrainSim.STEP_S);
+			if (++steps % STEPS_PER_CONTROL_PASS == 0) {
+				drivebase.stepControlLoop();
+			}
+		}
+	}
+
+	private double now() {
+		return steps * DrivetrainSim.STEP_S;
+	}
+}
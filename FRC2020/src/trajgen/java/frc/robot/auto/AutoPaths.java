@@ -0,0 +1,62 @@
+package frc.robot.auto;
+
+import java.util.List;
+
+import edu.wpi.first.wpilibj.geometry.Pose2d;
+import edu.wpi.first.wpilibj.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.geometry.Translation2d;
+
+/**
+ * The autonomous paths, compiled into trajectory files by PathCompiler at build
+ * time. Add a path here and it will be deployed as paths/<name>.traj.
+ * 
+ * Waypoints are in inches and degrees, relative to where the robot starts:
+ * +x is straight ahead, +y is to the left.
+ */
+final class AutoPaths {
+	private AutoPaths() {
+	}
+
+	/** One path to compile */
+	static class PathSpec {
+		final String name;
+		final double maxVelocity; // inches per second
+		final double maxAcceleration; // inches per second squared
+		final boolean reversed;
+		final Pose2d start;
+		final List<Translation2d> interior;
+		final Pose2d end;
+
+		PathSpec(String name, double maxVelocity, double maxAcceleration, boolean reversed,
+				Pose2d start, List<Translation2d> interior, Pose2d end) {
+			this.name = name;
+			this.maxVelocity = maxVelocity;
+			this.maxAcceleration = maxAcceleration;
+			this.reversed = reversed;
+			this.start = start;
+			this.interior = interior;
+			this.end = end;
+		}
+	}
+
+	// Paths are driven in low gear (see FollowTrajectory); keep some headroom below its top speed
+	private static final double LOW_GEAR_MAX_VELOCITY = 60; // in/s
+	private static final double LOW_GEAR_MAX_ACCELERATION = 60; // in/s^2
+
+	static final List<PathSpec> PATHS = List.of(
+		new PathSpec("forward 10 ft", LOW_GEAR_MAX_VELOCITY, LOW_GEAR_MAX_ACCELERATION, false,
+			pose(0, 0, 0), List.of(), pose(120, 0, 0)),
+		new PathSpec("s curve left", LOW_GEAR_MAX_VELOCITY, LOW_GEAR_MAX_ACCELERATION, false,
+			pose(0, 0, 0), List.of(point(60, 12), point(120, 48)), pose(180, 60, 0)),
+		new PathSpec("back up 4 ft", LOW_GEAR_MAX_VELOCITY, LOW_GEAR_MAX_ACCELERATION, true,
+			pose(0, 0, 0), List.of(), pose(-48, 0, 0)));
+
+	private static Pose2d pose(double xInches, double yInches, double headingDegrees) {
+		return new Pose2d(PathCompiler.METERS_PER_INCH * xInches, PathCompiler.METERS_PER_INCH * yInches,
+			Rotation2d.fromDegrees(headingDegrees));
+	}
+
+	private static Translation2d point(double xInches, double yInches) {
+		return new Translation2d(PathCompiler.METERS_PER_INCH * xInches, PathCompiler.METERS_PER_INCH * yInches);
+	}
+}
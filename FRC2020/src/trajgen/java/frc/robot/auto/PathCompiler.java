@@ -0,0 +1,88 @@
+package frc.robot.auto;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import edu.wpi.first.wpilibj.kinematics.DifferentialDriveKinematics;
+import edu.wpi.first.wpilibj.trajectory.TrajectoryConfig;
+import edu.wpi.first.wpilibj.trajectory.TrajectoryGenerator;
+import frc.robot.Constants;
+
+/**
+ * Build-time generator for the autonomous paths in AutoPaths. Each path is
+ * generated with WPILib's trajectory generator, sampled at the Talon point
+ * period, split into left and right wheel tracks, and written with
+ * TrajectoryFile.
+ * 
+ * Run by the generateTrajectories Gradle task:
+ * PathCompiler <output directory>
+ */
+public final class PathCompiler {
+	static final double METERS_PER_INCH = 0.0254;
+	private static final double POINT_PERIOD_S = 0.010;
+
+	private PathCompiler() {
+	}
+
+	/**
+	 * Generate one path and split it into wheel tracks
+	 */
+	static Trajectory compile(AutoPaths.PathSpec spec) {
+		double trackWidthInches = Constants.DRIVE_TRACK_WIDTH_INCHES;
+		TrajectoryConfig config = new TrajectoryConfig(spec.maxVelocity * METERS_PER_INCH,
+			spec.maxAcceleration * METERS_PER_INCH)
+			.setKinematics(new DifferentialDriveKinematics(trackWidthInches * METERS_PER_INCH))
+			.setReversed(spec.reversed);
+		edu.wpi.first.wpilibj.trajectory.Trajectory path = TrajectoryGenerator.generateTrajectory(spec.start,
+			spec.interior, spec.end, config);
+
+		int n = (int) Math.ceil(path.getTotalTimeSeconds() / POINT_PERIOD_S) + 1;
+		float[] time = new float[n];
+		float[] leftPosition = new float[n];
+		float[] leftVelocity = new float[n];
+		float[] rightPosition = new float[n];
+		float[] rightVelocity = new float[n];
+		float[] heading = new float[n];
+
+		double left = 0;
+		double right = 0;
+		for (int i = 0; i < n; ++i) {
+			double t = Math.min(i * POINT_PERIOD_S, path.getTotalTimeSeconds());
+			edu.wpi.first.wpilibj.trajectory.Trajectory.State state = path.sample(t);
+
+			// Each side goes faster or slower than the center by the curvature times half the track
+			double v = state.velocityMetersPerSecond / METERS_PER_INCH;
+			double turn = state.curvatureRadPerMeter * METERS_PER_INCH * trackWidthInches / 2;
+			double vLeft = v * (1 - turn);
+			double vRight = v * (1 + turn);
+			if (i > 0) {
+				left += (vLeft + leftVelocity[i - 1]) / 2 * POINT_PERIOD_S;
+				right += (vRight + rightVelocity[i - 1]) / 2 * POINT_PERIOD_S;
+			}
+			time[i] = (float) (i * POINT_PERIOD_S);
+			leftPosition[i] = (float) left;
+			leftVelocity[i] = (float) vLeft;
+			rightPosition[i] = (float) right;
+			rightVelocity[i] = (float) vRight;
+			heading[i] = (float) state.poseMeters.getRotation().getDegrees();
+		}
+		// Come to rest exactly at the end
+		leftVelocity[n - 1] = 0;
+		rightVelocity[n - 1] = 0;
+		return new Trajectory(spec.name, time, leftPosition, leftVelocity, rightPosition, rightVelocity, heading);
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path outputDir = Paths.get(args.length > 0 ? args[0] : "src/main/deploy/paths");
+		Files.createDirectories(outputDir);
+		for (AutoPaths.PathSpec spec : AutoPaths.PATHS) {
+			Trajectory trajectory = compile(spec);
+			Path file = outputDir.resolve(spec.name + TrajectoryFile.EXTENSION);
+			TrajectoryFile.write(trajectory, file);
+			System.out.println(String.format("%s: %d points, %.2f s, %d bytes", file, trajectory.length(),
+				trajectory.time(trajectory.length() - 1), Files.size(file)));
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package frc.shared;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.Date;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTableEntry;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * A continuous, low overhead Flight Recorder recording that keeps only the last few minutes,
+ * and can be dumped to disk on request for later analysis with JDK Mission Control or the jfr tool.
+ *
+ * Used by both the robot and the vision coprocessor; their builds compile it from the Shared directory.
+ */
+public final class FlightRecording {
+	private final Recording recording;
+	private final String directory;
+	private final String prefix;
+
+	/**
+	 * Start recording.
+	 * @param directory where to write dumps
+	 * @param prefix start of the file name of each dump
+	 * @param maxAge how much history to keep
+	 */
+	public FlightRecording(String directory, String prefix, Duration maxAge) throws IOException, ParseException {
+		this.directory = directory;
+		this.prefix = prefix;
+		// The "default" settings are the ones meant to be left on in production
+		recording = new Recording(Configuration.getConfiguration("default"));
+		recording.setName(prefix);
+		recording.setMaxAge(maxAge);
+		recording.setToDisk(true);
+		recording.start();
+	}
+
+	/**
+	 * Write everything in the ring buffer to a new file.
+	 * @return the file written
+	 */
+	public synchronized Path dump() throws IOException {
+		String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		Path path = Paths.get(directory, prefix + "-" + stamp + ".jfr");
+		recording.dump(path);
+		return path;
+	}
+
+	/**
+	 * Dump whenever the given boolean entry is set to true, then set it back to false.
+	 * @param trigger the entry to watch
+	 */
+	public void dumpOnRequest(NetworkTableEntry trigger) {
+		trigger.setBoolean(false);
+		trigger.addListener(event -> {
+			if (!event.value.isBoolean() || !event.value.getBoolean()) {
+				return;
+			}
+			try {
+				System.out.println("Flight recording written to " + dump());
+			} catch (IOException ex) {
+				System.err.println("could not write flight recording: " + ex);
+			}
+			trigger.setBoolean(false);
+		}, EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+	}
+}
@@ -1,2 +1,12 @@
 #!/bin/sh
 cp build/libs/java-multiCameraServer-all.jar runCamera /home/pi
+
+# Build the class data sharing archive against the installed jar.  The class path
+# must match the one runCamera uses exactly, so this runs from /home/pi.
+./gradlew cdsClassList
+if [ -f build/libs/classlist ]; then
+  CLASS_LIST="$(pwd)/build/libs/classlist"
+  (cd /home/pi && rm -f java-multiCameraServer.jsa && \
+    java -Xshare:dump -XX:SharedClassListFile="$CLASS_LIST" \
+      -XX:SharedArchiveFile=java-multiCameraServer.jsa -cp java-multiCameraServer-all.jar)
+fi
@@ -98,11 +98,20 @@ public class HatchVisionTargetsFromImage implements VisionPipeline {
 	private Mat hsvThresholdOutput = new Mat();
 	private ArrayList<MatOfPoint> findContoursOutput = new ArrayList<MatOfPoint>();
 	private ArrayList<MatOfPoint> filterContoursOutput = new ArrayList<MatOfPoint>();
-	private List<RotatedRect> rotatedBoxen = new LinkedList<>();
+	private final List<RotatedRect> rotatedBoxen = new ArrayList<>();
 	private List<RotatedRect> neitherSideStripes = new LinkedList<>();
 	private List<RotatedRect> leftSideStripes = new LinkedList<>();
 	private List<RotatedRect> rightSideStripes = new LinkedList<>();
 	private List<HatchVisionTarget> detectedTargets = new LinkedList<>();
+	private long frameNumber = 0;
+	private long frameStartNanos = 0; // When processing of the last frame started, on the System.nanoTime() clock
+
+	// Stripe extraction backends.  Volatile, since the engine may be switched from outside the vision thread.
+	private volatile StripeEngine stripeEngine = StripeEngine.CONTOURS;
+	// Tunable values.  Volatile, since a new snapshot may be swapped in from outside the vision thread.
+	private volatile PipelineParameters parameters = PipelineParameters.DEFAULTS;
+	private final StripeExtractor contourExtractor = new ContourStripeExtractor();
+	private final StripeExtractor componentExtractor = new ComponentStripeExtractor();
 
 	static {
 		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
@@ -124,62 +133,54 @@ public class HatchVisionTargetsFromImage implements VisionPipeline {
 	 * This is the primary method that runs the entire pipeline and updates the outputs.
 	 */
 	@Override	public void process(Mat source0) {
+		// Read the parameters once, so the whole frame sees one consistent snapshot
+		final PipelineParameters params = parameters;
+		final long frame = ++frameNumber;
+		frameStartNanos = System.nanoTime();
+
 		// Step Blur0:
+		PipelineStageEvent stage = PipelineStageEvent.start(frame, "blur");
 		Mat blurInput = source0;
-		BlurType blurType = BlurType.get("Box Blur");
-		double blurRadius = 2.7027027027027026;
-		blur(blurInput, blurType, blurRadius, blurOutput);
+		blur(blurInput, params.blurType, params.blurRadiusPx, params.blurKernelSize, blurOutput);
+		stage.commit();
 
 		// Step HSV_Threshold0:
+		stage = PipelineStageEvent.start(frame, "hsv threshold");
 		Mat hsvThresholdInput = blurOutput;
-		double[] hsvThresholdHue = {45.69817278554671, 93.99989504410354};
-		double[] hsvThresholdSaturation = {91.72661870503596, 255.0};
-		double[] hsvThresholdValue = {57.32913669064751, 255.0};
-		hsvThreshold(hsvThresholdInput, hsvThresholdHue, hsvThresholdSaturation, hsvThresholdValue, hsvThresholdOutput);
-
-		// Step Find_Contours0:
-		Mat findContoursInput = hsvThresholdOutput;
-		boolean findContoursExternalOnly = false;
-		findContours(findContoursInput, findContoursExternalOnly, findContoursOutput);
-
-		// Step Filter_Contours0:
-		ArrayList<MatOfPoint> filterContoursContours = findContoursOutput;
-		double filterContoursMinArea = 50.0;
-		double filterContoursMinPerimeter = 0.0;
-		double filterContoursMinWidth = 0.0;
-		double filterContoursMaxWidth = 1000.0;
-		double filterContoursMinHeight = 0.0;
-		double filterContoursMaxHeight = 1000.0;
-		double[] filterContoursSolidity = {90.28776978417267, 100.0};
-		double filterContoursMaxVertices = 10000.0;
-		double filterContoursMinVertices = 0.0;
-		double filterContoursMinRatio = 0.0;
-		double filterContoursMaxRatio = 1.0;
-		filterContours(filterContoursContours, filterContoursMinArea, filterContoursMinPerimeter, filterContoursMinWidth, filterContoursMaxWidth, filterContoursMinHeight, filterContoursMaxHeight, filterContoursSolidity, filterContoursMaxVertices, filterContoursMinVertices, filterContoursMinRatio, filterContoursMaxRatio, filterContoursOutput);
-
-
-		// Find rotated minimum-volume rectangles to fit all contours and filter on them
-		rotatedBoxen = new LinkedList<>();
-		final double nominalAspectRatio = STRIPE_LENGTH_IN / STRIPE_WIDTH_IN;
-		final double minAspectRatio  = nominalAspectRatio * 0.6;
-		final double maxAspectRatio  = nominalAspectRatio * 1.5;
-		final double minSolidity     = 0.75;
-		final double minArea         = 100.0;
-		filterBoxen(findContoursOutput,  minAspectRatio, maxAspectRatio, minSolidity, minArea, rotatedBoxen);
-
-		final double nominalAngleOffAxis = Math.toDegrees(Math.asin(STRIPE_BOTTOM_KICKOUT_IN / STRIPE_LENGTH_IN));
-		final double leftStripeNominalAngle = -180 + nominalAngleOffAxis; // -165ish
-		final double rightStripeNominalAngle = -0 - nominalAngleOffAxis; // -15ish
-		final double angleToleranceDegVert = 10; // Angle tolerance, when rotating the stripe to be more vertical
-		final double angleToleranceDegHorz = 20; // Angle tolerance, when rotating the stripe to be more horizontal
+		hsvThreshold(hsvThresholdInput, params.hsvLower, params.hsvUpper, hsvThresholdOutput);
+		stage.commit();
+
+		// Find rotated rectangles to fit all blobs in the mask and filter on them
+		StripeExtractor extractor = (stripeEngine == StripeEngine.COMPONENTS) ? componentExtractor : contourExtractor;
+		stage = PipelineStageEvent.start(frame, "extract stripes");
+		extractor.extractStripes(hsvThresholdOutput, params, rotatedBoxen);
+		stage.commit();
+
+		stage = PipelineStageEvent.start(frame, "classify stripes");
 		neitherSideStripes = new LinkedList<>();
 		leftSideStripes = new LinkedList<>();
 		rightSideStripes = new LinkedList<>();
-		classifyRectangles(rotatedBoxen, leftStripeNominalAngle - angleToleranceDegVert, leftStripeNominalAngle + angleToleranceDegHorz,
-		  rightStripeNominalAngle - angleToleranceDegHorz, rightStripeNominalAngle + angleToleranceDegVert, leftSideStripes, rightSideStripes, neitherSideStripes);
-
+		classifyRectangles(rotatedBoxen, params.minLeftSideAngle, params.maxLeftSideAngle,
+		  params.minRightSideAngle, params.maxRightSideAngle, leftSideStripes, rightSideStripes, neitherSideStripes);
+		stage.commit();
 
+		stage = PipelineStageEvent.start(frame, "find targets");
 		detectedTargets = findTargets(leftSideStripes, rightSideStripes);
+		stage.commit();
+	}
+
+	/**
+	 * @return the sequence number of the last frame processed, starting at 1
+	 */
+	public long getFrameNumber() {
+		return frameNumber;
+	}
+
+	/**
+	 * @return when processing of the last frame started, on the System.nanoTime() clock
+	 */
+	public long getFrameStartNanos() {
+		return frameStartNanos;
 	}
 
 	/**
@@ -231,6 +232,57 @@ public class HatchVisionTargetsFromImage implements VisionPipeline {
 	public List<HatchVisionTarget> getDetectedTargets() {
 		return detectedTargets;
 	}
+
+	public StripeEngine getStripeEngine() {
+		return stripeEngine;
+	}
+
+	/**
+	 * Choose which backend turns the thresholded mask into stripes.
+	 * Takes effect on the next call to process().
+	 * @param engine the backend to use
+	 */
+	public void setStripeEngine(StripeEngine engine) {
+		stripeEngine = engine;
+	}
+
+	public PipelineParameters getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Swap in a new set of tunable values.
+	 * Takes effect on the next call to process(); a frame in progress finishes with the old values.
+	 * @param params the new values
+	 */
+	public void setParameters(PipelineParameters params) {
+		parameters = params;
+	}
+
+	/**
+	 * The available backends for extracting stripes from the thresholded mask.
+	 * Both produce RotatedRects in the same convention as filterBoxen().
+	 */
+	public enum StripeEngine {
+		CONTOURS, // findContours, convex hull and minAreaRect for every blob
+		COMPONENTS, // connectedComponentsWithStats and image moments
+		;
+
+		/**
+		 * Look up an engine by name, ignoring case.
+		 * @param name the name of the engine, eg "components"
+		 * @return the matching engine, or CONTOURS if there is no match
+		 */
+		public static StripeEngine get(String name) {
+			for (StripeEngine engine : values()) {
+				if (engine.name().equalsIgnoreCase(name)) {
+					return engine;
+				}
+			}
+			return CONTOURS;
+		}
+	}
+
 	/**
 	 * An indication of which type of filter to use for a blur.
 	 * Choices are BOX, GAUSSIAN, MEDIAN, and BILATERAL
@@ -270,25 +322,21 @@ public class HatchVisionTargetsFromImage implements VisionPipeline {
 	 * Softens an image using one of several filters.
 	 * @param input The image on which to perform the blur.
 	 * @param type The blurType to perform.
-	 * @param doubleRadius The radius for the blur.
+	 * @param radius The radius for the blur, rounded to whole pixels.
+	 * @param kernelSize The kernel size matching the blur type and radius.
 	 * @param output The image in which to store the output.
 	 */
-	private static void blur(Mat input, BlurType type, double doubleRadius,
+	private static void blur(Mat input, BlurType type, int radius, Size kernelSize,
 		Mat output) {
-		int radius = (int)(doubleRadius + 0.5);
-		int kernelSize;
 		switch(type){
 			case BOX:
-				kernelSize = 2 * radius + 1;
-				Imgproc.blur(input, output, new Size(kernelSize, kernelSize));
+				Imgproc.blur(input, output, kernelSize);
 				break;
 			case GAUSSIAN:
-				kernelSize = 6 * radius + 1;
-				Imgproc.GaussianBlur(input,output, new Size(kernelSize, kernelSize), radius);
+				Imgproc.GaussianBlur(input,output, kernelSize, radius);
 				break;
 			case MEDIAN:
-				kernelSize = 2 * radius + 1;
-				Imgproc.medianBlur(input, output, kernelSize);
+				Imgproc.medianBlur(input, output, (int) kernelSize.width);
 				break;
 			case BILATERAL:
 				Imgproc.bilateralFilter(input, output, -1, radius, radius);
@@ -300,16 +348,14 @@ public class HatchVisionTargetsFromImage implements VisionPipeline {
 	 * Segment an image based on hue, saturation, and value ranges.
 	 *
 	 * @param input The image on which to perform the HSL threshold.
-	 * @param hue The min and max hue
-	 * @param sat The min and max saturation
-	 * @param val The min and max value
+	 * @param lower The min hue, saturation and value
+	 * @param upper The max hue, saturation and value
 	 * @param output The image in which to store the output.
 	 */
-	private static void hsvThreshold(Mat input, double[] hue, double[] sat, double[] val,
+	private static void hsvThreshold(Mat input, Scalar lower, Scalar upper,
 	    Mat out) {
 		Imgproc.cvtColor(input, out, Imgproc.COLOR_BGR2HSV);
-		Core.inRange(out, new Scalar(hue[0], sat[0], val[0]),
-			new Scalar(hue[1], sat[1], val[1]), out);
+		Core.inRange(out, lower, upper, out);
 	}
 
 	/**
@@ -435,6 +481,184 @@ public class HatchVisionTargetsFromImage implements VisionPipeline {
 		}
 	}
 
+	/**
+	 * Turns a binary mask into the rotated rectangles that might be stripes.
+	 * Implementations must follow the filterBoxen() conventions: the width is the narrow dimension,
+	 * and the angle is in the range [-180, 0).
+	 */
+	interface StripeExtractor {
+		/**
+		 * @param mask binary image, nonzero where a pixel passed the threshold
+		 * @param params the filtering criteria
+		 * @param output cleared, then filled with the stripes found
+		 */
+		void extractStripes(Mat mask, PipelineParameters params, List<RotatedRect> output);
+	}
+
+	/**
+	 * The original GRIP path: find every contour, then fit a minimum area rectangle to it.
+	 */
+	private class ContourStripeExtractor implements StripeExtractor {
+		@Override
+		public void extractStripes(Mat mask, PipelineParameters params, List<RotatedRect> output) {
+			// Step Find_Contours0:
+			Mat findContoursInput = mask;
+			boolean findContoursExternalOnly = false;
+			findContours(findContoursInput, findContoursExternalOnly, findContoursOutput);
+
+			// Step Filter_Contours0:
+			ArrayList<MatOfPoint> filterContoursContours = findContoursOutput;
+			double filterContoursMinArea = params.contourMinArea;
+			double filterContoursMinPerimeter = 0.0;
+			double filterContoursMinWidth = 0.0;
+			double filterContoursMaxWidth = 1000.0;
+			double filterContoursMinHeight = 0.0;
+			double filterContoursMaxHeight = 1000.0;
+			double[] filterContoursSolidity = params.contourSolidity;
+			double filterContoursMaxVertices = 10000.0;
+			double filterContoursMinVertices = 0.0;
+			double filterContoursMinRatio = 0.0;
+			double filterContoursMaxRatio = 1.0;
+			filterContours(filterContoursContours, filterContoursMinArea, filterContoursMinPerimeter, filterContoursMinWidth, filterContoursMaxWidth, filterContoursMinHeight, filterContoursMaxHeight, filterContoursSolidity, filterContoursMaxVertices, filterContoursMinVertices, filterContoursMinRatio, filterContoursMaxRatio, filterContoursOutput);
+
+			filterBoxen(findContoursOutput, params.minAspectRatio, params.maxAspectRatio, params.stripeMinSolidity,
+				params.stripeMinArea, output);
+		}
+	}
+
+	/**
+	 * Labels the blobs in one pass with connectedComponentsWithStats, then fits each
+	 * surviving blob with a rectangle computed from its second order image moments.
+	 * This skips the contour tracing, convex hulls and minAreaRect of the GRIP path,
+	 * which is a good trade for clean masks where each stripe is one solid blob.
+	 *
+	 * Nothing is allocated per blob: the moments are summed in Java over a copy of the
+	 * label image, and the rectangles come from a pool that is reused every frame. The
+	 * stripes, and any targets built from them, are only good until the next frame.
+	 */
+	private class ComponentStripeExtractor implements StripeExtractor {
+		// Blobs smaller than this many pixels are discarded before any moments are computed
+		private static final int MIN_COMPONENT_PIXELS = 50;
+
+		private final Mat labels = new Mat();
+		private final Mat stats = new Mat();
+		private final Mat centroids = new Mat();
+		private int[] statsBuffer = new int[0];
+		private int[] labelBuffer = new int[0];
+		// Grows to the most stripes seen in a frame, then stays put
+		private final ArrayList<RotatedRect> rectPool = new ArrayList<>();
+
+		@Override
+		public void extractStripes(Mat mask, PipelineParameters params, List<RotatedRect> output) {
+			output.clear();
+			int numLabels = Imgproc.connectedComponentsWithStats(mask, labels, stats, centroids, 8, CvType.CV_32S);
+			int statsLength = numLabels * Imgproc.CC_STAT_MAX;
+			if (statsBuffer.length < statsLength) {
+				statsBuffer = new int[statsLength];
+			}
+			stats.get(0, 0, statsBuffer);
+			final int cols = labels.cols();
+			final int labelsLength = labels.rows() * cols;
+			if (labelBuffer.length < labelsLength) {
+				labelBuffer = new int[labelsLength];
+			}
+			labels.get(0, 0, labelBuffer);
+
+			// Label 0 is the background
+			int pooled = 0;
+			for (int label = 1; label < numLabels; ++label) {
+				final int row = label * Imgproc.CC_STAT_MAX;
+				final int pixelArea = statsBuffer[row + Imgproc.CC_STAT_AREA];
+				if (pixelArea < MIN_COMPONENT_PIXELS) { continue; }
+
+				// Sum the moments over this blob's bounding box, counting only its own pixels so
+				// neighbors don't pollute them.  Positions are relative to the box, to keep precision.
+				final int left = statsBuffer[row + Imgproc.CC_STAT_LEFT];
+				final int top = statsBuffer[row + Imgproc.CC_STAT_TOP];
+				final int width = statsBuffer[row + Imgproc.CC_STAT_WIDTH];
+				final int height = statsBuffer[row + Imgproc.CC_STAT_HEIGHT];
+				double m00 = 0, m10 = 0, m01 = 0, m20 = 0, m11 = 0, m02 = 0;
+				for (int y = 0; y < height; ++y) {
+					final int rowStart = (top + y) * cols + left;
+					for (int x = 0; x < width; ++x) {
+						if (labelBuffer[rowStart + x] == label) {
+							m00 += 1;
+							m10 += x;
+							m01 += y;
+							m20 += x * x;
+							m11 += x * y;
+							m02 += y * y;
+						}
+					}
+				}
+
+				if (pooled == rectPool.size()) {
+					rectPool.add(new RotatedRect());
+				}
+				RotatedRect rect = rectPool.get(pooled);
+				rectFromMoments(m00, m10, m01, m20, m11, m02, left, top, rect);
+
+				// Same acceptance criteria as filterBoxen()
+				if(rect.size.area() < params.stripeMinArea) { continue; }
+				double aspectRatio = rect.size.height / rect.size.width;
+				if(aspectRatio > params.maxAspectRatio || aspectRatio < params.minAspectRatio) { continue; }
+				final double cAreaToRArea = pixelArea / rect.size.area();
+				if(cAreaToRArea < params.stripeMinSolidity) { continue; }
+
+				output.add(rect);
+				pooled++;
+			}
+		}
+	}
+
+	/**
+	 * Fill in the rectangle with the same centroid and second moments as a blob.
+	 * A solid n pixel long run has variance (n^2 - 1) / 12 along its length, which we invert
+	 * along each principal axis to recover the side lengths.
+	 * @param m00 pixel count of the blob
+	 * @param m10 sum of the pixels' x positions
+	 * @param m01 sum of the pixels' y positions
+	 * @param m20 sum of x squared
+	 * @param m11 sum of x times y
+	 * @param m02 sum of y squared
+	 * @param offsetX x position of the image the moments were taken from
+	 * @param offsetY y position of the image the moments were taken from
+	 * @param out set to a rectangle following the filterBoxen() conventions
+	 */
+	static void rectFromMoments(double m00, double m10, double m01, double m20, double m11, double m02,
+		double offsetX, double offsetY, RotatedRect out) {
+		final double meanX = m10 / m00;
+		final double meanY = m01 / m00;
+
+		// Normalized central moments, ie the covariance matrix of the pixel positions
+		final double a = m20 / m00 - meanX * meanX;
+		final double b = m11 / m00 - meanX * meanY;
+		final double c = m02 / m00 - meanY * meanY;
+		final double halfSum = (a + c) / 2.0;
+		final double spread = Math.sqrt(((a - c) / 2.0) * ((a - c) / 2.0) + b * b);
+		final double majorVariance = halfSum + spread;
+		final double minorVariance = Math.max(halfSum - spread, 0);
+		final double length = Math.sqrt(12.0 * majorVariance + 1.0);
+		final double width = Math.sqrt(12.0 * minorVariance + 1.0);
+
+		// Angle of the long axis, in OpenCV image convention
+		final double majorAxisDeg = Math.toDegrees(0.5 * Math.atan2(2.0 * b, a - c));
+		// filterBoxen() measures the angle out of the narrow side, within [-180, 0)
+		double angle = majorAxisDeg - 90;
+		while (angle >= 0) {
+			angle -= 180;
+		}
+		while (angle < -180) {
+			angle += 180;
+		}
+
+		out.center.x = meanX + offsetX;
+		out.center.y = meanY + offsetY;
+		out.size.width = width;
+		out.size.height = length;
+		out.angle = angle;
+	}
+
 	/**
 	 * 
 	 * In OpenCV images, note that positive X is measured rightward from the left side, and positive Y is
@@ -499,55 +723,57 @@ public class HatchVisionTargetsFromImage implements VisionPipeline {
 		return targets;
 	}
 
-	public static void main(String[] args) {
+	/**
+	 * The sample images, relative to the VisionCoprocessor directory
+	 */
+	static final String[] TEST_IMAGES = {
+		"test_images/Floor line/CargoAngledLine48in.jpg",
+		"test_images/Floor line/CargoLine16in.jpg",
+		"test_images/Floor line/CargoLine24in.jpg",
+		"test_images/Floor line/CargoLine36in.jpg",
+		"test_images/Floor line/CargoLine48in.jpg",
+		"test_images/Floor line/CargoLine60in.jpg",
+		"test_images/Occluded, single target/LoadingAngle36in.jpg",
+		"test_images/Occluded, single target/LoadingAngleDark36in.jpg",
+		"test_images/Occluded, single target/LoadingAngleDark60in.jpg",
+		"test_images/Occluded, single target/LoadingAngleDark96in.jpg",
+		"test_images/Occluded, single target/LoadingStraightDark108in.jpg",
+		"test_images/Occluded, single target/LoadingStraightDark10in.jpg",
+		"test_images/Occluded, single target/LoadingStraightDark13in.jpg",
+		"test_images/Occluded, single target/LoadingStraightDark21in.jpg",
+		"test_images/Occluded, single target/LoadingStraightDark36in.jpg",
+		"test_images/Occluded, single target/LoadingStraightDark48in.jpg",
+		"test_images/Occluded, single target/LoadingStraightDark60in.jpg",
+		"test_images/Occluded, single target/LoadingStraightDark84in.jpg",
+		"test_images/Occluded, single target/LoadingStraightDark9in.jpg",
+		"test_images/Occluded, two targets/CargoSideStraightDark60in.jpg",
+		"test_images/Occluded, two targets/CargoSideStraightDark72in.jpg",
+		"test_images/Unoccluded, single target/From FRC/CargoSideStraightDark36in.jpg",
+		"test_images/Unoccluded, single target/From FRC/CargoStraightDark19in.jpg",
+		"test_images/Unoccluded, single target/From FRC/CargoStraightDark24in.jpg",
+		"test_images/Unoccluded, single target/From FRC/RocketBallStraightDark19in.jpg",
+		"test_images/Unoccluded, single target/From FRC/RocketBallStraightDark24in.jpg",
+		"test_images/Unoccluded, single target/From FRC/RocketBallStraightDark29in.jpg",
+		"test_images/Unoccluded, single target/From FRC/RocketBallStraightDark48in.jpg",
+		"test_images/Unoccluded, single target/From FRC/RocketPanelStraightDark12in.jpg",
+		"test_images/Unoccluded, single target/From FRC/RocketPanelStraightDark16in.jpg",
+		"test_images/Unoccluded, single target/From FRC/RocketPanelStraightDark24in.jpg",
+		"test_images/Unoccluded, single target/From FRC/RocketPanelStraightDark36in.jpg",
+		"test_images/Unoccluded, single target/Taken in classroom/19 inches.png",
+		"test_images/Unoccluded, single target/Taken in classroom/29 inches.png",
+		"test_images/Unoccluded, single target/Taken in classroom/far.png",
+		"test_images/Unoccluded, single target/Taken in classroom/near.png",
+		"test_images/Unoccluded, two targets/CargoAngledDark48in.jpg",
+		"test_images/Unoccluded, two targets/CargoStraightDark72in.jpg",
+		"test_images/Unoccluded, two targets/CargoStraightDark90in.jpg",
+		"test_images/Unoccluded, two targets/RocketPanelAngleDark48in.jpg",
+		"test_images/Unoccluded, two targets/RocketPanelAngleDark60in.jpg",
+		"test_images/Unoccluded, two targets/RocketPanelAngleDark84in.jpg",
+	};
 
-		String[] filesToProcess = {
-			"test_images/Floor line/CargoAngledLine48in.jpg",
-			"test_images/Floor line/CargoLine16in.jpg                                               ",
-			"test_images/Floor line/CargoLine24in.jpg                                               ",
-			"test_images/Floor line/CargoLine36in.jpg                                               ",
-			"test_images/Floor line/CargoLine48in.jpg                                               ",
-			"test_images/Floor line/CargoLine60in.jpg                                               ",
-			"test_images/Occluded, single target/LoadingAngle36in.jpg                               ",
-			"test_images/Occluded, single target/LoadingAngleDark36in.jpg                           ",
-			"test_images/Occluded, single target/LoadingAngleDark60in.jpg                           ",
-			"test_images/Occluded, single target/LoadingAngleDark96in.jpg                           ",
-			"test_images/Occluded, single target/LoadingStraightDark108in.jpg                       ",
-			"test_images/Occluded, single target/LoadingStraightDark10in.jpg                        ",
-			"test_images/Occluded, single target/LoadingStraightDark13in.jpg                        ",
-			"test_images/Occluded, single target/LoadingStraightDark21in.jpg                        ",
-			"test_images/Occluded, single target/LoadingStraightDark36in.jpg                        ",
-			"test_images/Occluded, single target/LoadingStraightDark48in.jpg                        ",
-			"test_images/Occluded, single target/LoadingStraightDark60in.jpg                        ",
-			"test_images/Occluded, single target/LoadingStraightDark84in.jpg                        ",
-			"test_images/Occluded, single target/LoadingStraightDark9in.jpg                         ",
-			"test_images/Occluded, two targets/CargoSideStraightDark60in.jpg                        ",
-			"test_images/Occluded, two targets/CargoSideStraightDark72in.jpg                        ",
-			"test_images/Unoccluded, single target/From FRC/CargoSideStraightDark36in.jpg           ",
-			"test_images/Unoccluded, single target/From FRC/CargoStraightDark19in.jpg               ",
-			"test_images/Unoccluded, single target/From FRC/CargoStraightDark24in.jpg               ",
-			"test_images/Unoccluded, single target/From FRC/RocketBallStraightDark19in.jpg          ",
-			"test_images/Unoccluded, single target/From FRC/RocketBallStraightDark24in.jpg          ",
-			"test_images/Unoccluded, single target/From FRC/RocketBallStraightDark29in.jpg          ",
-			"test_images/Unoccluded, single target/From FRC/RocketBallStraightDark48in.jpg          ",
-			"test_images/Unoccluded, single target/From FRC/RocketPanelStraightDark12in.jpg         ",
-			"test_images/Unoccluded, single target/From FRC/RocketPanelStraightDark16in.jpg         ",
-			"test_images/Unoccluded, single target/From FRC/RocketPanelStraightDark24in.jpg         ",
-			"test_images/Unoccluded, single target/From FRC/RocketPanelStraightDark36in.jpg         ",
-			"test_images/Unoccluded, single target/Taken in classroom/19 inches.png                 ",
-			"test_images/Unoccluded, single target/Taken in classroom/29 inches.png                 ",
-			"test_images/Unoccluded, single target/Taken in classroom/far.png                       ",
-			"test_images/Unoccluded, single target/Taken in classroom/near.png                      ",
-			"test_images/Unoccluded, two targets/CargoAngledDark48in.jpg                            ",
-			"test_images/Unoccluded, two targets/CargoStraightDark72in.jpg                          ",
-			"test_images/Unoccluded, two targets/CargoStraightDark90in.jpg                          ",
-			"test_images/Unoccluded, two targets/RocketPanelAngleDark48in.jpg                       ",
-			"test_images/Unoccluded, two targets/RocketPanelAngleDark60in.jpg                       ",
-			"test_images/Unoccluded, two targets/RocketPanelAngleDark84in.jpg                       ",
-		};
-	
+	public static void main(String[] args) {
 		HatchVisionTargetsFromImage processor = new HatchVisionTargetsFromImage();
-		for (String file : filesToProcess) {
+		for (String file : TEST_IMAGES) {
 			Mat img = Imgcodecs.imread(file);
 			processor.process(img);
 
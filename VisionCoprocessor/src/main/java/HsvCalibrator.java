@@ -0,0 +1,359 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.DoubleStream;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Offline search for the threshold and filter parameters that best find the targets in a set of
+ * labeled images.  The best values found are written into a pipeline settings file, ready to
+ * copy to /home/pi/pipelineSettings.json.
+ *
+ * <p>
+ * Every candidate is scored on how often it finds the labeled number of targets, how close the
+ * computed range is to the labeled range, and how long the pipeline takes per frame.  The search
+ * runs in two stages, since the filters only have something to work on once the threshold is right:
+ * <ol>
+ * <li>The blur radius and HSV threshold, on a coarse grid and then a finer grid around the best
+ * coarse result.  The saturation and value maximums are only searched in the fine grid.
+ * <li>The contour and stripe filters (areas, solidities, aspect ratio and angle tolerances), on a
+ * grid over the best threshold.  The contour solidity maximum stays where it is, as a solid
+ * blob is never a problem.
+ * </ol>
+ * Candidates are spread over a ForkJoin pool, one pipeline per worker thread.
+ *
+ * <p>
+ * Run from the VisionCoprocessor directory, with the OpenCV natives on the library path:
+ * java -cp build/libs/java-multiCameraServer-all.jar HsvCalibrator [labels.json] [pipelineSettings.json]
+ *
+ * <p>
+ * Labels file format (image paths are relative to the labels file):
+ * <pre>
+ *   {
+ *       "images": [
+ *           {
+ *               "file": <path to the image>
+ *               "targets": <number of targets that should be found>
+ *               "range (in)": <distance to the target>   // optional
+ *           }
+ *       ]
+ *   }
+ * </pre>
+ */
+public final class HsvCalibrator {
+	private static final String DEFAULT_LABELS_FILE = "test_images/labels.json";
+	private static final String DEFAULT_SETTINGS_FILE = "settings/pipelineSettings.json";
+
+	// How much each part of the score is worth.  A perfect detection rate scores 1.
+	private static final double RANGE_ERROR_WEIGHT = 0.5; // per unit of relative range error
+	private static final double COST_WEIGHT = 0.01; // per millisecond per frame
+
+	// Threshold search space.  The maximums are searched around the base values in the fine grid.
+	private static final double[] BLUR_RADII = {0, 1.5, 2.7, 4};
+	private static final double[] HUE_MINS = range(30, 70, 5);
+	private static final double[] HUE_MAXES = range(80, 110, 5);
+	private static final double[] SATURATION_MINS = range(40, 180, 20);
+	private static final double[] VALUE_MINS = range(30, 170, 20);
+
+	// Filter search space
+	private static final double[] CONTOUR_MIN_AREAS = {25, 50, 100};
+	private static final double[] CONTOUR_SOLIDITY_MINS = {70, 80, 90};
+	private static final double[] ASPECT_RATIO_MIN_FRACTIONS = {0.5, 0.6, 0.7};
+	private static final double[] ASPECT_RATIO_MAX_FRACTIONS = {1.3, 1.5, 1.8};
+	private static final double[] STRIPE_MIN_SOLIDITIES = {0.65, 0.75, 0.85};
+	private static final double[] STRIPE_MIN_AREAS = {50, 100, 200};
+	private static final double[] ANGLE_TOLERANCES_VERT = {5, 10, 15};
+	private static final double[] ANGLE_TOLERANCES_HORZ = {10, 20, 30};
+
+	// Candidates evaluated by one task before it stops splitting
+	private static final int CANDIDATES_PER_TASK = 8;
+
+	private HsvCalibrator() {
+	}
+
+	/**
+	 * One image, along with what the pipeline should find in it
+	 */
+	static class LabeledImage {
+		String file;
+		Mat image;
+		int targets;
+		double rangeInches = Double.NaN; // NaN if not labeled
+	}
+
+	/**
+	 * How well one set of parameters did over all the labeled images
+	 */
+	static class Score {
+		PipelineParameters params;
+		double detectionRate; // fraction of images where exactly the labeled number of targets was found
+		double rangeError; // mean relative range error over images with a labeled range
+		double costMs; // mean pipeline time per frame
+
+		double total() {
+			return detectionRate - RANGE_ERROR_WEIGHT * rangeError - COST_WEIGHT * costMs;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("score %.3f: detection %.1f%%, range error %.1f%%, %.2f ms/frame",
+				total(), detectionRate * 100, rangeError * 100, costMs);
+		}
+	}
+
+	/**
+	 * Evaluates a slice of the candidate list, splitting it in half until it is small.
+	 */
+	static class SearchTask extends RecursiveTask<Score> {
+		private static final long serialVersionUID = 1L;
+		private static final ThreadLocal<HatchVisionTargetsFromImage> pipelines =
+			ThreadLocal.withInitial(HatchVisionTargetsFromImage::new);
+
+		private final List<PipelineParameters> candidates;
+		private final List<LabeledImage> images;
+		private final int start, end;
+
+		SearchTask(List<PipelineParameters> candidates, List<LabeledImage> images, int start, int end) {
+			this.candidates = candidates;
+			this.images = images;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected Score compute() {
+			if (end - start <= CANDIDATES_PER_TASK) {
+				HatchVisionTargetsFromImage pipeline = pipelines.get();
+				Score best = null;
+				for (int i = start; i < end; ++i) {
+					Score score = evaluate(candidates.get(i), images, pipeline);
+					if (best == null || score.total() > best.total()) {
+						best = score;
+					}
+				}
+				return best;
+			}
+			int mid = (start + end) >>> 1;
+			SearchTask left = new SearchTask(candidates, images, start, mid);
+			left.fork();
+			Score right = new SearchTask(candidates, images, mid, end).compute();
+			Score leftScore = left.join();
+			return (leftScore.total() >= right.total()) ? leftScore : right;
+		}
+	}
+
+	/**
+	 * Run every labeled image through the pipeline with one set of parameters.
+	 */
+	static Score evaluate(PipelineParameters params, List<LabeledImage> images, HatchVisionTargetsFromImage pipeline) {
+		pipeline.setParameters(params);
+		int detections = 0;
+		int rangesLabeled = 0;
+		double rangeErrorSum = 0;
+		long elapsedNs = 0;
+		for (LabeledImage labeled : images) {
+			long start = System.nanoTime();
+			pipeline.process(labeled.image);
+			elapsedNs += System.nanoTime() - start;
+
+			List<HatchVisionTargetsFromImage.HatchVisionTarget> found = pipeline.getDetectedTargets();
+			if (found.size() == labeled.targets) {
+				detections++;
+			}
+			if (!Double.isNaN(labeled.rangeInches)) {
+				// Score against whichever target came closest; a miss counts as 100% error
+				double error = 1.0;
+				for (HatchVisionTargetsFromImage.HatchVisionTarget hvt : found) {
+					double range = hvt.computeRangeInches(labeled.image.width(), HatchVisionTargetsFromImage.CAMERA_FOV_WIDTH_DEG);
+					error = Math.min(error, Math.abs(range - labeled.rangeInches) / labeled.rangeInches);
+				}
+				rangeErrorSum += error;
+				rangesLabeled++;
+			}
+		}
+
+		Score score = new Score();
+		score.params = params;
+		score.detectionRate = detections / (double) images.size();
+		score.rangeError = (rangesLabeled > 0) ? rangeErrorSum / rangesLabeled : 0;
+		score.costMs = elapsedNs / 1e6 / images.size();
+		return score;
+	}
+
+	/**
+	 * Build every combination of the given threshold values, on top of a base set of parameters.
+	 */
+	static List<PipelineParameters> thresholdGrid(PipelineParameters base, double[] blurRadii, double[] hueMins,
+		double[] hueMaxes, double[] saturationMins, double[] saturationMaxes, double[] valueMins, double[] valueMaxes) {
+		List<PipelineParameters> candidates = new ArrayList<>();
+		for (double blurRadius : blurRadii) {
+			for (double hueMin : hueMins) {
+				for (double hueMax : hueMaxes) {
+					if (hueMax <= hueMin) { continue; }
+					for (double saturationMin : saturationMins) {
+						for (double saturationMax : saturationMaxes) {
+							if (saturationMax <= saturationMin) { continue; }
+							for (double valueMin : valueMins) {
+								for (double valueMax : valueMaxes) {
+									if (valueMax <= valueMin) { continue; }
+									candidates.add(base.withThreshold(blurRadius, hueMin, hueMax,
+										saturationMin, saturationMax, valueMin, valueMax));
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Build every combination of the filter values, on top of a base set of parameters.
+	 */
+	static List<PipelineParameters> filterGrid(PipelineParameters base) {
+		List<PipelineParameters> candidates = new ArrayList<>();
+		for (double contourMinArea : CONTOUR_MIN_AREAS) {
+			for (double contourSolidityMin : CONTOUR_SOLIDITY_MINS) {
+				for (double aspectRatioMin : ASPECT_RATIO_MIN_FRACTIONS) {
+					for (double aspectRatioMax : ASPECT_RATIO_MAX_FRACTIONS) {
+						for (double stripeMinSolidity : STRIPE_MIN_SOLIDITIES) {
+							for (double stripeMinArea : STRIPE_MIN_AREAS) {
+								for (double angleToleranceVert : ANGLE_TOLERANCES_VERT) {
+									for (double angleToleranceHorz : ANGLE_TOLERANCES_HORZ) {
+										candidates.add(base.withFilters(contourMinArea, contourSolidityMin,
+											base.contourSolidityMax, aspectRatioMin, aspectRatioMax,
+											stripeMinSolidity, stripeMinArea, angleToleranceVert, angleToleranceHorz));
+									}
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return candidates;
+	}
+
+	private static double[] range(double min, double max, double step) {
+		int count = (int) Math.round((max - min) / step) + 1;
+		double[] values = new double[count];
+		for (int i = 0; i < count; ++i) {
+			values[i] = min + i * step;
+		}
+		return values;
+	}
+
+	/**
+	 * @return center and a step either side, kept within [lowest, highest]
+	 */
+	private static double[] around(double center, double step, double lowest, double highest) {
+		return DoubleStream.of(center - step, center, center + step)
+			.map(value -> Math.max(lowest, Math.min(highest, value)))
+			.distinct()
+			.toArray();
+	}
+
+	static List<LabeledImage> readLabels(String labelsFile) throws IOException {
+		Path labelsPath = Paths.get(labelsFile);
+		Path dir = labelsPath.toAbsolutePath().getParent();
+		JsonObject top = new JsonParser().parse(Files.newBufferedReader(labelsPath)).getAsJsonObject();
+		List<LabeledImage> images = new ArrayList<>();
+		for (JsonElement element : top.getAsJsonArray("images")) {
+			JsonObject entry = element.getAsJsonObject();
+			LabeledImage labeled = new LabeledImage();
+			labeled.file = entry.get("file").getAsString();
+			labeled.image = Imgcodecs.imread(dir.resolve(labeled.file).toString());
+			if (labeled.image.empty()) {
+				System.err.println("could not read '" + labeled.file + "'");
+				continue;
+			}
+			labeled.targets = entry.get("targets").getAsInt();
+			if (entry.has("range (in)")) {
+				labeled.rangeInches = entry.get("range (in)").getAsDouble();
+			}
+			images.add(labeled);
+		}
+		return images;
+	}
+
+	public static void main(String[] args) throws IOException {
+		String labelsFile = (args.length > 0) ? args[0] : DEFAULT_LABELS_FILE;
+		String settingsFile = (args.length > 1) ? args[1] : DEFAULT_SETTINGS_FILE;
+
+		// Start from the settings already in the file
+		PipelineParameters base = PipelineParameters.DEFAULTS;
+		Path settingsPath = Paths.get(settingsFile);
+		if (Files.exists(settingsPath)) {
+			base = PipelineParameters.fromJson(
+				new JsonParser().parse(Files.newBufferedReader(settingsPath)).getAsJsonObject(), base);
+		}
+
+		List<LabeledImage> images = readLabels(labelsFile);
+		if (images.isEmpty()) {
+			System.err.println("no labeled images to calibrate against");
+			return;
+		}
+
+		// We parallelize across candidates, so keep OpenCV from fighting us for the cores
+		Core.setNumThreads(1);
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		long start = System.nanoTime();
+
+		Score baseline = evaluate(base, images, new HatchVisionTargetsFromImage());
+		System.out.println("Current settings: " + baseline);
+
+		List<PipelineParameters> coarse = thresholdGrid(base, BLUR_RADII, HUE_MINS, HUE_MAXES,
+			SATURATION_MINS, new double[] {base.saturationMax}, VALUE_MINS, new double[] {base.valueMax});
+		System.out.println("Searching " + coarse.size() + " coarse threshold candidates over " + images.size()
+			+ " images on " + pool.getParallelism() + " threads...");
+		Score best = pool.invoke(new SearchTask(coarse, images, 0, coarse.size()));
+		System.out.println("Best coarse threshold: " + best);
+
+		PipelineParameters p = best.params;
+		double maxHue = PipelineParameters.MAX_HUE;
+		double maxSv = PipelineParameters.MAX_SATURATION_VALUE;
+		List<PipelineParameters> fine = thresholdGrid(base, around(p.blurRadius, 0.5, 0, Double.POSITIVE_INFINITY),
+			around(p.hueMin, 2.5, 0, maxHue), around(p.hueMax, 2.5, 0, maxHue),
+			around(p.saturationMin, 10, 0, maxSv), around(p.saturationMax, 20, 0, maxSv),
+			around(p.valueMin, 10, 0, maxSv), around(p.valueMax, 20, 0, maxSv));
+		Score refined = pool.invoke(new SearchTask(fine, images, 0, fine.size()));
+		if (refined.total() > best.total()) {
+			best = refined;
+		}
+		System.out.println("Best threshold: " + best);
+
+		List<PipelineParameters> filters = filterGrid(best.params);
+		System.out.println("Searching " + filters.size() + " filter candidates...");
+		Score filtered = pool.invoke(new SearchTask(filters, images, 0, filters.size()));
+		if (filtered.total() > best.total()) {
+			best = filtered;
+		}
+		pool.shutdown();
+		System.out.println(String.format("Best overall: %s (searched in %.1f s)", best,
+			(System.nanoTime() - start) / 1e9));
+
+		if (best.total() <= baseline.total()) {
+			System.out.println("No improvement on the current settings; leaving " + settingsFile + " alone.");
+			return;
+		}
+		try (Writer writer = Files.newBufferedWriter(settingsPath)) {
+			new GsonBuilder().setPrettyPrinting().create().toJson(best.params.toJson(), writer);
+		}
+		System.out.println("Wrote " + settingsFile + ": " + best.params);
+	}
+}
@@ -6,10 +6,21 @@
 /*----------------------------------------------------------------------------*/
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -20,10 +31,15 @@ import com.google.gson.JsonParser;
 
 import edu.wpi.cscore.VideoSource;
 import edu.wpi.first.cameraserver.CameraServer;
+import edu.wpi.first.networktables.EntryListenerFlags;
 import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableValue;
 import edu.wpi.first.vision.VisionThread;
 
+import frc.shared.FlightRecording;
+
 /*
    JSON format:
    {
@@ -59,6 +75,8 @@ public final class Main {
   private static JsonObject humanVisibleSettings;
   private final static String machineVisibleSettingsFile = "/home/pi/machineSettings.json";
   private static JsonObject machineVisibleSettings;
+  private final static String pipelineSettingsFile = "/home/pi/pipelineSettings.json";
+  private static PipelineParameters pipelineParameters = PipelineParameters.DEFAULTS;
 
   // How far to the right of center is the camera?
   private final static double CAM_X_DEFAULT_OFFSET_IN = 10;
@@ -72,6 +90,17 @@ public final class Main {
     public JsonObject config;
   }
 
+  // Where, and how much, profiling data to keep
+  private final static String FLIGHT_RECORDING_DIR = "/home/pi";
+  private final static Duration FLIGHT_RECORDING_MAX_AGE = Duration.ofMinutes(3);
+
+  // Startup timing, reported once each
+  private static boolean firstResultPublished = false;
+  private static boolean firstTargetPublished = false;
+
+  // Parsing is stateless, so one parser serves every file
+  private static final JsonParser jsonParser = new JsonParser();
+
   public static int team;
   public static boolean server;
   public static List<CameraConfig> cameraConfigs = new ArrayList<>();
@@ -118,7 +147,7 @@ public static JsonObject readJsonFile(String path) {
     // parse file
     JsonElement top;
     try {
-      top = new JsonParser().parse(Files.newBufferedReader(Paths.get(path)));
+      top = jsonParser.parse(Files.newBufferedReader(Paths.get(path)));
     } catch (IOException ex) {
       System.err.println("could not open '" + path + "': " + ex);
       return null;
@@ -182,9 +211,126 @@ public static JsonObject readJsonFile(String path) {
     machineVisibleSettings = readJsonFile(machineVisibleSettingsFile);
     if(machineVisibleSettings == null) { return false; }
 
+    // Pipeline tuning is optional; without it we run with the values built into the pipeline
+    JsonObject pipelineSettings = readJsonFile(pipelineSettingsFile);
+    if (pipelineSettings != null) {
+      pipelineParameters = PipelineParameters.fromJson(pipelineSettings, PipelineParameters.DEFAULTS);
+    }
+
     return true;
   }
 
+  /**
+   * Publish pipeline parameters to NetworkTables, so they can be seen and edited from the dashboard.
+   */
+  public static void publishParameters(NetworkTable table, PipelineParameters params) {
+    for (Map.Entry<String, JsonElement> setting : params.toJson().entrySet()) {
+      JsonElement value = setting.getValue();
+      NetworkTableEntry entry = table.getEntry(setting.getKey());
+      if (value.isJsonArray()) {
+        JsonArray array = value.getAsJsonArray();
+        double[] values = new double[array.size()];
+        for (int i = 0; i < values.length; ++i) {
+          values[i] = array.get(i).getAsDouble();
+        }
+        entry.setDoubleArray(values);
+      } else if (value.getAsJsonPrimitive().isNumber()) {
+        entry.setDouble(value.getAsDouble());
+      } else {
+        entry.setString(value.getAsString());
+      }
+    }
+  }
+
+  /**
+   * Build pipeline parameters from the values in NetworkTables.
+   * @param current where to take any value that is missing from the table
+   */
+  public static PipelineParameters readParameters(NetworkTable table, PipelineParameters current) {
+    JsonObject json = new JsonObject();
+    for (String key : current.toJson().keySet()) {
+      NetworkTableValue value = table.getEntry(key).getValue();
+      if (value.isDoubleArray()) {
+        JsonArray array = new JsonArray();
+        for (double d : value.getDoubleArray()) {
+          array.add(d);
+        }
+        json.add(key, array);
+      } else if (value.isDouble()) {
+        json.addProperty(key, value.getDouble());
+      } else if (value.isString()) {
+        json.addProperty(key, value.getString());
+      }
+    }
+    return PipelineParameters.fromJson(json, current);
+  }
+
+  /**
+   * Wait for a startup task to finish.
+   */
+  private static <T> T await(Future<T> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException | ExecutionException ex) {
+      throw new IllegalStateException("startup failed", ex);
+    }
+  }
+
+  /**
+   * Report how long it took since the JVM, and since the Pi, started to reach a milestone.
+   * The time since the Pi started includes the wait in runCamera for the camera to appear.
+   */
+  private static void reportStartup(NetworkTable table, String milestone) {
+    long jvmMs = ManagementFactory.getRuntimeMXBean().getUptime();
+    double systemMs = -1;
+    try {
+      String uptime = new String(Files.readAllBytes(Paths.get("/proc/uptime"))).trim();
+      systemMs = Double.parseDouble(uptime.split("\\s+")[0]) * 1000.0;
+    } catch (IOException | NumberFormatException ex) {
+      // Not on Linux; report the JVM time alone
+    }
+    System.out.println(String.format("Startup: %s after %d ms in the JVM, %.0f ms since boot", milestone, jvmMs, systemMs));
+    table.getEntry("startup ms to " + milestone).setDouble(jvmMs);
+    table.getEntry("boot ms to " + milestone).setDouble(systemMs);
+  }
+
+  /**
+   * Load, without initializing, every class in our jar that matters on the way to the first target.
+   * The build runs this with -XX:DumpLoadedClassList to make the class list for the
+   * class data sharing archive that install.sh builds.
+   */
+  private static void warmup() {
+    // Exercise the JSON paths, which load more classes than a plain class walk would find
+    PipelineParameters.fromJson(jsonParser.parse(PipelineParameters.DEFAULTS.toJson().toString()).getAsJsonObject(),
+        PipelineParameters.DEFAULTS);
+
+    String jarPath = Main.class.getProtectionDomain().getCodeSource().getLocation().getPath();
+    int loaded = 0;
+    try (JarFile jar = new JarFile(jarPath)) {
+      Enumeration<JarEntry> entries = jar.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        if (!name.endsWith(".class") || name.startsWith("META-INF/")) {
+          continue;
+        }
+        if (name.indexOf('/') >= 0 && !name.startsWith("edu/wpi/") && !name.startsWith("com/google/gson/")
+            && !name.startsWith("org/opencv/core/") && !name.startsWith("org/opencv/imgproc/")) {
+          continue;
+        }
+        try {
+          Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, Main.class.getClassLoader());
+          loaded++;
+        } catch (ClassNotFoundException | LinkageError ex) {
+          // Optional dependency that isn't bundled; it won't be needed at runtime either
+        }
+      }
+    } catch (IOException ex) {
+      System.err.println("could not open '" + jarPath + "' for warmup: " + ex);
+      return;
+    }
+    System.out.println("Warmup loaded " + loaded + " classes");
+  }
+
   /**
    * Start running the camera.
    */
@@ -204,6 +350,10 @@ public static JsonObject readJsonFile(String path) {
    * Main.
    */
   public static void main(String... args) {
+    if (args.length > 0 && "--warmup".equals(args[0])) {
+      warmup();
+      return;
+    }
     if (args.length > 0) {
       configFile = args[0];
     }
@@ -213,6 +363,14 @@ public static JsonObject readJsonFile(String path) {
       return;
     }
 
+    // Start the cameras, and load OpenCV along with the pipeline, while NetworkTables comes up
+    ExecutorService startupPool = Executors.newCachedThreadPool();
+    List<Future<VideoSource>> cameraStarts = new ArrayList<>();
+    for (CameraConfig cameraConfig : cameraConfigs) {
+      cameraStarts.add(startupPool.submit(() -> startCamera(cameraConfig)));
+    }
+    Future<HatchVisionTargetsFromImage> pipelineLoad = startupPool.submit(HatchVisionTargetsFromImage::new);
+
     // start NetworkTables
     NetworkTableInstance ntinst = NetworkTableInstance.getDefault();
     if (server) {
@@ -227,17 +385,41 @@ public static JsonObject readJsonFile(String path) {
     cameraControlTable.getEntry("camera_for_humans").setBoolean(false);
     cameraControlTable.getEntry("camera_rightward_from_center_in").setDouble(CAM_X_DEFAULT_OFFSET_IN);
     cameraControlTable.getEntry("camera_forward_from_center_in").setDouble(CAM_Y_DEFAULT_OFFSET_IN);
+    cameraControlTable.getEntry("stripe_engine").setString(HatchVisionTargetsFromImage.StripeEngine.CONTOURS.name());
     
-    // start cameras
+    // wait for the cameras
     List<VideoSource> cameras = new ArrayList<>();
-    for (CameraConfig cameraConfig : cameraConfigs) {
-      cameras.add(startCamera(cameraConfig));
+    for (Future<VideoSource> cameraStart : cameraStarts) {
+      cameras.add(await(cameraStart));
     }
 
     // start image processing on camera 0 if present
+    HatchVisionTargetsFromImage hatchPipeline = await(pipelineLoad);
+    startupPool.shutdown();
+    hatchPipeline.setParameters(pipelineParameters);
+
+    // Keep the last few minutes of profiling data, ready to dump from the dashboard
+    try {
+      FlightRecording flightRecording = new FlightRecording(FLIGHT_RECORDING_DIR, "vision", FLIGHT_RECORDING_MAX_AGE);
+      flightRecording.dumpOnRequest(cameraControlTable.getEntry("dump flight recording"));
+    } catch (IOException | ParseException ex) {
+      System.err.println("could not start flight recording: " + ex);
+    }
+
+    // Live tuning.  Edits from the dashboard build a fresh snapshot, which the pipeline picks up on its next frame.
+    NetworkTable tuningTable = ntinst.getTable("vision_tuning");
+    publishParameters(tuningTable, pipelineParameters);
+    tuningTable.addEntryListener((table, key, entry, value, flags) -> {
+      PipelineParameters params = readParameters(table, hatchPipeline.getParameters());
+      hatchPipeline.setParameters(params);
+      System.out.println("Pipeline parameters updated: " + params);
+    }, EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+
     if (cameras.size() >= 1) {
       VisionThread visionThread = new VisionThread(cameras.get(0),
-              new HatchVisionTargetsFromImage(), pipeline -> {
+              hatchPipeline, pipeline -> {
+                TargetPublishEvent publishEvent = new TargetPublishEvent();
+                publishEvent.begin();
                 //analysisOutputTable.getEntry("Hello").setString("World");
                 List<HatchVisionTargetsFromImage.HatchVisionTarget> hvts = pipeline.getDetectedTargets();
                 double[] bearings = new double[hvts.size()];
@@ -272,7 +454,27 @@ public static JsonObject readJsonFile(String path) {
                 analysisOutputTable.getEntry("target ranges relative to camera (in)").setDoubleArray(ranges);
                 analysisOutputTable.getEntry("target bearings (deg)").setDoubleArray(bearingsRelRobot);
                 analysisOutputTable.getEntry("target ranges (in)").setDoubleArray(rangesRelRobot);
+                // Time from when we started on the frame, so the robot can tell how old the targets are
+                analysisOutputTable.getEntry("pipeline latency (ms)").setDouble(
+                    (System.nanoTime() - pipeline.getFrameStartNanos()) / 1e6);
                 analysisOutputTable.getEntry("target count").setNumber(hvts.size());
+                // The frame number goes last, and changes every frame, so the robot decodes each update when it
+                // arrives. NetworkTables doesn't send values that haven't changed, so the count alone won't do.
+                analysisOutputTable.getEntry("frame number").setNumber(pipeline.getFrameNumber());
+                // Send now rather than with the next batch, so the robot's arrival time says when the frame was done
+                ntinst.flush();
+                publishEvent.frame = pipeline.getFrameNumber();
+                publishEvent.targets = hvts.size();
+                publishEvent.commit();
+
+                if (!firstResultPublished) {
+                  firstResultPublished = true;
+                  reportStartup(analysisOutputTable, "first result");
+                }
+                if (!firstTargetPublished && hvts.size() > 0) {
+                  firstTargetPublished = true;
+                  reportStartup(analysisOutputTable, "first target");
+                }
       });
       visionThread.start();
     }
@@ -294,6 +496,12 @@ public static JsonObject readJsonFile(String path) {
           isCamHumanVisible = shouldbeSetForHumans;
           System.out.println("done.");
         }
+        HatchVisionTargetsFromImage.StripeEngine engine = HatchVisionTargetsFromImage.StripeEngine.get(
+            cameraControlTable.getEntry("stripe_engine").getString(""));
+        if (engine != hatchPipeline.getStripeEngine()) {
+          System.out.println("Switching to " + engine + " stripe engine");
+          hatchPipeline.setStripeEngine(engine);
+        }
         Thread.sleep(10);
       } catch (InterruptedException ex) {
         return;
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Times the vision pipeline against the sample images, so that changes to it can be
+ * compared head to head on the same machine.
+ *
+ * <p>
+ * Run from the VisionCoprocessor directory, with the OpenCV natives on the library path:
+ * java -cp build/libs/java-multiCameraServer-all.jar PipelineBenchmark [iterations]
+ */
+public final class PipelineBenchmark {
+	private static final int DEFAULT_ITERATIONS = 50;
+	private static final int WARMUP_ITERATIONS = 10;
+
+	private PipelineBenchmark() {
+	}
+
+	/**
+	 * Run every image through the pipeline repeatedly with the given stripe engine.
+	 * @param images the decoded sample images
+	 * @param engine the stripe extraction backend to time
+	 * @param iterations how many times to run each image
+	 * @param targetCounts filled with the number of targets found in each image
+	 * @return average time per frame, in nanoseconds
+	 */
+	static double timeEngine(List<Mat> images, HatchVisionTargetsFromImage.StripeEngine engine, int iterations,
+		int[] targetCounts) {
+		HatchVisionTargetsFromImage pipeline = new HatchVisionTargetsFromImage();
+		pipeline.setStripeEngine(engine);
+
+		// Let the JIT settle before we start the clock
+		for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+			for (Mat img : images) {
+				pipeline.process(img);
+			}
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; ++i) {
+			for (Mat img : images) {
+				pipeline.process(img);
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		for (int i = 0; i < images.size(); ++i) {
+			pipeline.process(images.get(i));
+			targetCounts[i] = pipeline.getDetectedTargets().size();
+		}
+		return elapsed / (double) (iterations * images.size());
+	}
+
+	public static void main(String[] args) {
+		int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+
+		List<Mat> images = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		for (String file : HatchVisionTargetsFromImage.TEST_IMAGES) {
+			Mat img = Imgcodecs.imread(file);
+			if (img.empty()) {
+				System.err.println("could not read '" + file + "'");
+				continue;
+			}
+			images.add(img);
+			names.add(file);
+		}
+		if (images.isEmpty()) {
+			System.err.println("no images to process; run from the VisionCoprocessor directory");
+			return;
+		}
+
+		HatchVisionTargetsFromImage.StripeEngine[] engines = HatchVisionTargetsFromImage.StripeEngine.values();
+		int[][] targetCounts = new int[engines.length][images.size()];
+		for (int e = 0; e < engines.length; ++e) {
+			double nsPerFrame = timeEngine(images, engines[e], iterations, targetCounts[e]);
+			System.out.println(String.format("%-12s %8.3f ms/frame over %d frames", engines[e], nsPerFrame / 1e6,
+				iterations * images.size()));
+		}
+
+		// Point out any images where the engines disagree
+		for (int i = 0; i < images.size(); ++i) {
+			for (int e = 1; e < engines.length; ++e) {
+				if (targetCounts[e][i] != targetCounts[0][i]) {
+					System.out.println(names.get(i) + ": " + engines[0] + " found " + targetCounts[0][i] + " targets, "
+						+ engines[e] + " found " + targetCounts[e][i]);
+				}
+			}
+		}
+	}
+}
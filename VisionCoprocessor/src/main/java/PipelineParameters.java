@@ -0,0 +1,270 @@
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+
+/**
+ * An immutable snapshot of the tunable values used by HatchVisionTargetsFromImage.
+ *
+ * <p>
+ * Everything the pipeline derives from these values (blur kernel, threshold bounds, angle windows)
+ * is computed once, when the snapshot is built, so a frame costs nothing extra to read them.
+ * To change a value, build a new snapshot and hand it to HatchVisionTargetsFromImage.setParameters().
+ *
+ * <p>
+ * The JSON keys double as the entry names in the vision_tuning NetworkTables table:
+ * <pre>
+ *   {
+ *       "blur type": <"Box Blur", "Gaussian Blur", "Median Filter" or "Bilateral Filter">
+ *       "blur radius": <pixels>
+ *       "hue": [<min>, <max>]                     // 0 - 180
+ *       "saturation": [<min>, <max>]              // 0 - 255
+ *       "value": [<min>, <max>]                   // 0 - 255
+ *       "contour min area": <square pixels>
+ *       "contour solidity": [<min>, <max>]        // percent
+ *       "stripe aspect ratio": [<min>, <max>]     // fraction of the nominal stripe aspect ratio
+ *       "stripe min solidity": <fraction>
+ *       "stripe min area": <square pixels>
+ *       "angle tolerance vertical (deg)": <degrees>
+ *       "angle tolerance horizontal (deg)": <degrees>
+ *   }
+ * </pre>
+ * Any key may be left out, in which case the value from DEFAULTS is used. Values that are malformed or out of
+ * range are treated as left out.
+ */
+public final class PipelineParameters {
+	static final String BLUR_TYPE = "blur type";
+	static final String BLUR_RADIUS = "blur radius";
+	static final String HUE = "hue";
+	static final String SATURATION = "saturation";
+	static final String VALUE = "value";
+	static final String CONTOUR_MIN_AREA = "contour min area";
+	static final String CONTOUR_SOLIDITY = "contour solidity";
+	static final String STRIPE_ASPECT_RATIO = "stripe aspect ratio";
+	static final String STRIPE_MIN_SOLIDITY = "stripe min solidity";
+	static final String STRIPE_MIN_AREA = "stripe min area";
+	static final String ANGLE_TOLERANCE_VERT = "angle tolerance vertical (deg)";
+	static final String ANGLE_TOLERANCE_HORZ = "angle tolerance horizontal (deg)";
+
+	// Limits on the values, so nothing from the dashboard can make OpenCV throw and stop the vision thread
+	static final double MAX_HUE = 180;
+	static final double MAX_SATURATION_VALUE = 255;
+	private static final double MAX_BLUR_RADIUS = 50; // pixels; much more and a frame takes seconds
+	private static final double MAX_ANGLE_TOLERANCE = 90;
+
+	// Nominal angles of the stripes, from the field drawings
+	private static final double NOMINAL_ANGLE_OFF_AXIS = Math.toDegrees(
+		Math.asin(HatchVisionTargetsFromImage.STRIPE_BOTTOM_KICKOUT_IN / HatchVisionTargetsFromImage.STRIPE_LENGTH_IN));
+	private static final double LEFT_STRIPE_NOMINAL_ANGLE = -180 + NOMINAL_ANGLE_OFF_AXIS; // -165ish
+	private static final double RIGHT_STRIPE_NOMINAL_ANGLE = -0 - NOMINAL_ANGLE_OFF_AXIS; // -15ish
+	private static final double NOMINAL_ASPECT_RATIO =
+		HatchVisionTargetsFromImage.STRIPE_LENGTH_IN / HatchVisionTargetsFromImage.STRIPE_WIDTH_IN;
+
+	/**
+	 * The values we tuned in GRIP
+	 */
+	public static final PipelineParameters DEFAULTS = new PipelineParameters(
+		HatchVisionTargetsFromImage.BlurType.BOX, 2.7027027027027026,
+		45.69817278554671, 93.99989504410354,
+		91.72661870503596, 255.0,
+		57.32913669064751, 255.0,
+		50.0, 90.28776978417267, 100.0,
+		0.6, 1.5, 0.75, 100.0,
+		10, 20);
+
+	// Values as they appear in the JSON
+	public final HatchVisionTargetsFromImage.BlurType blurType;
+	public final double blurRadius;
+	public final double hueMin, hueMax;
+	public final double saturationMin, saturationMax;
+	public final double valueMin, valueMax;
+	public final double contourMinArea;
+	public final double contourSolidityMin, contourSolidityMax;
+	public final double aspectRatioMinFraction, aspectRatioMaxFraction;
+	public final double stripeMinSolidity;
+	public final double stripeMinArea;
+	public final double angleToleranceDegVert; // Angle tolerance, when rotating the stripe to be more vertical
+	public final double angleToleranceDegHorz; // Angle tolerance, when rotating the stripe to be more horizontal
+
+	// Values derived from the above, ready for the pipeline to use
+	final Size blurKernelSize;
+	final int blurRadiusPx;
+	final Scalar hsvLower;
+	final Scalar hsvUpper;
+	final double[] contourSolidity;
+	final double minAspectRatio;
+	final double maxAspectRatio;
+	final double minLeftSideAngle;
+	final double maxLeftSideAngle;
+	final double minRightSideAngle;
+	final double maxRightSideAngle;
+
+	private PipelineParameters(HatchVisionTargetsFromImage.BlurType blurType, double blurRadius,
+		double hueMin, double hueMax, double saturationMin, double saturationMax, double valueMin, double valueMax,
+		double contourMinArea, double contourSolidityMin, double contourSolidityMax,
+		double aspectRatioMinFraction, double aspectRatioMaxFraction, double stripeMinSolidity, double stripeMinArea,
+		double angleToleranceDegVert, double angleToleranceDegHorz) {
+		this.blurType = blurType;
+		this.blurRadius = blurRadius;
+		this.hueMin = hueMin;
+		this.hueMax = hueMax;
+		this.saturationMin = saturationMin;
+		this.saturationMax = saturationMax;
+		this.valueMin = valueMin;
+		this.valueMax = valueMax;
+		this.contourMinArea = contourMinArea;
+		this.contourSolidityMin = contourSolidityMin;
+		this.contourSolidityMax = contourSolidityMax;
+		this.aspectRatioMinFraction = aspectRatioMinFraction;
+		this.aspectRatioMaxFraction = aspectRatioMaxFraction;
+		this.stripeMinSolidity = stripeMinSolidity;
+		this.stripeMinArea = stripeMinArea;
+		this.angleToleranceDegVert = angleToleranceDegVert;
+		this.angleToleranceDegHorz = angleToleranceDegHorz;
+
+		blurRadiusPx = (int)(blurRadius + 0.5);
+		int kernelSize = (blurType == HatchVisionTargetsFromImage.BlurType.GAUSSIAN) ? 6 * blurRadiusPx + 1 : 2 * blurRadiusPx + 1;
+		blurKernelSize = new Size(kernelSize, kernelSize);
+		hsvLower = new Scalar(hueMin, saturationMin, valueMin);
+		hsvUpper = new Scalar(hueMax, saturationMax, valueMax);
+		contourSolidity = new double[] {contourSolidityMin, contourSolidityMax};
+		minAspectRatio = NOMINAL_ASPECT_RATIO * aspectRatioMinFraction;
+		maxAspectRatio = NOMINAL_ASPECT_RATIO * aspectRatioMaxFraction;
+		minLeftSideAngle = LEFT_STRIPE_NOMINAL_ANGLE - angleToleranceDegVert;
+		maxLeftSideAngle = LEFT_STRIPE_NOMINAL_ANGLE + angleToleranceDegHorz;
+		minRightSideAngle = RIGHT_STRIPE_NOMINAL_ANGLE - angleToleranceDegHorz;
+		maxRightSideAngle = RIGHT_STRIPE_NOMINAL_ANGLE + angleToleranceDegVert;
+	}
+
+	/**
+	 * Build a snapshot from JSON.
+	 * @param json object in the format described above
+	 * @param fallback where to take the value of any key that is missing or malformed, or out of its range. A
+	 *   pair is taken whole from here if either end is bad, or if min is more than max.
+	 * @return the new snapshot
+	 */
+	public static PipelineParameters fromJson(JsonObject json, PipelineParameters fallback) {
+		HatchVisionTargetsFromImage.BlurType blurType = fallback.blurType;
+		JsonElement blurTypeElement = json.get(BLUR_TYPE);
+		if (blurTypeElement != null && blurTypeElement.isJsonPrimitive()) {
+			blurType = HatchVisionTargetsFromImage.BlurType.get(blurTypeElement.getAsString());
+		}
+		double[] hue = getRange(json, HUE, 0, MAX_HUE, fallback.hueMin, fallback.hueMax);
+		double[] saturation = getRange(json, SATURATION, 0, MAX_SATURATION_VALUE, fallback.saturationMin, fallback.saturationMax);
+		double[] value = getRange(json, VALUE, 0, MAX_SATURATION_VALUE, fallback.valueMin, fallback.valueMax);
+		double[] contourSolidity = getRange(json, CONTOUR_SOLIDITY, 0, 100,
+			fallback.contourSolidityMin, fallback.contourSolidityMax);
+		double[] aspectRatio = getRange(json, STRIPE_ASPECT_RATIO, 0, Double.POSITIVE_INFINITY,
+			fallback.aspectRatioMinFraction, fallback.aspectRatioMaxFraction);
+		return new PipelineParameters(blurType,
+			getDouble(json, BLUR_RADIUS, 0, MAX_BLUR_RADIUS, fallback.blurRadius),
+			hue[0], hue[1], saturation[0], saturation[1], value[0], value[1],
+			getDouble(json, CONTOUR_MIN_AREA, 0, Double.POSITIVE_INFINITY, fallback.contourMinArea),
+			contourSolidity[0], contourSolidity[1], aspectRatio[0], aspectRatio[1],
+			getDouble(json, STRIPE_MIN_SOLIDITY, 0, 1, fallback.stripeMinSolidity),
+			getDouble(json, STRIPE_MIN_AREA, 0, Double.POSITIVE_INFINITY, fallback.stripeMinArea),
+			getDouble(json, ANGLE_TOLERANCE_VERT, 0, MAX_ANGLE_TOLERANCE, fallback.angleToleranceDegVert),
+			getDouble(json, ANGLE_TOLERANCE_HORZ, 0, MAX_ANGLE_TOLERANCE, fallback.angleToleranceDegHorz));
+	}
+
+	/**
+	 * Copy this snapshot, with the blur radius and HSV threshold replaced.
+	 * @return the new snapshot
+	 */
+	public PipelineParameters withThreshold(double blurRadius, double hueMin, double hueMax,
+		double saturationMin, double saturationMax, double valueMin, double valueMax) {
+		return new PipelineParameters(blurType, blurRadius, hueMin, hueMax, saturationMin, saturationMax, valueMin, valueMax,
+			contourMinArea, contourSolidityMin, contourSolidityMax,
+			aspectRatioMinFraction, aspectRatioMaxFraction, stripeMinSolidity, stripeMinArea,
+			angleToleranceDegVert, angleToleranceDegHorz);
+	}
+
+	/**
+	 * Copy this snapshot, with the contour and stripe filters replaced.
+	 * @return the new snapshot
+	 */
+	public PipelineParameters withFilters(double contourMinArea, double contourSolidityMin, double contourSolidityMax,
+		double aspectRatioMinFraction, double aspectRatioMaxFraction, double stripeMinSolidity, double stripeMinArea,
+		double angleToleranceDegVert, double angleToleranceDegHorz) {
+		return new PipelineParameters(blurType, blurRadius, hueMin, hueMax, saturationMin, saturationMax, valueMin, valueMax,
+			contourMinArea, contourSolidityMin, contourSolidityMax,
+			aspectRatioMinFraction, aspectRatioMaxFraction, stripeMinSolidity, stripeMinArea,
+			angleToleranceDegVert, angleToleranceDegHorz);
+	}
+
+	/**
+	 * @return this snapshot, in the JSON format described above
+	 */
+	public JsonObject toJson() {
+		JsonObject json = new JsonObject();
+		json.addProperty(BLUR_TYPE, blurType.toString());
+		json.addProperty(BLUR_RADIUS, blurRadius);
+		json.add(HUE, range(hueMin, hueMax));
+		json.add(SATURATION, range(saturationMin, saturationMax));
+		json.add(VALUE, range(valueMin, valueMax));
+		json.addProperty(CONTOUR_MIN_AREA, contourMinArea);
+		json.add(CONTOUR_SOLIDITY, range(contourSolidityMin, contourSolidityMax));
+		json.add(STRIPE_ASPECT_RATIO, range(aspectRatioMinFraction, aspectRatioMaxFraction));
+		json.addProperty(STRIPE_MIN_SOLIDITY, stripeMinSolidity);
+		json.addProperty(STRIPE_MIN_AREA, stripeMinArea);
+		json.addProperty(ANGLE_TOLERANCE_VERT, angleToleranceDegVert);
+		json.addProperty(ANGLE_TOLERANCE_HORZ, angleToleranceDegHorz);
+		return json;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, JsonElement> entry : toJson().entrySet()) {
+			sb.append(entry.getKey()).append('=').append(entry.getValue()).append(' ');
+		}
+		return sb.toString().trim();
+	}
+
+	private static JsonArray range(double min, double max) {
+		JsonArray array = new JsonArray();
+		array.add(min);
+		array.add(max);
+		return array;
+	}
+
+	/**
+	 * @return the value for the key, or fallback if it is missing, not a number, or outside [min, max]
+	 */
+	private static double getDouble(JsonObject json, String key, double min, double max, double fallback) {
+		JsonElement element = json.get(key);
+		if (!isNumber(element)) {
+			return fallback;
+		}
+		double value = element.getAsDouble();
+		return (value >= min && value <= max) ? value : fallback; // NaN fails both
+	}
+
+	/**
+	 * @return the [min, max] pair for the key, or the fallback pair if it is missing, malformed, reversed, or
+	 *   reaches outside [lowest, highest]
+	 */
+	private static double[] getRange(JsonObject json, String key, double lowest, double highest,
+		double fallbackMin, double fallbackMax) {
+		JsonElement element = json.get(key);
+		if (element != null && element.isJsonArray() && element.getAsJsonArray().size() == 2) {
+			JsonArray array = element.getAsJsonArray();
+			if (isNumber(array.get(0)) && isNumber(array.get(1))) {
+				double min = array.get(0).getAsDouble();
+				double max = array.get(1).getAsDouble();
+				if (min >= lowest && max <= highest && min <= max) {
+					return new double[] {min, max};
+				}
+			}
+		}
+		return new double[] {fallbackMin, fallbackMax};
+	}
+
+	private static boolean isNumber(JsonElement element) {
+		return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber();
+	}
+}
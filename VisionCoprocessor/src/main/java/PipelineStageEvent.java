@@ -0,0 +1,33 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one stage of HatchVisionTargetsFromImage.process().
+ * The event's duration is the time spent in the stage.
+ */
+@Name("frc.vision.PipelineStage")
+@Label("Pipeline Stage")
+@Category({"FRC", "Vision"})
+@Description("One stage of the hatch target pipeline")
+class PipelineStageEvent extends Event {
+	@Label("Frame")
+	@Description("Sequence number of the frame being processed")
+	long frame;
+
+	@Label("Stage")
+	String stage;
+
+	/**
+	 * Create an event and start its clock.  Call commit() when the stage is done.
+	 */
+	static PipelineStageEvent start(long frame, String stage) {
+		PipelineStageEvent event = new PipelineStageEvent();
+		event.frame = frame;
+		event.stage = stage;
+		event.begin();
+		return event;
+	}
+}
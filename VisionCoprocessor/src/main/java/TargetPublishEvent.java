@@ -0,0 +1,22 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one publish of the detected targets to NetworkTables.
+ * The event's duration is the time spent computing and writing the entries.
+ */
+@Name("frc.vision.TargetPublish")
+@Label("Target Publish")
+@Category({"FRC", "Vision"})
+@Description("Publishing one frame's targets to NetworkTables")
+class TargetPublishEvent extends Event {
+	@Label("Frame")
+	@Description("Sequence number of the frame the targets came from")
+	long frame;
+
+	@Label("Targets")
+	int targets;
+}